@@ -15,11 +15,11 @@
 package com.buffalokiwi.aerodrome.jet;
 
 import com.buffalokiwi.api.APILog;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Locale;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -45,6 +45,45 @@ import org.apache.commons.logging.LogFactory;
  */
 public class DefaultJetConfig implements JetConfig
 {
+  /**
+   * Authentication data returned by a login 
+   */
+  private static class AuthData
+  {
+    private static final AuthData EMPTY = new AuthData( "", "", new Date(), null );
+    
+    /**
+     * The authentication token (id_token)
+     */
+    private final String token;
+    
+    /**
+     * What type of token the "token" property represents (token_type)
+     */
+    private final String tokenType;
+    
+    /**
+     * When the authorization token expires.
+     */
+    private final Date tokenExpires;
+    
+    /**
+     * Authentication header value 
+     * TokenType + ' ' + Token 
+     */
+    private final String authHeaderValue;
+    
+    private AuthData( final String token, final String tokenType, 
+      final Date tokenExpires, final String authHeaderValue )
+    {
+      this.token = token;
+      this.tokenType = tokenType;
+      this.tokenExpires = tokenExpires;
+      this.authHeaderValue = authHeaderValue;
+    }
+  }
+  
+  
   /**
    * A builder for creating a jet api configuration object.
    * @author John Quinn
@@ -197,6 +236,11 @@ public class DefaultJetConfig implements JetConfig
      * Max download size
      */
     private long maxDownloadSize = 20971520;
+    
+    /**
+     * Smallest request body to gzip by endpoint template 
+     */
+    private final Map<String,Long> requestCompression = new HashMap<>();
 
 
     /**
@@ -295,6 +339,11 @@ public class DefaultJetConfig implements JetConfig
      */
     private String getSettlementReportUrl = "/settlement/report/{settlement_id}";
     
+    /**
+     * Token store or null 
+     */
+    private IJetTokenStore tokenStore = null;
+    
     
     /**
      * Get the log 
@@ -661,6 +710,37 @@ public class DefaultJetConfig implements JetConfig
     }
 
 
+    /**
+     * Gzip the request bodies sent to some endpoints when they are at least
+     * some size.  Endpoints are the default Jet path templates 
+     * (ie: "/merchant-skus/{sku}/shippingexception"), or "*" for every 
+     * endpoint without its own setting.  Defaults to off.
+     * @param bytes Smallest body to compress.  Less than zero disables 
+     * compression for the endpoints.
+     * @param endpoints Endpoint templates 
+     * @return builder
+     * @throws IllegalArgumentException if no endpoints are supplied 
+     */
+    public Builder setRequestCompressionThreshold( final long bytes, 
+      final String... endpoints ) throws IllegalArgumentException
+    {
+      if ( endpoints == null || endpoints.length == 0 )
+        throw new IllegalArgumentException( "endpoints cannot be empty" );
+      
+      for ( final String e : endpoints )
+      {
+        if ( e == null || e.isEmpty())
+          throw new IllegalArgumentException( "endpoints cannot contain empty values" );
+        
+        requestCompression.put( e, bytes );
+        APILog.debug( LOG, "Request compression threshold for", e, "set to:", 
+          String.valueOf( bytes ));
+      }
+      
+      return this;
+    }
+    
+    
     /**
      * Set the default accept header value for requests
      * @param value value 
@@ -904,6 +984,21 @@ public class DefaultJetConfig implements JetConfig
       return this;
     }
 
+    /**
+     * Set a store for auth tokens.
+     * Tokens are saved to the store after each login, and a token that is 
+     * still valid is loaded from the store when the config is built, which 
+     * allows new processes to skip the login.
+     * @param tokenStore store or null for none 
+     * @return this
+     */
+    public Builder setTokenStore( final IJetTokenStore tokenStore )
+    {
+      this.tokenStore = tokenStore;
+      return this;
+    }
+    
+    
     /**
      * Set get taxonomy nodes url
      * @param getTaxonomyNodeUrl the getTaxonomyNodeUrl to set
@@ -1050,32 +1145,34 @@ public class DefaultJetConfig implements JetConfig
    * If untrusted SSL is allowed
    */
   private final boolean allowUntrustedSSL;
-
+  
   /**
-   * The authentication token
-   * retrieved after a successful login
-   * id_token
+   * Smallest request body to gzip by endpoint template 
    */
-  private String token = "";
+  private final Map<String,Long> requestCompression;
 
   /**
-   * What type of token the "token" property represents
-   * Retrieved upon successful login with id_token
-   * token_type
+   * The current authentication data.
+   * This is replaced as a whole, so readers never see a token from one 
+   * login paired with the expiry or type of another.
    */
-  private String tokenType = "";
-
+  private volatile AuthData auth = AuthData.EMPTY;
+  
+  /**
+   * Token store or null 
+   */
+  private final IJetTokenStore tokenStore;
+  
   /**
-   * When the authorization token expires.
-   * This is dependent on what the API returns upon authentication 
+   * Stored tokens must be valid for at least this many milliseconds to be 
+   * used 
    */
-  private Date tokenExpires = new Date();
+  private static final long MIN_STORED_TOKEN_LIFE = 60000L;
   
   /**
-   * Authentication header value 
-   * TokenType + ' ' + Token 
+   * Log 
    */
-  private String authHeaderValue;
+  private static final Log LOG = LogFactory.getLog( DefaultJetConfig.class );
   
   /**
    * URL to retrieve product inventory 
@@ -1311,6 +1408,7 @@ public class DefaultJetConfig implements JetConfig
     this.acceptHeaderValue = b.acceptHeaderValue;
     this.acceptLanguageHeaderValue = b.acceptLanguageHeaderValue;
     this.allowUntrustedSSL = b.allowUntrustedSSL;
+    this.requestCompression = Collections.unmodifiableMap( new HashMap<>( b.requestCompression ));
     this.uriAddProductVariation = b.uriAddProductVariation;
     this.uriArchiveSku = b.uriArchiveSku;
     this.uriReturnsException = b.uriReturnsException;
@@ -1339,6 +1437,9 @@ public class DefaultJetConfig implements JetConfig
     this.getTaxonomyAttrUrl = b.getTaxonomyAttrUrl;
     this.getSettlementDaysUrl = b.getSettlementDaysUrl;
     this.getSettlementReportUrl = b.getSettlementReportUrl;
+    this.tokenStore = b.tokenStore;
+    
+    loadStoredAuthenticationData();
   }
   
   
@@ -1420,6 +1521,18 @@ public class DefaultJetConfig implements JetConfig
     return allowUntrustedSSL;
   }
   
+  
+  /**
+   * Retrieve the smallest request body gzipped for each endpoint template.
+   * The "*" key applies to endpoints without their own setting.
+   * @return thresholds in bytes 
+   */
+  @Override
+  public Map<String,Long> getRequestCompressionThresholds()
+  {
+    return requestCompression;
+  }
+  
 
   /**
    * Retrieve the Jet API merchant id
@@ -1610,7 +1723,8 @@ public class DefaultJetConfig implements JetConfig
     if ( token.trim().isEmpty())
       throw new IllegalArgumentException( "You must specify a non-empty authentication token.  Authentication token not set." );
 
-    this.token = token;
+    final AuthData a = auth;
+    auth = new AuthData( token, a.tokenType, a.tokenExpires, a.authHeaderValue );
   }
 
 
@@ -1622,7 +1736,7 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public String getToken()
   {
-    return token;
+    return auth.token;
   }
 
 
@@ -1633,7 +1747,7 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public String getTokenType()
   {
-    return tokenType;
+    return auth.tokenType;
   }
 
 
@@ -1644,7 +1758,7 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public Date getTokenExpires()
   {    
-    return tokenExpires;
+    return new Date( auth.tokenExpires.getTime());
   }
 
 
@@ -1738,22 +1852,19 @@ public class DefaultJetConfig implements JetConfig
     final String tokenType, final String expires )
     throws IllegalArgumentException
   {
-    if ( token == null || token.trim().isEmpty())
-      throw new IllegalArgumentException( "token can't be empty" );
-    else if ( tokenType == null || tokenType.trim().isEmpty())
-      throw new IllegalArgumentException( "tokenType can't be empty" );
-
-    DateFormat fmt = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH );
-
-    try {
-      tokenExpires = fmt.parse( expires );
-    } catch( ParseException e ) {
-      throw new IllegalArgumentException( "Failed to convert " + expires + " to Date" );
+    final JetToken t = new JetToken( token, tokenType, expires );
+    
+    //..Swap everything in at once 
+    auth = new AuthData( token, tokenType, t.getExpiresDate(), tokenType + ' ' + token );
+    
+    if ( tokenStore != null )
+    {
+      try {
+        tokenStore.save( getTokenStoreKey(), t );
+      } catch( IOException e ) {
+        APILog.warn( LOG, e, "Failed to save the auth token to the token store" );
+      }
     }
-
-    this.token = token;
-    this.tokenType = tokenType;
-    authHeaderValue = tokenType + ' ' + token;
   }
 
 
@@ -1763,10 +1874,56 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public synchronized void clearAuthenticationData()
   {
-    token = "";
-    tokenType = "";
-    tokenExpires = new Date();
-    authHeaderValue = "";
+    auth = new AuthData( "", "", new Date(), "" );
+    
+    if ( tokenStore != null )
+    {
+      try {
+        tokenStore.remove( getTokenStoreKey());
+      } catch( IOException e ) {
+        APILog.warn( LOG, e, "Failed to remove the auth token from the token store" );
+      }
+    }
+  }
+  
+  
+  /**
+   * Load the auth token from the token store if one is set and the stored 
+   * token is valid for at least another minute.
+   * @return if a token was loaded 
+   */
+  @Override
+  public synchronized boolean loadStoredAuthenticationData()
+  {
+    if ( tokenStore == null )
+      return false;
+    
+    final JetToken t;
+    try {
+      t = tokenStore.load( getTokenStoreKey());
+    } catch( IOException e ) {
+      APILog.warn( LOG, e, "Failed to load the auth token from the token store" );
+      return false;
+    }
+    
+    if ( t == null || !t.isValidFor( MIN_STORED_TOKEN_LIFE ))
+      return false;
+    
+    auth = new AuthData( t.getToken(), t.getTokenType(), t.getExpiresDate(), 
+      t.getTokenType() + ' ' + t.getToken());
+    
+    APILog.debug( LOG, "Using stored auth token for merchant", merchantId );
+    return true;
+  }
+  
+  
+  /**
+   * Retrieve the key used for this config in the token store
+   * @return key 
+   */
+  private String getTokenStoreKey()
+  {
+    return JetAuthState.getKey( this );
   }
   
   
@@ -1778,7 +1935,7 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public String getAuthorizationHeaderValue()
   {
-    return authHeaderValue;
+    return auth.authHeaderValue;
   }
 
 
@@ -1796,8 +1953,9 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public boolean isAuthenticated()
   {
+    final AuthData a = auth;
     Date d = new Date();
-    return !token.isEmpty() && d.before( tokenExpires );
+    return !a.token.isEmpty() && d.before( a.tokenExpires );
   }
   
   
@@ -1813,6 +1971,10 @@ public class DefaultJetConfig implements JetConfig
   @Override
   public void testConfigurationData() throws JetAuthException
   {
+    final AuthData a = auth;
+    final String token = a.token;
+    final Date tokenExpires = a.tokenExpires;
+    
     if ( token.isEmpty())
       throw new JetAuthException( "Not authenticated (not logged in to Jet.com API)" );
     else if ( tokenExpires instanceof Date && tokenExpires.before( new Date()))
@@ -0,0 +1,307 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+/**
+ * A token store that keeps each token in an encrypted file.
+ * 
+ * Every key gets its own file in the store directory, named by a hash of 
+ * the key.  Files are encrypted with AES-GCM using a key derived from a 
+ * passphrase (PBKDF2) and a random nonce per write, so a tampered or 
+ * foreign file fails to load instead of producing a token.  Each store 
+ * picks one random salt for the files it writes, and derived keys are 
+ * cached by salt, so the slow key derivation runs once per salt rather 
+ * than on every load and save.
+ * Files are written to a temporary file and moved into place, so workers 
+ * sharing the directory never read a partial file.
+ * 
+ * Every process that should share tokens must use the same directory and 
+ * passphrase.
+ * 
+ * @author John Quinn
+ */
+public class FileJetTokenStore implements IJetTokenStore
+{
+  /**
+   * File header and format version 
+   */
+  private static final byte[] MAGIC = { 'A', 'J', 'T', '1' };
+  
+  private static final int SALT_LENGTH = 16;
+  
+  private static final int NONCE_LENGTH = 12;
+  
+  private static final int TAG_BITS = 128;
+  
+  private static final int KEY_BITS = 128;
+  
+  private static final int ITERATIONS = 65536;
+  
+  /**
+   * Most derived keys kept.  Each process sharing the directory writes 
+   * with its own salt.
+   */
+  private static final int MAX_CACHED_KEYS = 32;
+  
+  /**
+   * Random source for salts and nonces 
+   */
+  private static final SecureRandom RANDOM = new SecureRandom();
+  
+  /**
+   * Store directory 
+   */
+  private final Path directory;
+  
+  /**
+   * Passphrase 
+   */
+  private final char[] passphrase;
+  
+  /**
+   * Salt for files written by this store 
+   */
+  private final byte[] salt = new byte[SALT_LENGTH];
+  
+  /**
+   * Derived keys by salt 
+   */
+  private final Map<String,SecretKeySpec> keys = new ConcurrentHashMap<>();
+  
+  
+  /**
+   * Create a new FileJetTokenStore 
+   * @param directory Store directory.  This is created if it does not exist.
+   * @param passphrase Passphrase used to encrypt the files.  This is copied.
+   * @throws IllegalArgumentException if directory is null or passphrase is
+   * empty 
+   * @throws IOException if the directory cannot be created 
+   */
+  public FileJetTokenStore( final File directory, final char[] passphrase )
+    throws IllegalArgumentException, IOException
+  {
+    if ( directory == null )
+      throw new IllegalArgumentException( "directory cannot be null" );
+    else if ( passphrase == null || passphrase.length == 0 )
+      throw new IllegalArgumentException( "passphrase cannot be empty" );
+    
+    this.directory = directory.toPath();
+    this.passphrase = passphrase.clone();
+    RANDOM.nextBytes( salt );
+    
+    Files.createDirectories( this.directory );
+  }
+  
+  
+  @Override
+  public JetToken load( final String key ) throws IOException
+  {
+    final byte[] data;
+    try {
+      data = Files.readAllBytes( getPath( key ));
+    } catch( NoSuchFileException e ) {
+      return null;
+    }
+    
+    final int header = MAGIC.length + SALT_LENGTH + NONCE_LENGTH;
+    if ( data.length <= header 
+      || !Arrays.equals( MAGIC, Arrays.copyOf( data, MAGIC.length )))
+    {
+      throw new IOException( "Token file for " + key + " is not a token file" );
+    }
+    
+    final byte[] salt = Arrays.copyOfRange( data, MAGIC.length, MAGIC.length + SALT_LENGTH );
+    final byte[] nonce = Arrays.copyOfRange( data, MAGIC.length + SALT_LENGTH, header );
+    
+    final byte[] plain;
+    try {
+      final Cipher c = Cipher.getInstance( "AES/GCM/NoPadding" );
+      c.init( Cipher.DECRYPT_MODE, deriveKey( salt ), 
+        new GCMParameterSpec( TAG_BITS, nonce ));
+      plain = c.doFinal( data, header, data.length - header );
+    } catch( GeneralSecurityException e ) {
+      throw new IOException( "Failed to decrypt the token file for " + key 
+        + ".  The passphrase may be wrong.", e );
+    }
+    
+    try ( final JsonReader r = Json.createReader( new StringReader( 
+      new String( plain, StandardCharsets.UTF_8 ))))
+    {
+      final JsonObject o = r.readObject();
+      if ( !key.equals( o.getString( "key", "" )))
+        return null;
+      
+      return new JetToken( o.getString( "token" ), o.getString( "type" ), 
+        o.getString( "expires" ));
+    } catch( JsonException | NullPointerException | ClassCastException 
+      | IllegalArgumentException e ) {
+      throw new IOException( "Token file for " + key + " is invalid", e );
+    }
+  }
+  
+  
+  @Override
+  public void save( final String key, final JetToken token ) throws IOException
+  {
+    final byte[] plain = Json.createObjectBuilder()
+      .add( "key", key )
+      .add( "token", token.getToken())
+      .add( "type", token.getTokenType())
+      .add( "expires", token.getExpires())
+      .build().toString().getBytes( StandardCharsets.UTF_8 );
+    
+    final byte[] nonce = new byte[NONCE_LENGTH];
+    RANDOM.nextBytes( nonce );
+    
+    final byte[] cipherText;
+    try {
+      final Cipher c = Cipher.getInstance( "AES/GCM/NoPadding" );
+      c.init( Cipher.ENCRYPT_MODE, deriveKey( salt ), 
+        new GCMParameterSpec( TAG_BITS, nonce ));
+      cipherText = c.doFinal( plain );
+    } catch( GeneralSecurityException e ) {
+      throw new IOException( "Failed to encrypt the token for " + key, e );
+    }
+    
+    final Path target = getPath( key );
+    final Path tmp = Files.createTempFile( directory, "token", ".tmp" );
+    try {
+      restrictPermissions( tmp );
+      
+      final byte[] out = new byte[MAGIC.length + SALT_LENGTH + NONCE_LENGTH + cipherText.length];
+      System.arraycopy( MAGIC, 0, out, 0, MAGIC.length );
+      System.arraycopy( salt, 0, out, MAGIC.length, SALT_LENGTH );
+      System.arraycopy( nonce, 0, out, MAGIC.length + SALT_LENGTH, NONCE_LENGTH );
+      System.arraycopy( cipherText, 0, out, MAGIC.length + SALT_LENGTH + NONCE_LENGTH, cipherText.length );
+      Files.write( tmp, out );
+      
+      try {
+        Files.move( tmp, target, StandardCopyOption.ATOMIC_MOVE, 
+          StandardCopyOption.REPLACE_EXISTING );
+      } catch( AtomicMoveNotSupportedException e ) {
+        Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING );
+      }
+    } finally {
+      Files.deleteIfExists( tmp );
+    }
+  }
+  
+  
+  @Override
+  public void remove( final String key ) throws IOException
+  {
+    Files.deleteIfExists( getPath( key ));
+  }
+  
+  
+  /**
+   * Retrieve the file for some key 
+   * @param key key 
+   * @return path 
+   */
+  private Path getPath( final String key )
+  {
+    try {
+      final byte[] h = MessageDigest.getInstance( "SHA-256" )
+        .digest( key.getBytes( StandardCharsets.UTF_8 ));
+      
+      final StringBuilder s = new StringBuilder();
+      for ( final byte b : h )
+      {
+        s.append( String.format( "%02x", b ));
+      }
+      
+      return directory.resolve( s.append( ".token" ).toString());
+    } catch( NoSuchAlgorithmException e ) {
+      //..Every jvm has SHA-256
+      throw new IllegalStateException( e );
+    }
+  }
+  
+  
+  /**
+   * Derive the file key from the passphrase, or retrieve it from the cache 
+   * @param salt salt 
+   * @return key 
+   * @throws GeneralSecurityException 
+   */
+  private SecretKeySpec deriveKey( final byte[] salt ) 
+    throws GeneralSecurityException
+  {
+    final String id = Base64.getEncoder().encodeToString( salt );
+    SecretKeySpec key = keys.get( id );
+    if ( key != null )
+      return key;
+    
+    //..Two threads may derive the same key; the results are equal 
+    final PBEKeySpec spec = new PBEKeySpec( passphrase, salt, ITERATIONS, KEY_BITS );
+    try {
+      key = new SecretKeySpec( SecretKeyFactory.getInstance( "PBKDF2WithHmacSHA256" )
+        .generateSecret( spec ).getEncoded(), "AES" );
+    } finally {
+      spec.clearPassword();
+    }
+    
+    if ( keys.size() >= MAX_CACHED_KEYS )
+      keys.clear();
+    
+    keys.put( id, key );
+    return key;
+  }
+  
+  
+  /**
+   * Make some file readable by the owner only, where supported 
+   * @param path file 
+   */
+  private static void restrictPermissions( final Path path )
+  {
+    try {
+      Files.setPosixFilePermissions( path, 
+        EnumSet.of( PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE ));
+    } catch( UnsupportedOperationException | IOException e ) {
+      //..Not a posix file system 
+    }
+  }
+}
@@ -16,10 +16,18 @@ package com.buffalokiwi.aerodrome.jet;
 
 import com.buffalokiwi.api.APIException;
 import com.buffalokiwi.api.APIResponse;
+import com.buffalokiwi.api.CircuitBreakerRegistry;
 import com.buffalokiwi.api.IApi;
+import com.buffalokiwi.api.IResponseStreamHandler;
 import com.buffalokiwi.api.PostFile;
 import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
 import org.apache.http.entity.ContentType;
 
 /**
@@ -43,6 +51,111 @@ public interface IJetAPI extends IApi
   public IJetAPIResponse get(final String url, final Map<String, String> headers) 
           throws APIException, JetException;
 
+  /**
+   * Perform a get-based request to some endpoint and stream the response 
+   * body to some handler.
+   * @param <T> Handler result type 
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @param handler Receives the decoded response body 
+   * @return The handler result 
+   * @throws APIException If something goes wrong (like an IOException)
+   * @throws JetException if jet returns an error response 
+   */
+  @Override
+  public default <T> T getStream(final String url, 
+    final Map<String, String> headers, final IResponseStreamHandler<T> handler) 
+    throws APIException, JetException
+  {
+    return IApi.super.getStream( url, headers, handler );
+  }
+  
+  /**
+   * Perform a get-based request to some endpoint and parse the response 
+   * directly from the connection into a JsonObject.
+   * This bypasses single flight and the response cache.
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The parsed response 
+   * @throws APIException If something goes wrong (like an IOException)
+   * @throws JetException if jet returns an error response 
+   */
+  public default JsonObject getJson(final String url, 
+    final Map<String, String> headers) throws APIException, JetException
+  {
+    return getStream( url, headers, ( response, content ) -> {
+      try ( final JsonReader reader = Json.createReader( content )) {
+        final JsonObject json = reader.readObject();
+        JetAPIResponse.checkErrors( json, response );
+        return json;
+      } catch( JsonException e ) {
+        throw new JetException( "Failed to parse response from " + url, e, response );
+      }
+    });
+  }
+
+  /**
+   * Perform a non-blocking get-based request to some endpoint.
+   * The default implementation runs get() on the common fork join pool.
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException or JetException.
+   */
+  @Override
+  public default CompletableFuture<IJetAPIResponse> getAsync(final String url, 
+    final Map<String, String> headers)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return get( url, headers );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    });
+  }
+
+  /**
+   * Send arbitrary post data to some endpoint without blocking.
+   * The default implementation runs post() on the common fork join pool.
+   * @param url The URL
+   * @param payload Data to send
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException or JetException.
+   */
+  @Override
+  public default CompletableFuture<IJetAPIResponse> postAsync(final String url, 
+    final String payload, final Map<String, String> headers)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return post( url, payload, headers );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    });
+  }
+
+  /**
+   * Perform a non-blocking put-based request to some endpoint.
+   * The default implementation runs put() on the common fork join pool.
+   * @param url The URL
+   * @param payload Data to send
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException or JetException.
+   */
+  @Override
+  public default CompletableFuture<IJetAPIResponse> putAsync(final String url, 
+    final String payload, final Map<String, String> headers)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return put( url, payload, headers );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    });
+  }
+
   /**
    * Retrieve a HeaderBuilder instance with an Authorization header
    * @return builder
@@ -61,7 +174,87 @@ public interface IJetAPI extends IApi
    */
   public JetHeaderBuilder getPlainHeaderBuilder();
   
+  /**
+   * Add an error handler.
+   * Handlers are shared by every api using the same merchant credentials.
+   * @param handler handler 
+   */
   public void setErrorHandler( IJetErrorHandler handler );
+  
+  /**
+   * Open pooled connections to the Jet host, and optionally log in at the 
+   * same time, so the first requests after a restart run at steady state 
+   * latency.
+   * The default implementation opens nothing and returns 0.
+   * @param connections Number of connections to open 
+   * @param login If login() should run concurrently 
+   * @return the number of connections opened 
+   * @throws APIException if no connection could be opened or login failed
+   * @throws JetAuthException if the login response was not usable
+   */
+  public default int warmUp( final int connections, final boolean login ) 
+    throws APIException, JetAuthException
+  {
+    //..Nothing to warm up 
+    return 0;
+  }
+  
+  /**
+   * Log in again in the background before the auth token expires, so 
+   * requests never wait for login in steady state.
+   * The default implementation does nothing.
+   * @param leadMillis Refresh this many milliseconds before the token 
+   * expires.  Zero disables.
+   */
+  public default void setTokenRefresh( final long leadMillis )
+  {
+    //..Log in on demand only 
+  }
+  
+  /**
+   * Toggle single flight get requests.
+   * When enabled, identical concurrent get() calls (same url, headers and 
+   * auth token) share one request and one response.  getStream() and 
+   * getJson() are not coalesced.
+   * The default implementation does nothing.
+   * @param enabled on/off 
+   */
+  public default void setSingleFlight( final boolean enabled )
+  {
+    //..Every request is sent 
+  }
+  
+  /**
+   * Set the circuit breakers used by this instance.
+   * Requests to an endpoint with an open breaker fail immediately with 
+   * CircuitBreakerOpenException.
+   * @param breakers Circuit breakers 
+   * @throws UnsupportedOperationException if this api does not support 
+   * circuit breakers 
+   */
+  public default void setCircuitBreakers( final CircuitBreakerRegistry breakers )
+  {
+    throw new UnsupportedOperationException( "Circuit breakers are not supported" );
+  }
+  
+  /**
+   * Limit the rate of requests sent to the endpoints in some group.
+   * This applies on top of the client crawl delay and is shared by every 
+   * api using the same client.
+   * @param group Endpoint group 
+   * @param permitsPerSecond Requests per second 
+   * @param burst Requests that may be sent back to back after the group 
+   * has been idle 
+   * @throws IllegalStateException if the client does not have a rate limiter
+   * @throws UnsupportedOperationException if this api does not support 
+   * endpoint rate limits 
+   */
+  public default void setEndpointRateLimit( final JetEndpointGroup group, 
+    final double permitsPerSecond, final int burst ) 
+    throws IllegalStateException
+  {
+    throw new UnsupportedOperationException( "Endpoint rate limits are not supported" );
+  }
           
 
   /**
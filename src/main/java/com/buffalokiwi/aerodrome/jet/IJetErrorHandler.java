@@ -12,6 +12,7 @@
  */
 package com.buffalokiwi.aerodrome.jet;
 
+import com.buffalokiwi.api.CircuitBreaker;
 import com.buffalokiwi.api.IAPIResponse;
 import java.util.List;
 
@@ -24,4 +25,14 @@ public interface IJetErrorHandler
   public void onAPIError( final IAPIResponse response, final JetException e );
   
   public void onAPIError( final IAPIResponse response, final Exception e );
+  
+  /**
+   * Called when the circuit breaker for some endpoint changes state.
+   * @param endpoint Request method and endpoint template 
+   * (ie: "GET /orders/{status}")
+   * @param from Previous state
+   * @param to New state 
+   */
+  public default void onCircuitStateChange( final String endpoint, 
+    final CircuitBreaker.State from, final CircuitBreaker.State to ) {}
 }
@@ -0,0 +1,53 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import java.io.IOException;
+
+/**
+ * Keeps auth tokens between processes, so a new process can reuse a valid
+ * token instead of logging in.
+ * 
+ * Keys identify the merchant credentials.  Implementations must be safe to
+ * use from several threads, and should expect other processes to read and 
+ * write the same keys.
+ * 
+ * @author John Quinn
+ */
+public interface IJetTokenStore 
+{
+  /**
+   * Retrieve the token stored for some key 
+   * @param key key 
+   * @return token or null 
+   * @throws IOException if the store cannot be read 
+   */
+  public JetToken load( final String key ) throws IOException;
+  
+  /**
+   * Store a token, replacing any token stored for the key 
+   * @param key key 
+   * @param token token 
+   * @throws IOException if the store cannot be written 
+   */
+  public void save( final String key, final JetToken token ) throws IOException;
+  
+  /**
+   * Remove the token stored for some key 
+   * @param key key 
+   * @throws IOException if the store cannot be written 
+   */
+  public void remove( final String key ) throws IOException;
+}
@@ -18,22 +18,39 @@ import static com.buffalokiwi.aerodrome.jet.JetAPIAuth.AUTH_TEST_RESPONSE;
 import com.buffalokiwi.api.API;
 import com.buffalokiwi.api.APIException;
 import com.buffalokiwi.api.APILog;
+import com.buffalokiwi.api.CircuitBreaker;
+import com.buffalokiwi.api.CircuitBreakerOpenException;
+import com.buffalokiwi.api.CircuitBreakerRegistry;
+import com.buffalokiwi.api.GzipRequestInterceptor;
 import com.buffalokiwi.api.IAPIHttpClient;
 import com.buffalokiwi.api.IAPIResponse;
+import com.buffalokiwi.api.IResponseStreamHandler;
 import com.buffalokiwi.api.PostFile;
+import com.buffalokiwi.api.RequestRateLimiter;
+import com.buffalokiwi.api.ResponseCache;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeoutException;
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonException;
 import javax.json.JsonObject;
+import javax.json.JsonReader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -63,20 +80,106 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
   protected final JetConfig config;
   
   /**
-   * A flag for if this class is attempting to reauthenticate.
+   * Logger 
    */
-  private final AtomicBoolean isReauth = new AtomicBoolean( false );
+  private static final Log LOG = LogFactory.getLog( JetAPI.class );
   
   /**
-   * Logger 
+   * Auth lock, login handoff and error handlers for the merchant in config 
    */
-  private static final Log LOG = LogFactory.getLog( JetAPI.class );
+  private final JetAuthState auth;
   
-  private static final ReentrantLock authLock = new ReentrantLock();
+  /**
+   * Longest wait for a login in milliseconds 
+   */
+  private static final long AUTH_TIMEOUT = 60000L;
   
-  private static final AtomicInteger reauthAttempts = new AtomicInteger( 0 );
-
-  private static final List<IJetErrorHandler> errorHandlers = Collections.synchronizedList( new ArrayList<IJetErrorHandler>());
+  /**
+   * Longest wait for each connection opened by warmUp() in milliseconds
+   */
+  private static final long WARM_UP_TIMEOUT = 10000L;
+  
+  /**
+   * Publishes circuit breaker state changes to the error handlers of every
+   * merchant, since breakers are shared by endpoint 
+   */
+  private static final CircuitBreaker.IStateListener circuitListener = ( b, from, to ) -> {
+    APILog.warn( LOG, "Circuit breaker for", b.getName(), "changed from", 
+      from.name(), "to", to.name());
+    
+    for ( final JetAuthState state : JetAuthState.getAll())
+    {
+      for ( final IJetErrorHandler handler : state.getErrorHandlers())
+      {
+        handler.onCircuitStateChange( b.getName(), from, to );
+      }
+    }
+  };
+  
+  /**
+   * Circuit breakers shared by every api instance unless replaced
+   */
+  private static final CircuitBreakerRegistry defaultCircuitBreakers = createCircuitBreakers( new CircuitBreaker.Builder());
+  
+  /**
+   * Circuit breakers by endpoint 
+   */
+  private volatile CircuitBreakerRegistry circuitBreakers = defaultCircuitBreakers;
+  
+  /**
+   * If identical concurrent get requests share one exchange 
+   */
+  private volatile boolean singleFlight = false;
+  
+  /**
+   * Get requests in flight when single flight is enabled.
+   * The key is the url and headers, which include the auth token.
+   */
+  private final Map<String,CompletableFuture<IJetAPIResponse>> inFlight = new ConcurrentHashMap<>();
+  
+  /**
+   * Times background token refreshes.  The logins run on authExecutor.
+   */
+  private static final ScheduledExecutorService tokenRefresher 
+    = Executors.newSingleThreadScheduledExecutor( r -> {
+      final Thread t = new Thread( r, "JetTokenRefresh" );
+      t.setDaemon( true );
+      return t;
+    });
+  
+  /**
+   * Runs blocking logins and connection warm ups off the caller and I/O 
+   * threads.  Logins are slow, and one merchant logging in must not hold up
+   * another.
+   */
+  private static final ExecutorService authExecutor 
+    = Executors.newCachedThreadPool( r -> {
+      final Thread t = new Thread( r, "JetAuth" );
+      t.setDaemon( true );
+      return t;
+    });
+  
+  /**
+   * Wait before retrying a failed token refresh in milliseconds
+   */
+  private static final long REFRESH_RETRY_DELAY = 30000L;
+  
+  
+  /**
+   * Create a circuit breaker registry that publishes state changes to the 
+   * error handlers.
+   * Pass the result to setCircuitBreakers() to use different breaker 
+   * settings, or to isolate the breakers of some api instances.
+   * @param builder Breaker settings 
+   * @return registry
+   */
+  public static CircuitBreakerRegistry createCircuitBreakers( 
+    final CircuitBreaker.Builder builder )
+  {
+    final CircuitBreakerRegistry out = new CircuitBreakerRegistry( builder );
+    out.addListener( circuitListener );
+    return out;
+  }
   
   
   /**
@@ -92,13 +195,129 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
       throw new IllegalArgumentException( "conf cannot be null" );
     
     config = conf;
+    auth = JetAuthState.forConfig( conf );
+    applyRequestCompression();
   }
 
   
+  /**
+   * Retrieve the auth state shared by every api using the merchant 
+   * credentials in this config 
+   * @return state 
+   */
+  public JetAuthState getAuthState()
+  {
+    return auth;
+  }
+  
+  
+  /**
+   * Add an error handler.
+   * Handlers are shared by every api using the same merchant credentials.
+   * @param handler handler 
+   */
   @Override
   public void setErrorHandler( IJetErrorHandler handler )
   {
-    errorHandlers.add( handler );
+    auth.addErrorHandler( handler );
+  }
+  
+  
+  /**
+   * Limit the rate of requests sent to the endpoints in some group.
+   * This applies on top of the client crawl delay and is shared by every 
+   * api using the same client.
+   * @param group Endpoint group 
+   * @param permitsPerSecond Requests per second 
+   * @param burst Requests that may be sent back to back after the group 
+   * has been idle 
+   * @throws IllegalStateException if the client does not have a rate limiter
+   */
+  @Override
+  public void setEndpointRateLimit( final JetEndpointGroup group, 
+    final double permitsPerSecond, final int burst ) 
+    throws IllegalStateException
+  {
+    if ( group == null )
+      throw new IllegalArgumentException( "group cannot be null" );
+    
+    final RequestRateLimiter limiter = client.getRateLimiter();
+    if ( limiter == null )
+      throw new IllegalStateException( "The http client does not have a rate limiter" );
+    
+    limiter.setGroupLimit( group.name(), permitsPerSecond, burst, 
+      group.getPrefixes());
+  }
+  
+  
+  /**
+   * Toggle single flight get requests.
+   * When enabled, a get() call made while an identical get() is in flight on 
+   * this instance (same url, headers and auth token) waits for that request 
+   * and receives the same response object instead of sending its own.
+   * The shared response is safe to read from several threads.
+   * Share one api instance between workers to benefit from this.
+   * getStream() and getJson() are not coalesced, since each response body
+   * is read from the connection by a single caller.
+   * @param enabled on/off 
+   */
+  @Override
+  public void setSingleFlight( final boolean enabled )
+  {
+    singleFlight = enabled;
+  }
+  
+  
+  /**
+   * Log in again in the background before the auth token expires.
+   * The new token replaces the old one in a single step, so requests keep 
+   * using the old token until then and never wait for login.
+   * If a refresh fails, the old token is kept and the refresh is retried 
+   * every 30 seconds.
+   * 
+   * The refresh is scheduled from the token expiry in the config, now if 
+   * the config is authenticated, or otherwise after the next login.
+   * The setting belongs to the config, so every api instance using the 
+   * same config shares one refresh.  A scheduled refresh keeps the config
+   * and one of those instances reachable; set this to zero when they are 
+   * no longer needed.
+   * 
+   * @param leadMillis Refresh this many milliseconds before the token 
+   * expires.  When the lead is longer than half the remaining lifetime of 
+   * the token, the refresh happens halfway instead.  Zero disables.
+   * @throws IllegalArgumentException if leadMillis is less than zero
+   */
+  @Override
+  public void setTokenRefresh( final long leadMillis ) 
+    throws IllegalArgumentException
+  {
+    if ( leadMillis < 0 )
+      throw new IllegalArgumentException( "leadMillis must be greater than or equal to zero" );
+    
+    synchronized( auth )
+    {
+      auth.getRefresh( config ).lead = leadMillis;
+    }
+    
+    if ( leadMillis == 0 || config.isAuthenticated())
+      scheduleRefresh();
+  }
+  
+  
+  /**
+   * Set the circuit breakers used by this instance.
+   * Requests to an endpoint with an open breaker fail immediately with 
+   * CircuitBreakerOpenException.
+   * @param breakers Circuit breakers.  Use createCircuitBreakers() to have 
+   * state changes published to the error handlers.
+   */
+  @Override
+  public void setCircuitBreakers( final CircuitBreakerRegistry breakers )
+  {
+    if ( breakers == null )
+      throw new IllegalArgumentException( "breakers cannot be null" );
+    
+    circuitBreakers = breakers;
   }
   
   
@@ -117,6 +336,8 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
       throw new IllegalArgumentException( "conf cannot be null" );
     
     config = conf;
+    auth = JetAuthState.forConfig( conf );
+    applyRequestCompression();
   }
   
     
@@ -137,10 +358,42 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
     if ( conf == null )
       throw new IllegalArgumentException( "conf cannot be null" );
     
-    config = conf;    
+    config = conf;
+    auth = JetAuthState.forConfig( conf );
+    applyRequestCompression();
   }
   
 
+  /**
+   * Store the request compression thresholds from the config in the 
+   * request context.  They apply to requests made with this instance only, 
+   * on top of the client thresholds.
+   */
+  private void applyRequestCompression()
+  {
+    final Map<String,Long> thresholds = config.getRequestCompressionThresholds();
+    if ( thresholds.isEmpty())
+      return;
+    
+    final GzipRequestInterceptor compressor = new GzipRequestInterceptor();
+    
+    for ( final Map.Entry<String,Long> e : thresholds.entrySet())
+    {
+      final String template = e.getKey();
+      if ( template.equals( "*" ))
+        compressor.setDefaultThreshold( e.getValue());
+      else
+      {
+        compressor.setThreshold( template, 
+          uri -> template.equals( JetEndpointTemplates.getTemplate( uri )), 
+          e.getValue());
+      }
+    }
+    
+    context.setAttribute( GzipRequestInterceptor.CONTEXT_ATTRIBUTE, compressor );
+  }
+  
+  
   /**
    * Retrieve a HeaderBuilder instance with an Authorization header 
    * @return builder 
@@ -187,6 +440,117 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
   @Override
   public IJetAPIResponse get( final String url, 
     final Map<String,String> headers ) throws APIException, JetException
+  {
+    if ( !singleFlight )
+      return getOnce( url, headers );
+    
+    final String key = getSingleFlightKey( url, headers );
+    final CompletableFuture<IJetAPIResponse> f = new CompletableFuture<>();
+    final CompletableFuture<IJetAPIResponse> leader = inFlight.putIfAbsent( key, f );
+    
+    if ( leader != null )
+      return joinSingleFlight( leader, url );
+    
+    try {
+      final IJetAPIResponse res = getOnce( url, headers );
+      f.complete( res );
+      return res;
+    } catch( APIException | RuntimeException e ) {
+      f.completeExceptionally( e );
+      throw e;
+    } finally {
+      inFlight.remove( key, f );
+    }
+  }
+  
+  
+  /**
+   * Build the single flight key for some get request 
+   * @param url url
+   * @param headers headers 
+   * @return key 
+   */
+  private String getSingleFlightKey( final String url, 
+    final Map<String,String> headers )
+  {
+    final Map<String,String> h = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+    if ( headers != null )
+      h.putAll( headers );
+    
+    if ( !h.containsKey( "Authorization" ))
+      h.put( "Authorization", config.getAuthorizationHeaderValue());
+    
+    return url + "\n" + h.toString();
+  }
+  
+  
+  /**
+   * Wait for an identical get request sent by another thread 
+   * @param leader The request in flight 
+   * @param url url 
+   * @return The shared response 
+   * @throws APIException if the shared request failed or this thread was 
+   * interrupted 
+   */
+  private IJetAPIResponse joinSingleFlight( 
+    final CompletableFuture<IJetAPIResponse> leader, final String url ) 
+    throws APIException
+  {
+    try {
+      return leader.get();
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting for " + url, e );
+    } catch( ExecutionException e ) {
+      final Throwable cause = e.getCause();
+      if ( cause instanceof APIException )
+        throw (APIException)cause;
+      else if ( cause instanceof RuntimeException )
+        throw (RuntimeException)cause;
+      
+      throw new APIException( "Shared request for " + url + " failed", e );
+    }
+  }
+  
+  
+  /**
+   * Block until some non-blocking request completes 
+   * @param <T> result type 
+   * @param f The request 
+   * @param what What is being waited for, used in error messages 
+   * @return result 
+   * @throws APIException if the request failed or this thread was 
+   * interrupted.  APIException and JetException causes are thrown as is.
+   */
+  protected static <T> T await( final CompletableFuture<T> f, 
+    final String what ) throws APIException
+  {
+    try {
+      return f.get();
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting for " + what, e );
+    } catch( ExecutionException e ) {
+      final Throwable cause = unwrapAsyncException( e.getCause());
+      if ( cause instanceof APIException )
+        throw (APIException)cause;
+      else if ( cause instanceof RuntimeException )
+        throw (RuntimeException)cause;
+      
+      throw new APIException( "Failed to retrieve " + what, e );
+    }
+  }
+  
+  
+  /**
+   * Perform a get-based request to some endpoint
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The response
+   * @throws APIException If something goes wrong (like an IOException)
+   */
+  private IJetAPIResponse getOnce( final String url, 
+    final Map<String,String> headers ) throws APIException, JetException
   {
     IAPIResponse response = null;
     try {
@@ -205,9 +569,236 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
   }
   
   
+  /**
+   * Perform a get-based request to some endpoint and stream the response 
+   * body to some handler.
+   * Error responses are buffered and checked as usual.
+   * @param <T> Handler result type 
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @param handler Receives the decoded response body 
+   * @return The handler result 
+   * @throws APIException If something goes wrong (like an IOException)
+   * @throws JetException if jet returns an error response 
+   */
+  @Override
+  public <T> T getStream( final String url, final Map<String,String> headers,
+    final IResponseStreamHandler<T> handler ) throws APIException, JetException
+  {
+    try {
+      try {
+        return super.getStream( url, headers, handler );
+      } catch( JetException e ) {
+        //..try again
+        return super.getStream( url, tryLogin( e, headers ), handler );
+      }
+    } catch( JetException e ) {
+      notifyErrorHandlers( e.getResponse(), e );
+      throw e;
+    } catch( Exception e ) {
+      notifyErrorHandlers( null, e );
+      throw e;
+    }
+  }
+  
+  
+  /**
+   * Perform a get-based request to some endpoint and parse the response 
+   * directly from the connection into a JsonObject.
+   * This avoids buffering the response body, and is not limited by the 
+   * maximum download size.  Use this for large payloads.
+   * These requests are not coalesced by single flight and are not served 
+   * from the response cache; use get() for small, frequently read resources.
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The parsed response 
+   * @throws APIException If something goes wrong (like an IOException)
+   * @throws JetException if jet returns an error response 
+   */
+  @Override
+  public JsonObject getJson( final String url, 
+    final Map<String,String> headers ) throws APIException, JetException
+  {
+    return getStream( url, headers, new IResponseStreamHandler<JsonObject>() {
+      @Override
+      public JsonObject processStream( final IAPIResponse response, 
+        final Reader content ) throws IOException, APIException 
+      {
+        try ( final JsonReader reader = Json.createReader( content )) {
+          final JsonObject json = reader.readObject();
+          JetAPIResponse.checkErrors( json, response );
+          return json;
+        } catch( JsonException e ) {
+          throw new JetException( "Failed to parse response from " + url, e, response );
+        }
+      }
+    });
+  }
+  
+  
+  /**
+   * Called when a streaming request did not return a successful response.
+   * @param res response 
+   * @throws APIException
+   * @throws JetException 
+   */
+  @Override
+  protected void checkStreamResponse( final IAPIResponse res ) 
+    throws APIException, JetException
+  {
+    JetAPIResponse.checkErrors( res );
+  }
+  
+  
+  /**
+   * Perform a non-blocking get-based request to some endpoint.
+   * Authentication, reauthentication on 401 and error handlers behave the 
+   * same as get().
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException or JetException.
+   */
+  @Override
+  public CompletableFuture<IJetAPIResponse> getAsync( final String url, 
+    final Map<String,String> headers )
+  {
+    return executeJetAsync( h -> super.getAsync( url, h ), headers, true );
+  }
+  
+  
+  /**
+   * Send arbitrary post data to some endpoint without blocking.
+   * Authentication, reauthentication on 401 and error handlers behave the 
+   * same as post().
+   * @param url The URL
+   * @param payload Data to send 
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException or JetException.
+   */
+  @Override
+  public CompletableFuture<IJetAPIResponse> postAsync( final String url, 
+    final String payload, final Map<String,String> headers )
+  {
+    return executeJetAsync( h -> super.postAsync( url, payload, h ), headers, true );
+  }
+  
+  
+  /**
+   * Perform a non-blocking put-based request to some endpoint.
+   * Authentication, reauthentication on 401 and error handlers behave the 
+   * same as put().
+   * @param url The URL
+   * @param payload Data to send 
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException or JetException.
+   */
+  @Override
+  public CompletableFuture<IJetAPIResponse> putAsync( final String url, 
+    final String payload, final Map<String,String> headers )
+  {
+    return executeJetAsync( h -> super.putAsync( url, payload, h ), headers, true );
+  }
+  
+  
+  /**
+   * Sends some non-blocking request with a set of headers.
+   */
+  private interface AsyncRequest
+  {
+    public CompletableFuture<? extends IAPIResponse> send( 
+      final Map<String,String> headers );
+  }
+  
+  
+  /**
+   * Send some non-blocking request and turn the result into a jet response.
+   * If jet responds with 401, this will log in again on an auth thread and 
+   * resend the request once.
+   * @param request The request to send 
+   * @param headers headers 
+   * @param canRetry If the request can be sent again after logging in 
+   * @return response 
+   */
+  private CompletableFuture<IJetAPIResponse> executeJetAsync( 
+    final AsyncRequest request, final Map<String,String> headers, 
+    final boolean canRetry )
+  {
+    final CompletableFuture<IJetAPIResponse> out = new CompletableFuture<>();
+    
+    request.send( headers ).whenComplete(( res, t ) -> {
+      if ( t != null )
+      {
+        failAsync( out, null, t );
+        return;
+      }
+      
+      try {
+        out.complete( JetAPIResponse.createFromAPIResponse( res ));
+      } catch( JetException e ) {
+        if ( !canRetry || res.getStatusLine().getStatusCode() 
+          != JetAPIResponse.ResponseCode.UNAUTHORIZED.getCode())
+        {
+          failAsync( out, res, e );
+          return;
+        }
+        
+        //..Don't log in on the I/O thread or the common pool 
+        CompletableFuture.supplyAsync(() -> {
+          try {
+            return tryLogin( e, headers );
+          } catch( APIException loginE ) {
+            notifyErrorHandlers( res, loginE );
+            throw new CompletionException( loginE );
+          }
+        }, authExecutor ).thenCompose( h -> executeJetAsync( request, h, false ))
+          .whenComplete(( retryRes, retryT ) -> {
+            if ( retryT != null )
+              out.completeExceptionally( unwrapAsyncException( retryT ));
+            else
+              out.complete( retryRes );
+          });
+      }
+    });
+    
+    return out;
+  }
+  
+  
+  /**
+   * Notify the error handlers and fail some future 
+   * @param out future to fail 
+   * @param res response if any 
+   * @param t cause 
+   */
+  private void failAsync( final CompletableFuture<?> out, 
+    final IAPIResponse res, final Throwable t )
+  {
+    final Throwable cause = unwrapAsyncException( t );
+    
+    if ( cause instanceof Exception )
+      notifyErrorHandlers( res, (Exception)cause );
+    
+    out.completeExceptionally( cause );
+  }
+  
+  
+  /**
+   * Remove the CompletionException wrapper added by dependent stages 
+   * @param t exception
+   * @return cause 
+   */
+  protected static Throwable unwrapAsyncException( final Throwable t )
+  {
+    if ( t instanceof CompletionException && t.getCause() != null )
+      return t.getCause();
+    
+    return t;
+  }
+  
+  
   private void notifyErrorHandlers( final IAPIResponse res, final Exception e ) 
   {
-    for ( final IJetErrorHandler handler : errorHandlers )
+    for ( final IJetErrorHandler handler : auth.getErrorHandlers())
     {
       if ( e instanceof JetException )
         handler.onAPIError( res, (JetException)e );
@@ -388,29 +979,27 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
     else if ( response.getStatusLine().getStatusCode() 
       == JetAPIResponse.ResponseCode.UNAUTHORIZED.getCode())
     {
-      if ( reauthAttempts.get() >= 5 )
+      if ( auth.reauthAttempts.get() >= 5 )
       {
         //..This should be considered a fatal exception
         throw new JetException( "5 attempts to reauthenticate have failed; I'm not going to try again.", e );
       }
       
-      reauthAttempts.incrementAndGet();
+      //..A 401 for the login request itself is not retried 
+      if ( auth.lock.isHeldByCurrentThread())
+        throw e;
       
-      //..The request was unauthorized, try to re-authenticate
-      try {
-        login();
-        //..success
-        reauthAttempts.set( 0 );
-        
-        Map<String,String> newHeaders = new HashMap<>( headers );
-        
-        //..Add the new auth header for this request 
-        newHeaders.put( "Authorization", config.getAuthorizationHeaderValue());
-        
-        return Collections.unmodifiableMap( newHeaders );
-      } catch( JetAuthException authE ) {
-        throw new JetException( "Failed to reauthenticate", authE );
-      }
+      //..The request was unauthorized, try to re-authenticate.  Every thread 
+      //  that got a 401 for the same token shares one login.
+      final String sent = headers.get( "Authorization" );
+      authenticate(( sent != null ) ? sent : config.getAuthorizationHeaderValue());
+
+      Map<String,String> newHeaders = new HashMap<>( headers );
+
+      //..Add the new auth header for this request 
+      newHeaders.put( "Authorization", config.getAuthorizationHeaderValue());
+
+      return Collections.unmodifiableMap( newHeaders );
     }    
     else
       throw e;
@@ -431,40 +1020,203 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
   public boolean login()
     throws APIException, JetException, JetAuthException
   {
-    //..Send the authorization request and attempt to set the response data in 
-    //  the config cache.
-    APILog.info( LOG, "Attempting Login..." );
+    //..Requests made while logging in skip the auth check, and requests 
+    //  from other threads wait for this login
+    auth.lock.lock();
+    try {
+      //..Send the authorization request and attempt to set the response data in 
+      //  the config cache.
+      APILog.info( LOG, "Attempting Login..." );
+    
+      try {
+        requestToken();
+      } catch ( JetException e ) {
+        APILog.info( LOG, "Failed to authenticate :-( " );
+        APILog.info( LOG, "A \"Bad Request\" response from Jet typically means bad credentials" );
+        throw e;
+      }
+    
+      //..Test the new configuration data from the response 
+      config.testConfigurationData();
+
+      APILog.info( LOG, "Jet seems to like those credentials. Testing authentication..." );
+    
+      //..Perform a live authorization test
+      if ( !authTest())
+        config.clearAuthenticationData();
+
+      //..Return the auth state
+      if ( config.isAuthenticated())
+      {
+        APILog.info( LOG, "Success!  You're logged in." );
+      
+        scheduleRefresh();
+        return true;
+      }
+      
+      return false;
+    } finally {
+      auth.lock.unlock();
+    }
+  }
+  
+  
+  /**
+   * Prepare this instance for traffic after a restart.
+   * Pooled connections to the Jet host are opened in parallel, and when 
+   * login is set and the configuration is not authenticated, login() runs 
+   * at the same time.  The first requests after this call skip the 
+   * connection handshakes and the login round trips.
+   * @param connections Number of connections to open 
+   * @param login If login() should run concurrently with the warm up 
+   * @return the number of connections opened 
+   * @throws APIException if no connection could be opened or login failed
+   * @throws JetAuthException if the login response was not usable
+   */
+  @Override
+  public int warmUp( final int connections, final boolean login ) 
+    throws APIException, JetAuthException
+  {
+    //..This blocks until the connections are open, so keep it off the 
+    //  common pool 
+    final CompletableFuture<Integer> opened = CompletableFuture.supplyAsync(() -> {
+      try {
+        return client.warmUp( connections, WARM_UP_TIMEOUT );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    }, authExecutor );
     
     try {
-      setConfigurationDataFromLogin( post(
-        config.getAuthenticationURL(),
-        getLoginPayload().toString(),
-        JetHeaderBuilder.getJSONHeaderBuilder( "" ).build()
-      ));
-    } catch ( JetException e ) {
-      APILog.info( LOG, "Failed to authenticate :-( " );
-      APILog.info( LOG, "A \"Bad Request\" response from Jet typically means bad credentials" );
+      if ( login && !config.isAuthenticated())
+      {
+        //..Requests waiting on checkAuth() pick up the new token 
+        auth.lock.lock();
+        try {
+          if ( !config.isAuthenticated())
+            login();
+        } finally {
+          auth.lock.unlock();
+        }
+      }
+    } catch( APIException | JetAuthException | RuntimeException e ) {
+      //..Report the login failure, and keep any pool failure with it 
+      try {
+        joinWarmUp( opened );
+      } catch( APIException poolFailure ) {
+        e.addSuppressed( poolFailure );
+      }
       throw e;
     }
     
-    //..Test the new configuration data from the response 
-    config.testConfigurationData();
-
-    APILog.info( LOG, "Jet seems to like those credentials. Testing authentication..." );
-    
-    //..Perform a live authorization test
-    if ( !authTest())
-      config.clearAuthenticationData();
+    return joinWarmUp( opened );
+  }
+  
+  
+  /**
+   * Wait for a pool warm up to finish 
+   * @param opened warm up task 
+   * @return the number of connections opened 
+   * @throws APIException if no connection could be opened 
+   */
+  private static int joinWarmUp( final CompletableFuture<Integer> opened )
+    throws APIException
+  {
+    try {
+      return opened.join();
+    } catch( CompletionException e ) {
+      if ( e.getCause() instanceof APIException )
+        throw (APIException)e.getCause();
 
-    //..Return the auth state
-    if ( config.isAuthenticated())
+      throw new APIException( "Failed to warm up the connection pool", e );
+    }
+  }
+  
+  
+  /**
+   * Send the login request and store the returned token in the config
+   * @throws APIException if the request fails 
+   * @throws JetException if the response is an error or is missing data
+   */
+  private void requestToken() throws APIException, JetException
+  {
+    setConfigurationDataFromLogin( post(
+      config.getAuthenticationURL(),
+      getLoginPayload().toString(),
+      JetHeaderBuilder.getJSONHeaderBuilder( "" ).build()
+    ));
+  }
+  
+  
+  /**
+   * Schedule the next background token refresh, replacing any scheduled 
+   * refresh.  Nothing is scheduled when refresh is disabled.
+   */
+  private void scheduleRefresh()
+  {
+    scheduleRefresh( -1 );
+  }
+  
+  
+  /**
+   * Schedule the next background token refresh for the config, replacing 
+   * any refresh scheduled by any api using it.  Nothing is scheduled when 
+   * refresh is disabled.
+   * @param delayMillis Delay or -1 to use the token expiry 
+   */
+  private void scheduleRefresh( final long delayMillis )
+  {
+    synchronized( auth )
     {
-      APILog.info( LOG, "Success!  You're logged in." );
-      
-      return true;
+      final JetAuthState.Refresh r = auth.getRefresh( config );
+      if ( r.task != null )
+      {
+        r.task.cancel( false );
+        r.task = null;
+      }
+
+      if ( r.lead == 0 )
+        return;
+
+      long delay = delayMillis;
+      if ( delay < 0 )
+      {
+        final long remaining = config.getTokenExpires().getTime() 
+          - System.currentTimeMillis();
+        delay = Math.max( 0L, Math.max( remaining - r.lead, remaining / 2 ));
+      }
+
+      APILog.debug( LOG, "Next token refresh in", String.valueOf( delay ), "ms" );
+
+      r.task = tokenRefresher.schedule(() -> authExecutor.execute( 
+        this::refreshToken ), delay, TimeUnit.MILLISECONDS );
+    }
+  }
+  
+  
+  /**
+   * Obtain a new token in the background.
+   * The auth lock is held, so requests finding an expired token wait for 
+   * this login instead of starting another.
+   */
+  private void refreshToken()
+  {
+    auth.lock.lock();
+    try {
+      requestToken();
+      config.testConfigurationData();
+      APILog.info( LOG, "Auth token refreshed.  Expires", 
+        String.valueOf( config.getTokenExpires()));
+    } catch( APIException | JetAuthException | RuntimeException e ) {
+      APILog.warn( LOG, e, "Failed to refresh the auth token.  Retrying in", 
+        String.valueOf( REFRESH_RETRY_DELAY ), "ms" );
+      scheduleRefresh( REFRESH_RETRY_DELAY );
+      return;
+    } finally {
+      auth.lock.unlock();
     }
     
-    return false;
+    scheduleRefresh();
   }
   
   
@@ -495,6 +1247,7 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
   {
     //..Turn it into JSON
     final JsonObject res = response.getJsonObject();
+    final String oldAuth = config.getAuthorizationHeaderValue();
 
     try {
       //..Set the authentication data
@@ -508,6 +1261,14 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
         "Authentication response is missing id_token, token_type or "
         + "expires_on. Check authentication response", e );      
     }    
+    
+    //..Responses cached under the old token can never match again 
+    final ResponseCache cache = getResponseCache();
+    if ( cache != null && oldAuth != null 
+      && !oldAuth.equals( config.getAuthorizationHeaderValue()))
+    {
+      cache.removeAuthorization( oldAuth );
+    }
   }
 
 
@@ -536,7 +1297,168 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
     if ( !config.isAuthenticated())
       checkAuth( hr );
     
-    return super.executeRequest( hr );
+    final CircuitBreaker breaker = getCircuitBreaker( hr );
+    final long ticket = acquireCircuit( breaker );
+    final long start = System.nanoTime();
+    
+    try {
+      final IAPIResponse res = super.executeRequest( hr );
+      recordCircuit( breaker, ticket, start, res.getStatusLine().getStatusCode());
+      return res;
+    } catch( APIException | RuntimeException e ) {
+      recordCircuit( breaker, ticket, start, e );
+      throw e;
+    }
+  }
+  
+  
+  /**
+   * Execute a HttpRequest with the non-blocking client 
+   * @param hr request
+   * @return response
+   */
+  @Override
+  protected CompletableFuture<IAPIResponse> executeRequestAsync( 
+    final HttpUriRequest hr ) 
+  {
+    if ( !config.isAuthenticated())
+    {
+      try {
+        checkAuth( hr );
+      } catch( APIException e ) {
+        return failedFuture( e );
+      }
+    }
+    
+    final CircuitBreaker breaker = getCircuitBreaker( hr );
+    final long ticket;
+    try {
+      ticket = acquireCircuit( breaker );
+    } catch( CircuitBreakerOpenException e ) {
+      return failedFuture( e );
+    }
+    
+    final long start = System.nanoTime();
+    
+    return super.executeRequestAsync( hr ).whenComplete(( res, t ) -> {
+      if ( t != null )
+        recordCircuit( breaker, ticket, start, unwrapAsyncException( t ));
+      else
+        recordCircuit( breaker, ticket, start, res.getStatusLine().getStatusCode());
+    });
+  }
+  
+  
+  /**
+   * Execute a HttpRequest and stream the response body to some handler 
+   * @param <T> Handler result type 
+   * @param hr request
+   * @param handler Stream handler 
+   * @return handler result 
+   * @throws APIException If the request failed
+   */
+  @Override
+  protected <T> T executeStreamRequest( final HttpUriRequest hr, 
+    final IResponseStreamHandler<T> handler ) throws APIException
+  {
+    if ( !config.isAuthenticated())
+      checkAuth( hr );
+    
+    final CircuitBreaker breaker = getCircuitBreaker( hr );
+    final long ticket = acquireCircuit( breaker );
+    final long start = System.nanoTime();
+    
+    try {
+      final T out = super.executeStreamRequest( hr, handler );
+      recordCircuit( breaker, ticket, start, 
+        JetAPIResponse.ResponseCode.SUCCESS.getCode());
+      return out;
+    } catch( APIException | RuntimeException e ) {
+      recordCircuit( breaker, ticket, start, e );
+      throw e;
+    }
+  }
+  
+  
+  /**
+   * Retrieve the circuit breaker for the endpoint of some request 
+   * @param hr request 
+   * @return breaker 
+   */
+  private CircuitBreaker getCircuitBreaker( final HttpUriRequest hr )
+  {
+    return circuitBreakers.get( getEndpointName( hr ));
+  }
+  
+  
+  /**
+   * Name endpoints by their Jet path template, so skus and order ids 
+   * share a single set of metrics.
+   * @param hr request 
+   * @return endpoint name (ie: "GET /merchant-skus/{id}/inventory")
+   */
+  @Override
+  protected String getEndpointName( final HttpUriRequest hr )
+  {
+    return hr.getMethod() + " " + JetEndpointTemplates.getTemplate( hr.getURI());
+  }
+  
+  
+  /**
+   * Ask a breaker for permission to send a request
+   * @param breaker breaker 
+   * @return ticket 
+   * @throws CircuitBreakerOpenException if the breaker is open 
+   */
+  private static long acquireCircuit( final CircuitBreaker breaker )
+    throws CircuitBreakerOpenException
+  {
+    final long ticket = breaker.tryAcquire();
+    if ( ticket == -1 )
+      throw new CircuitBreakerOpenException( breaker.getName());
+    
+    return ticket;
+  }
+  
+  
+  /**
+   * Record the outcome of a request that received a response.
+   * 429 and 5xx responses are failures.
+   * @param breaker breaker 
+   * @param ticket ticket from acquireCircuit()
+   * @param start System.nanoTime() when the request was sent 
+   * @param status HTTP status 
+   */
+  private static void recordCircuit( final CircuitBreaker breaker, 
+    final long ticket, final long start, final int status )
+  {
+    final long nanos = System.nanoTime() - start;
+    if ( status == JetAPIResponse.ResponseCode.TOO_MANY_REQUESTS.getCode() || status >= 500 )
+      breaker.onFailure( ticket, nanos );
+    else
+      breaker.onSuccess( ticket, nanos );
+  }
+  
+  
+  /**
+   * Record the outcome of a request that failed.
+   * Jet error responses count as successful calls unless the status is 429 
+   * or 5xx.
+   * @param breaker breaker 
+   * @param ticket ticket from acquireCircuit()
+   * @param start System.nanoTime() when the request was sent 
+   * @param t cause 
+   */
+  private static void recordCircuit( final CircuitBreaker breaker, 
+    final long ticket, final long start, final Throwable t )
+  {
+    if ( t instanceof JetException && ((JetException)t).getResponse() != null )
+    {
+      recordCircuit( breaker, ticket, start, 
+        ((JetException)t).getResponse().getStatusLine().getStatusCode());
+    }
+    else
+      breaker.onFailure( ticket, System.nanoTime() - start );
   }
   
   
@@ -544,66 +1466,150 @@ public class JetAPI extends API implements IJetAPI, IJetAPIAuth
    * Checks the authentication state, and if it needs to be authenticated, this
    * locks the api and authenticates. 
    * @param hr
-   * @throws APIException 
+   * @throws APIException if login failed, or if it did not finish within 
+   * the auth timeout 
    */
   private void checkAuth( final HttpUriRequest hr ) throws APIException
   {
-    try {      
-      if ( !authLock.isHeldByCurrentThread() && authLock.tryLock( 1000L, TimeUnit.MILLISECONDS ) && !isReauth.get())
-      {
-        APILog.debug( LOG, "Thread " + Thread.currentThread().getName() + " obtained the authentication lock" );
-        try {
-          if ( !config.isAuthenticated())
-          {
-            performReauth( hr );
-          }
-        } finally {
-          try {
-            APILog.debug( LOG, "Thread " + Thread.currentThread().getName() + " has released the authentication lock" );
-            authLock.unlock();            
-          } catch( Exception e ) {
-            APILog.debug( LOG, e, "Thread " + Thread.currentThread().getName() + " Caused an exception while trying to release it's lock" );
-          }
-        }
-      } 
-      else 
-      {
-        if ( !authLock.isHeldByCurrentThread())
-          APILog.debug(  LOG, "Thread " + Thread.currentThread().getName() + " is waiting for authentication" );
-        
-        int ct = 0;
-        while( !authLock.isHeldByCurrentThread() && !config.isAuthenticated() && !isReauth.get())
-        {
-          Thread.sleep( 1000L );          
-        }
-
-        hr.setHeader( "Authorization", config.getAuthorizationHeaderValue());
+    //..Requests made by login() itself 
+    if ( !auth.lock.isHeldByCurrentThread())
+      authenticate( null );
+    
+    hr.setHeader( "Authorization", config.getAuthorizationHeaderValue());
+  }
+  
+  
+  /**
+   * Log in if the token is expired, or if it is still some token that jet
+   * rejected.
+   * 
+   * The first thread to find the token expired or rejected logs in.  Every 
+   * other thread waits on a shared future and resumes as soon as the new 
+   * token is stored, or fails with the same exception as the login.
+   * @param rejectedAuth The authorization header value of a request that 
+   * was rejected with a 401, or null 
+   * @throws APIException if login failed, or if it did not finish within 
+   * the auth timeout 
+   */
+  private void authenticate( final String rejectedAuth ) throws APIException
+  {
+    final JetAuthState.Login mine = new JetAuthState.Login( config );
+    JetAuthState.Login current;
+    do {
+      current = auth.inFlight.get();
+    } while ( current == null && !auth.inFlight.compareAndSet( null, mine ));
+    
+    if ( current == null )
+    {
+      //..This thread logs in 
+      try {
+        performReauth( rejectedAuth );
+        mine.done.complete( null );
+      } catch( APIException | RuntimeException e ) {
+        mine.done.completeExceptionally( e );
+        throw e;
+      } finally {
+        auth.inFlight.compareAndSet( mine, null );
       }
-
+    }
+    else
+    {
+      APILog.debug( LOG, "Thread", Thread.currentThread().getName(), 
+        "is waiting for authentication" );
+      awaitAuth( current.done );
+      
+      //..Another config with the same credentials logged in, which does 
+      //  not update this one 
+      if ( current.config != config && needsLogin( rejectedAuth ))
+        authenticate( rejectedAuth );
+    }
+  }
+  
+  
+  /**
+   * Detect if the config needs a new token 
+   * @param rejectedAuth The authorization header value of a request that 
+   * was rejected with a 401, or null 
+   * @return if the token is expired or is still the rejected one 
+   */
+  private boolean needsLogin( final String rejectedAuth )
+  {
+    return !config.isAuthenticated() || ( rejectedAuth != null 
+      && rejectedAuth.equals( config.getAuthorizationHeaderValue()));
+  }
+  
+  
+  /**
+   * Wait for a login started by another thread 
+   * @param login login 
+   * @throws APIException if the login failed or timed out 
+   */
+  private static void awaitAuth( final CompletableFuture<Void> login ) 
+    throws APIException
+  {
+    try {
+      login.get( AUTH_TIMEOUT, TimeUnit.MILLISECONDS );
     } catch( InterruptedException e ) {
-      //..do nothing 
-    } catch( Exception e ) {
-      throw e;
-    }        
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting for authentication", e );
+    } catch( TimeoutException e ) {
+      throw new APIException( "Timed out after " + AUTH_TIMEOUT 
+        + " ms waiting for another thread to authenticate", e );
+    } catch( ExecutionException e ) {
+      if ( e.getCause() instanceof APIException )
+        throw (APIException)e.getCause();
+      
+      throw new APIException( "Authentication failed", e );
+    }
   }
     
   
   /**
    * Make the auth calls.
-   * If successul, the new auth header is added to hr.
-   * @param hr request
-   * @throws APIException 
+   * Waits for the auth lock, so a login in progress elsewhere (ie: a 
+   * background refresh) is not repeated.
+   * @param rejectedAuth The authorization header value of a request that 
+   * was rejected with a 401, or null.  Nothing is done if the config token
+   * changed since that request was sent.
+   * @throws APIException if login failed, or if the auth lock could not be
+   * obtained within the auth timeout 
    */
-  private void performReauth( final HttpUriRequest hr ) throws APIException
+  private void performReauth( final String rejectedAuth ) throws APIException
   {
-    isReauth.set( true );               
     try {
-      login();
-      hr.setHeader( "Authorization", config.getAuthorizationHeaderValue());
+      if ( !auth.lock.tryLock( AUTH_TIMEOUT, TimeUnit.MILLISECONDS ))
+      {
+        throw new APIException( "Timed out after " + AUTH_TIMEOUT 
+          + " ms waiting for the authentication lock" );
+      }
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting for authentication", e );
+    }
+    
+    try {
+      //..Another thread or process may have logged in already 
+      if ( !needsLogin( rejectedAuth ))
+        return;
+      
+      //..A stored token may be the one that was rejected
+      if ( rejectedAuth == null && config.loadStoredAuthenticationData())
+        scheduleRefresh();
+      else
+      {
+        if ( rejectedAuth != null )
+          auth.reauthAttempts.incrementAndGet();
+        
+        if ( !login())
+          throw new APIException( "Failed to reauthenticate: the login was not accepted" );
+        
+        auth.reauthAttempts.set( 0 );
+      }
     } catch( JetAuthException e ) {
       APILog.error( LOG, "Failed to reauthenticate" );
+      throw new APIException( "Failed to reauthenticate", e );
     } finally {
-      isReauth.set( false );    
+      auth.lock.unlock();
     }
   }
   
@@ -14,14 +14,19 @@
 
 package com.buffalokiwi.aerodrome.jet;
 
+import com.buffalokiwi.api.APILog;
 import com.buffalokiwi.api.APIResponse;
 import com.buffalokiwi.api.IAPIResponse;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import javax.json.JsonArray;
+import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.Header;
@@ -52,6 +57,7 @@ public class JetAPIResponse extends APIResponse implements IJetAPIResponse
     FORBIDDEN( 403, "Forbidden" ),
     NOT_FOUND( 404, "Not Found" ),
     METHOD_NOT_ALLOWED( 405, "Method Not Allowed" ),
+    TOO_MANY_REQUESTS( 429, "Too Many Requests" ),
     INTERNAL_SERVER_ERROR( 500, "Internal Server Error" ),
     UNAVAILABLE( 503, "Unavailable" );
 
@@ -176,6 +182,29 @@ public class JetAPIResponse extends APIResponse implements IJetAPIResponse
    */
   public static final JsonObject checkErrors( IAPIResponse res ) throws JetException
   {
+    //..Large bodies are left on disk for the caller to stream, and are only 
+    //  scanned for errors here 
+    if ( res.isSpilled())
+    {
+      try ( final JsonParser parser = res.getJsonParser()) {
+        checkErrors( parser, res );
+      } catch( IOException e ) {
+        throw new JetException( "Failed to read the response content", e, res );
+      } catch( JsonException e ) {
+        //..Not json; the status is checked below 
+        APILog.debug( LOG, "Spilled response is not a json object" );
+      }
+      
+      if ( res.isFailure())
+      {
+        throw new JetException( "FAILURE: Jet responded with " 
+          + String.valueOf( res.getStatusLine().getStatusCode())
+          + " - " + res.getStatusLine().getReasonPhrase(), null, res );
+      }
+      
+      return null;
+    }
+    
     String content = res.getResponseContent();
     JsonObject json = null;
 
@@ -223,6 +252,80 @@ public class JetAPIResponse extends APIResponse implements IJetAPIResponse
   }  
   
   
+  /**
+   * Scan the top level keys of a streamed response body for errors.
+   * Other values are skipped without being built.
+   * @param parser parser positioned before the body 
+   * @param apiRes response 
+   * @throws JetException if there's an issue 
+   */
+  private static void checkErrors( final JsonParser parser, 
+    final IAPIResponse apiRes ) throws JetException
+  {
+    if ( !parser.hasNext() || parser.next() != Event.START_OBJECT )
+      return;
+    
+    while ( parser.hasNext())
+    {
+      if ( parser.next() != Event.KEY_NAME )
+        return;
+      
+      final String key = parser.getString();
+      final Event value = parser.next();
+      
+      if ( key.equals( "errors" ) && value == Event.START_ARRAY )
+      {
+        final ArrayList<String> messages = new ArrayList<>();
+        int depth = 1;
+        while ( depth > 0 )
+        {
+          final Event e = parser.next();
+          if ( e == Event.START_ARRAY || e == Event.START_OBJECT )
+          {
+            if ( depth == 1 )
+              messages.add( "" );
+            depth++;
+          }
+          else if ( e == Event.END_ARRAY || e == Event.END_OBJECT )
+            depth--;
+          else if ( depth == 1 )
+            messages.add(( e == Event.VALUE_STRING ) ? parser.getString() : "" );
+        }
+        
+        throw new JetException( messages, null, apiRes );
+      }
+      else if ( key.equals( "error" ) && value == Event.VALUE_STRING )
+      {
+        throw new JetException( parser.getString(), null, apiRes );
+      }
+      
+      skipValue( parser, value );
+    }
+  }
+  
+  
+  /**
+   * Skip past an array or object value 
+   * @param parser parser 
+   * @param value the event that started the value 
+   */
+  private static void skipValue( final JsonParser parser, final Event value )
+  {
+    if ( value != Event.START_ARRAY && value != Event.START_OBJECT )
+      return;
+    
+    int depth = 1;
+    while ( depth > 0 )
+    {
+      final Event e = parser.next();
+      if ( e == Event.START_ARRAY || e == Event.START_OBJECT )
+        depth++;
+      else if ( e == Event.END_ARRAY || e == Event.END_OBJECT )
+        depth--;
+    }
+  }
+  
+  
   /**
    * If the response was successful
    * @return is success
@@ -0,0 +1,262 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Authentication state shared by every api using the same merchant 
+ * credentials.
+ * 
+ * Each merchant gets its own auth lock, login handoff, reauth counter and
+ * error handlers, so one merchant logging in never blocks requests for 
+ * another.  The tokens themselves are kept by each JetConfig.
+ * 
+ * @author John Quinn
+ */
+public class JetAuthState 
+{
+  /**
+   * A login in progress 
+   */
+  static class Login
+  {
+    /**
+     * The config being logged in 
+     */
+    final JetConfig config;
+    
+    /**
+     * Completes when the login is done 
+     */
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    
+    Login( final JetConfig config )
+    {
+      this.config = config;
+    }
+  }
+  
+  
+  /**
+   * Background token refresh settings for one config.  Guarded by the 
+   * state.
+   */
+  static class Refresh
+  {
+    /**
+     * Refresh this many milliseconds before the token expires.  Zero 
+     * disables.
+     */
+    long lead = 0;
+    
+    /**
+     * The next refresh or null 
+     */
+    ScheduledFuture<?> task = null;
+  }
+  
+  
+  /**
+   * State by merchant key 
+   */
+  private static final Map<String,JetAuthState> STATES = new ConcurrentHashMap<>();
+  
+  /**
+   * Merchant key 
+   */
+  private final String key;
+  
+  /**
+   * Merchant id 
+   */
+  private final String merchantId;
+  
+  /**
+   * Held while logging in 
+   */
+  final ReentrantLock lock = new ReentrantLock();
+  
+  /**
+   * The login in progress, shared by every thread waiting for it.
+   * null when nobody is logging in.
+   */
+  final AtomicReference<Login> inFlight = new AtomicReference<>();
+  
+  /**
+   * Consecutive failed attempts to reauthenticate after a 401 
+   */
+  final AtomicInteger reauthAttempts = new AtomicInteger( 0 );
+  
+  /**
+   * Token refreshes by config.  Configs are compared by identity.  
+   * Guarded by this.
+   */
+  private final Map<JetConfig,Refresh> refreshes = new IdentityHashMap<>();
+  
+  /**
+   * Error handlers 
+   */
+  private final List<IJetErrorHandler> errorHandlers 
+    = Collections.synchronizedList( new ArrayList<>());
+  
+  
+  /**
+   * Retrieve the state for the merchant credentials in some config 
+   * @param config config 
+   * @return state 
+   */
+  public static JetAuthState forConfig( final JetConfig config )
+  {
+    if ( config == null )
+      throw new IllegalArgumentException( "config cannot be null" );
+    
+    return STATES.computeIfAbsent( getKey( config ), 
+      k -> new JetAuthState( k, config.getMerchantId()));
+  }
+  
+  
+  /**
+   * Forget the state for the merchant credentials in some config and cancel
+   * its scheduled token refreshes.  Api instances still using the state 
+   * keep working, but a new api for these credentials gets a new state.
+   * @param config config 
+   */
+  public static void remove( final JetConfig config )
+  {
+    if ( config == null )
+      throw new IllegalArgumentException( "config cannot be null" );
+    
+    final JetAuthState state = STATES.remove( getKey( config ));
+    if ( state == null )
+      return;
+    
+    synchronized( state )
+    {
+      for ( final Refresh r : state.refreshes.values())
+      {
+        r.lead = 0;
+        if ( r.task != null )
+          r.task.cancel( false );
+      }
+      
+      state.refreshes.clear();
+    }
+  }
+  
+  
+  /**
+   * Retrieve the state of every merchant seen so far 
+   * @return states 
+   */
+  static List<JetAuthState> getAll()
+  {
+    return new ArrayList<>( STATES.values());
+  }
+  
+  
+  /**
+   * Build the key identifying the merchant credentials in some config 
+   * @param config config 
+   * @return key 
+   */
+  static String getKey( final JetConfig config )
+  {
+    return config.getHost() + '\n' + config.getUsername() + '\n' 
+      + config.getMerchantId();
+  }
+  
+  
+  private JetAuthState( final String key, final String merchantId )
+  {
+    this.key = key;
+    this.merchantId = merchantId;
+  }
+  
+  
+  /**
+   * Retrieve the merchant id 
+   * @return id 
+   */
+  public String getMerchantId()
+  {
+    return merchantId;
+  }
+  
+  
+  /**
+   * Retrieve the token refresh settings for some config.  Call while 
+   * holding the lock on this state.
+   * @param config config 
+   * @return refresh 
+   */
+  Refresh getRefresh( final JetConfig config )
+  {
+    return refreshes.computeIfAbsent( config, c -> new Refresh());
+  }
+  
+  
+  /**
+   * Detect if a login is in progress for this merchant 
+   * @return is logging in 
+   */
+  public boolean isLoggingIn()
+  {
+    return lock.isLocked();
+  }
+  
+  
+  /**
+   * Add an error handler for this merchant
+   * @param handler handler 
+   */
+  public void addErrorHandler( final IJetErrorHandler handler )
+  {
+    if ( handler == null )
+      throw new IllegalArgumentException( "handler cannot be null" );
+    
+    errorHandlers.add( handler );
+  }
+  
+  
+  /**
+   * Retrieve the error handlers for this merchant 
+   * @return handlers 
+   */
+  public List<IJetErrorHandler> getErrorHandlers()
+  {
+    synchronized( errorHandlers )
+    {
+      return new ArrayList<>( errorHandlers );
+    }
+  }
+  
+  
+  @Override
+  public String toString()
+  {
+    return "JetAuthState{" + merchantId + "}";
+  }
+}
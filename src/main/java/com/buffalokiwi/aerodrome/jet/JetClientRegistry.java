@@ -0,0 +1,158 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import com.buffalokiwi.api.IAPIHttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Creates and keeps api instances for several merchant accounts in one 
+ * process.
+ * 
+ * Every api shares the same http client, so connections, rate limits and 
+ * the adaptive throttle are shared.  Each merchant keeps its own config, and
+ * therefore its own token, along with its own auth state, so one merchant 
+ * logging in never blocks another.
+ * 
+ * Instances are keyed by the merchant credentials and the api class.  The 
+ * config used is the one passed the first time an instance is requested.
+ * 
+ * @author John Quinn
+ */
+public class JetClientRegistry 
+{
+  /**
+   * Shared client 
+   */
+  private final IAPIHttpClient client;
+  
+  /**
+   * Api instances by merchant key and class 
+   */
+  private final Map<String,JetAPI> apis = new ConcurrentHashMap<>();
+  
+  
+  /**
+   * Create a new JetClientRegistry 
+   * @param client Client shared by every merchant 
+   */
+  public JetClientRegistry( final IAPIHttpClient client )
+  {
+    if ( client == null )
+      throw new IllegalArgumentException( "client cannot be null" );
+    
+    this.client = client;
+  }
+  
+  
+  /**
+   * Retrieve the shared client 
+   * @return client 
+   */
+  public IAPIHttpClient getClient()
+  {
+    return client;
+  }
+  
+  
+  /**
+   * Retrieve the JetAPI instance for some merchant, creating it if needed 
+   * @param config Merchant config 
+   * @return api 
+   */
+  public JetAPI get( final JetConfig config )
+  {
+    return get( config, JetAPI.class, JetAPI::new );
+  }
+  
+  
+  /**
+   * Retrieve an api instance for some merchant, creating it if needed.
+   * ie: registry.get( config, JetAPIOrder.class, JetAPIOrder::new )
+   * @param <T> api type 
+   * @param config Merchant config 
+   * @param type api class 
+   * @param factory Creates the api from the shared client and the config 
+   * @return api 
+   */
+  public <T extends JetAPI> T get( final JetConfig config, final Class<T> type,
+    final BiFunction<IAPIHttpClient,JetConfig,T> factory )
+  {
+    if ( config == null )
+      throw new IllegalArgumentException( "config cannot be null" );
+    else if ( type == null )
+      throw new IllegalArgumentException( "type cannot be null" );
+    else if ( factory == null )
+      throw new IllegalArgumentException( "factory cannot be null" );
+    
+    return type.cast( apis.computeIfAbsent( 
+      JetAuthState.getKey( config ) + '\n' + type.getName(), 
+      k -> factory.apply( client, config )));
+  }
+  
+  
+  /**
+   * Retrieve every api instance created so far 
+   * @return apis 
+   */
+  public List<JetAPI> getAll()
+  {
+    return new ArrayList<>( apis.values());
+  }
+  
+  
+  /**
+   * Remove every api instance for some merchant, stop their background
+   * token refreshes and forget the merchant auth state 
+   * @param config Merchant config 
+   */
+  public void remove( final JetConfig config )
+  {
+    if ( config == null )
+      throw new IllegalArgumentException( "config cannot be null" );
+    
+    final String prefix = JetAuthState.getKey( config ) + '\n';
+    apis.entrySet().removeIf( e -> {
+      if ( !e.getKey().startsWith( prefix ))
+        return false;
+      
+      e.getValue().setTokenRefresh( 0 );
+      return true;
+    });
+    
+    JetAuthState.remove( config );
+  }
+  
+  
+  /**
+   * Stop every background token refresh, forget every api instance and the
+   * auth state of their merchants, and shut down the shared client.
+   */
+  public void shutdown()
+  {
+    for ( final JetAPI api : getAll())
+    {
+      api.setTokenRefresh( 0 );
+      JetAuthState.remove( api.config );
+    }
+    
+    apis.clear();
+    client.shutdown();
+  }
+}
@@ -14,7 +14,9 @@
 
 package com.buffalokiwi.aerodrome.jet;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
 /**
  *
@@ -62,6 +64,18 @@ public interface JetConfig
    * @return allow untrusted SSL certificates
    */
   public boolean getAllowUntrustedSSL();
+  
+  
+  /**
+   * Retrieve the smallest request body gzipped for each endpoint template 
+   * (ie: "/merchant-skus/{sku}/shippingexception").  The "*" key applies 
+   * to endpoints without their own setting.
+   * @return thresholds in bytes 
+   */
+  public default Map<String,Long> getRequestCompressionThresholds()
+  {
+    return Collections.emptyMap();
+  }
 
   
   /**
@@ -321,6 +335,17 @@ public interface JetConfig
   public void clearAuthenticationData();
   
   
+  /**
+   * Load the authentication data from the token store, if one is configured.
+   * This is used to skip the login when another process already logged in.
+   * @return if a valid token was loaded 
+   */
+  public default boolean loadStoredAuthenticationData()
+  {
+    return false;
+  }
+  
+  
   /**
    * Retrieve the authorization header value to send with each request.
    * This can only be called following a call to setAuthenticationData().
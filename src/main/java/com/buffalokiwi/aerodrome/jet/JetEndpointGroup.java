@@ -0,0 +1,55 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+/**
+ * Groups of Jet endpoints that share limits.
+ * Each group lists the path prefixes of the endpoints it contains.
+ * @author John Quinn
+ */
+public enum JetEndpointGroup
+{
+  AUTH( "/Token", "/authcheck" ),
+  ORDERS( "/orders", "/returns", "/refunds" ),
+  PRODUCTS( "/merchant-skus", "/files" ),
+  TAXONOMY( "/taxonomy" ),
+  SETTLEMENT( "/settlement" );
+
+
+  /**
+   * Path prefixes
+   */
+  private final String[] prefixes;
+
+
+  /**
+   * Create a new JetEndpointGroup instance
+   * @param prefixes path prefixes
+   */
+  JetEndpointGroup( final String... prefixes )
+  {
+    this.prefixes = prefixes;
+  }
+
+
+  /**
+   * Retrieve the path prefixes of the endpoints in this group
+   * @return prefixes
+   */
+  public String[] getPrefixes()
+  {
+    return prefixes.clone();
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import java.net.URI;
+
+/**
+ * Maps request paths back to the Jet endpoint templates they were built from
+ * (ie: "/merchant-skus/abc/price" becomes "/merchant-skus/{sku}/price").
+ * 
+ * Templates are matched against the end of the path, so the client host may 
+ * carry a base path.  When several templates match, the one with the most 
+ * literal segments wins.  Paths that do not match a template resolve to 
+ * their endpoint group name, or "OTHER".
+ * 
+ * @author John Quinn
+ */
+public final class JetEndpointTemplates 
+{
+  /**
+   * Default Jet endpoint paths.  Query strings are not part of the template.
+   */
+  private static final String[] TEMPLATES = new String[] {
+    "/Token",
+    "/authcheck",
+    "/merchant-skus",
+    "/merchant-skus/{sku}",
+    "/merchant-skus/{sku}/status/archive",
+    "/merchant-skus/{sku}/image",
+    "/merchant-skus/{sku}/price",
+    "/merchant-skus/{sku}/inventory",
+    "/merchant-skus/{sku}/shippingexception",
+    "/merchant-skus/{sku}/variation",
+    "/merchant-skus/{sku}/returnsexception",
+    "/merchant-skus/{sku}/salesdata",
+    "/files/{file_id}",
+    "/files/uploaded",
+    "/files/uploadToken",
+    "/orders/{status}",
+    "/orders/directedCancel",
+    "/orders/withoutShipmentDetail/{jet_defined_order_id}",
+    "/orders/{jet_defined_order_id}/acknowledge",
+    "/orders/{jet_defined_order_id}/shipped",
+    "/returns/{status}",
+    "/returns/state/{jet_defined_return_id}",
+    "/returns/{jet_defined_return_id}/complete",
+    "/refunds/{status}",
+    "/refunds/state/{refund_authorization_id}",
+    "/refunds/{order_id}/{alt_refund_id}",
+    "/taxonomy/links/{version}",
+    "/taxonomy/nodes/{node_id}",
+    "/taxonomy/nodes/{jet_node_id}/attributes",
+    "/settlement/{days}",
+    "/settlement/report/{settlement_id}"
+  };
+  
+  /**
+   * Template segments 
+   */
+  private static final String[][] SEGMENTS = new String[TEMPLATES.length][];
+  
+  static {
+    for ( int i = 0; i < TEMPLATES.length; i++ )
+    {
+      SEGMENTS[i] = TEMPLATES[i].substring( 1 ).split( "/" );
+    }
+  }
+  
+  
+  /**
+   * Retrieve the endpoint template for some uri 
+   * @param uri uri 
+   * @return template, group name or "OTHER"
+   */
+  public static String getTemplate( final URI uri )
+  {
+    final String path = ( uri.getRawPath() == null ) ? "" : uri.getRawPath();
+    final String[] parts = trimSlashes( path ).split( "/" );
+    
+    int best = -1;
+    int bestLiterals = -1;
+    
+    for ( int i = 0; i < SEGMENTS.length; i++ )
+    {
+      final int literals = match( SEGMENTS[i], parts );
+      if ( literals > bestLiterals 
+        || ( literals == bestLiterals && literals >= 0 
+          && SEGMENTS[i].length > SEGMENTS[best].length ))
+      {
+        best = i;
+        bestLiterals = literals;
+      }
+    }
+    
+    if ( best != -1 && bestLiterals >= 0 )
+      return TEMPLATES[best];
+    
+    for ( final JetEndpointGroup g : JetEndpointGroup.values())
+    {
+      for ( final String p : g.getPrefixes())
+      {
+        if ( path.contains( p + "/" ) || path.endsWith( p ))
+          return g.name();
+      }
+    }
+    
+    return "OTHER";
+  }
+  
+  
+  /**
+   * Match a template against the end of a path
+   * @param template template segments 
+   * @param parts path segments 
+   * @return number of literal segments matched, or -1 if there is no match
+   */
+  private static int match( final String[] template, final String[] parts )
+  {
+    if ( parts.length < template.length )
+      return -1;
+    
+    final int offset = parts.length - template.length;
+    int literals = 0;
+    for ( int i = 0; i < template.length; i++ )
+    {
+      final String t = template[i];
+      final String p = parts[offset + i];
+      
+      if ( t.startsWith( "{" ))
+      {
+        if ( p.isEmpty())
+          return -1;
+      }
+      else if ( t.equals( p ))
+        literals++;
+      else
+        return -1;
+    }
+    
+    return literals;
+  }
+  
+  
+  /**
+   * Remove leading and trailing slashes 
+   * @param path path
+   * @return trimmed path 
+   */
+  private static String trimSlashes( final String path )
+  {
+    int start = 0;
+    int end = path.length();
+    while ( start < end && path.charAt( start ) == '/' )
+      start++;
+    
+    while ( end > start && path.charAt( end - 1 ) == '/' )
+      end--;
+    
+    return path.substring( start, end );
+  }
+  
+  
+  private JetEndpointTemplates()
+  {
+    //..No instances 
+  }
+}
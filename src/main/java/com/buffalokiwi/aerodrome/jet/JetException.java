@@ -15,6 +15,7 @@
 package com.buffalokiwi.aerodrome.jet;
 
 import com.buffalokiwi.api.APIException;
+import com.buffalokiwi.api.AdaptiveThrottle;
 import com.buffalokiwi.api.IAPIResponse;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -114,6 +115,35 @@ public class JetException extends APIException
   {
     return response;
   }
+  
+  
+  /**
+   * Test if Jet rejected the request because too many requests were sent 
+   * (429) or the service was unavailable (503).
+   * @return if the request can be sent again after backing off 
+   */
+  public boolean isThrottled()
+  {
+    if ( response == null || response.getStatusLine() == null )
+      return false;
+    
+    final int code = response.getStatusLine().getStatusCode();
+    return code == 429 || code == 503;
+  }
+  
+  
+  /**
+   * Retrieve how long Jet asked the client to wait before sending another 
+   * request via the Retry-After header.
+   * @return milliseconds or -1 if Jet did not say 
+   */
+  public long getRetryAfterMillis()
+  {
+    if ( response == null )
+      return -1;
+    
+    return AdaptiveThrottle.getRetryAfterMillis( response );
+  }
 
   /**
    * Retrieve the API Error messages
@@ -0,0 +1,125 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * An auth token returned by the Jet login endpoint
+ * 
+ * @author John Quinn
+ */
+public class JetToken 
+{
+  /**
+   * The token (id_token)
+   */
+  private final String token;
+  
+  /**
+   * Token type (token_type)
+   */
+  private final String tokenType;
+  
+  /**
+   * Expiry as returned by Jet (expires_on)
+   */
+  private final String expires;
+  
+  /**
+   * Parsed expiry 
+   */
+  private final Date expiresDate;
+  
+  
+  /**
+   * Create a new JetToken 
+   * @param token Auth token (id_token)
+   * @param tokenType Token type (token_type)
+   * @param expires Token expiration (expires_on)
+   * @throws IllegalArgumentException if anything is empty or expires cannot
+   * be converted 
+   */
+  public JetToken( final String token, final String tokenType, 
+    final String expires ) throws IllegalArgumentException
+  {
+    if ( token == null || token.trim().isEmpty())
+      throw new IllegalArgumentException( "token can't be empty" );
+    else if ( tokenType == null || tokenType.trim().isEmpty())
+      throw new IllegalArgumentException( "tokenType can't be empty" );
+    else if ( expires == null )
+      throw new IllegalArgumentException( "expires can't be null" );
+    
+    final DateFormat fmt = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH );
+    fmt.setTimeZone( TimeZone.getTimeZone( "UTC" ));
+    try {
+      expiresDate = fmt.parse( expires );
+    } catch( ParseException e ) {
+      throw new IllegalArgumentException( "Failed to convert " + expires + " to Date" );
+    }
+    
+    this.token = token;
+    this.tokenType = tokenType;
+    this.expires = expires;
+  }
+  
+  
+  public String getToken()
+  {
+    return token;
+  }
+  
+  
+  public String getTokenType()
+  {
+    return tokenType;
+  }
+  
+  
+  /**
+   * Retrieve the expiry as returned by Jet 
+   * @return expires_on 
+   */
+  public String getExpires()
+  {
+    return expires;
+  }
+  
+  
+  /**
+   * Retrieve the expiry 
+   * @return date 
+   */
+  public Date getExpiresDate()
+  {
+    return new Date( expiresDate.getTime());
+  }
+  
+  
+  /**
+   * Detect if this token is valid for at least some time 
+   * @param millis time in milliseconds 
+   * @return if the token expires later than millis from now
+   */
+  public boolean isValidFor( final long millis )
+  {
+    return expiresDate.getTime() - System.currentTimeMillis() > millis;
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A token store that keeps tokens in memory.
+ * Share an instance between configs to share tokens within one process, or
+ * use it as a stand-in for a remote store in tests.
+ * 
+ * @author John Quinn
+ */
+public class MemoryJetTokenStore implements IJetTokenStore
+{
+  /**
+   * Tokens by key 
+   */
+  private final Map<String,JetToken> tokens = new ConcurrentHashMap<>();
+  
+  
+  @Override
+  public JetToken load( final String key )
+  {
+    return tokens.get( key );
+  }
+  
+  
+  @Override
+  public void save( final String key, final JetToken token )
+  {
+    tokens.put( key, token );
+  }
+  
+  
+  @Override
+  public void remove( final String key )
+  {
+    tokens.remove( key );
+  }
+}
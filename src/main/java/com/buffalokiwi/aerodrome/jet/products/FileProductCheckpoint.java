@@ -0,0 +1,123 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A checkpoint stored in a text file with one completed sku per line.
+ * 
+ * Skus are appended and flushed as they complete, so a crash loses at most 
+ * the sku being written.  Delete the file to start over.
+ * 
+ * @author John Quinn
+ */
+public class FileProductCheckpoint implements IProductCheckpoint, Closeable
+{
+  /**
+   * Completed skus 
+   */
+  private final Set<String> done = Collections.newSetFromMap( new ConcurrentHashMap<>());
+  
+  /**
+   * Checkpoint file 
+   */
+  private final BufferedWriter out;
+  
+  
+  /**
+   * Open a checkpoint file, creating it if it does not exist 
+   * @param file file 
+   * @throws IOException if the file cannot be read or opened for writing 
+   */
+  public FileProductCheckpoint( final File file ) throws IOException
+  {
+    if ( file == null )
+      throw new IllegalArgumentException( "file cannot be null" );
+    
+    if ( file.exists())
+    {
+      try ( final BufferedReader in = Files.newBufferedReader( 
+        file.toPath(), StandardCharsets.UTF_8 ))
+      {
+        String line;
+        while (( line = in.readLine()) != null )
+        {
+          if ( !line.isEmpty())
+            done.add( line );
+        }
+      }
+    }
+    
+    out = new BufferedWriter( new OutputStreamWriter( 
+      new FileOutputStream( file, true ), StandardCharsets.UTF_8 ));
+  }
+  
+  
+  /**
+   * Retrieve the number of completed skus 
+   * @return count 
+   */
+  public int getDoneCount()
+  {
+    return done.size();
+  }
+  
+  
+  @Override
+  public boolean isDone( final String sku )
+  {
+    return done.contains( sku );
+  }
+  
+  
+  @Override
+  public void markDone( final String sku ) throws IOException
+  {
+    if ( sku.indexOf( '\n' ) != -1 || sku.indexOf( '\r' ) != -1 )
+      throw new IllegalArgumentException( "sku cannot contain line breaks" );
+    
+    if ( !done.add( sku ))
+      return;
+    
+    synchronized( out )
+    {
+      out.write( sku );
+      out.newLine();
+      out.flush();
+    }
+  }
+  
+  
+  @Override
+  public void close() throws IOException
+  {
+    synchronized( out )
+    {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,271 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fingerprints of the last payloads Jet acknowledged for each merchant 
+ * sku.
+ * 
+ * A fingerprint is the first 64 bits of the SHA-256 of a payload, so the 
+ * table costs a few dozen bytes per sku and a payload only needs to be 
+ * sent again when its fingerprint changes.
+ * 
+ * A table created with a file is loaded from it, and save() writes it back
+ * through a temporary file, so a crash never leaves a partial table.
+ * 
+ * This is thread safe.
+ * 
+ * @author John Quinn
+ */
+public class FingerprintTable 
+{
+  /**
+   * Payloads tracked for each sku 
+   */
+  public static enum Field
+  {
+    PRICE,
+    INVENTORY
+  }
+  
+  
+  /**
+   * File header and format version 
+   */
+  private static final int MAGIC = 0x414A4631;
+  
+  /**
+   * Marks a field without a fingerprint 
+   */
+  private static final long NONE = 0L;
+  
+  /**
+   * Table file or null 
+   */
+  private final File file;
+  
+  /**
+   * sku to fingerprint by field ordinal 
+   */
+  private final Map<String,long[]> entries = new HashMap<>();
+  
+  
+  /**
+   * Compute the fingerprint of some payload 
+   * @param payload payload 
+   * @return fingerprint 
+   */
+  public static long fingerprint( final String payload )
+  {
+    final byte[] h;
+    try {
+      h = MessageDigest.getInstance( "SHA-256" ).digest( 
+        payload.getBytes( StandardCharsets.UTF_8 ));
+    } catch( NoSuchAlgorithmException e ) {
+      //..Every jvm has SHA-256
+      throw new IllegalStateException( e );
+    }
+    
+    long out = 0;
+    for ( int i = 0; i < 8; i++ )
+    {
+      out = ( out << 8 ) | ( h[i] & 0xFF );
+    }
+    
+    return ( out == NONE ) ? 1L : out;
+  }
+  
+  
+  /**
+   * Create a table that is kept in memory only 
+   */
+  public FingerprintTable()
+  {
+    this.file = null;
+  }
+  
+  
+  /**
+   * Create a table stored in some file.
+   * The table is loaded if the file exists.
+   * @param file file 
+   * @throws IOException if the file cannot be read 
+   */
+  public FingerprintTable( final File file ) throws IOException
+  {
+    if ( file == null )
+      throw new IllegalArgumentException( "file cannot be null" );
+    
+    this.file = file;
+    
+    if ( file.exists())
+      load();
+  }
+  
+  
+  /**
+   * Test if some payload fingerprint matches the last one acknowledged 
+   * @param sku merchant sku 
+   * @param field payload 
+   * @param fingerprint fingerprint 
+   * @return if the payload does not need to be sent 
+   */
+  public synchronized boolean matches( final String sku, final Field field, 
+    final long fingerprint )
+  {
+    final long[] e = entries.get( sku );
+    return e != null && e[field.ordinal()] == fingerprint;
+  }
+  
+  
+  /**
+   * Record an acknowledged payload fingerprint 
+   * @param sku merchant sku 
+   * @param field payload 
+   * @param fingerprint fingerprint 
+   */
+  public synchronized void put( final String sku, final Field field, 
+    final long fingerprint )
+  {
+    entries.computeIfAbsent( sku, k -> new long[Field.values().length])
+      [field.ordinal()] = fingerprint;
+  }
+  
+  
+  /**
+   * Forget a sku, so its payloads are sent on the next sync 
+   * @param sku merchant sku 
+   */
+  public synchronized void remove( final String sku )
+  {
+    entries.remove( sku );
+  }
+  
+  
+  /**
+   * Forget every sku 
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+  }
+  
+  
+  /**
+   * Retrieve the number of skus in the table 
+   * @return count 
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+  
+  
+  /**
+   * Write the table to its file.  Does nothing for memory only tables.
+   * @throws IOException if the file cannot be written 
+   */
+  public void save() throws IOException
+  {
+    if ( file == null )
+      return;
+    
+    final Path target = file.toPath().toAbsolutePath();
+    final Path tmp = Files.createTempFile( target.getParent(), "fingerprints", ".tmp" );
+    
+    try {
+      try ( final DataOutputStream out = new DataOutputStream( 
+        new BufferedOutputStream( Files.newOutputStream( tmp ))))
+      {
+        synchronized( this )
+        {
+          out.writeInt( MAGIC );
+          out.writeInt( Field.values().length );
+          out.writeInt( entries.size());
+          for ( final Map.Entry<String,long[]> e : entries.entrySet())
+          {
+            out.writeUTF( e.getKey());
+            for ( final long f : e.getValue())
+            {
+              out.writeLong( f );
+            }
+          }
+        }
+      }
+      
+      try {
+        Files.move( tmp, target, StandardCopyOption.ATOMIC_MOVE, 
+          StandardCopyOption.REPLACE_EXISTING );
+      } catch( AtomicMoveNotSupportedException e ) {
+        Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING );
+      }
+    } finally {
+      Files.deleteIfExists( tmp );
+    }
+  }
+  
+  
+  /**
+   * Read the table from its file 
+   * @throws IOException if the file is not a fingerprint table 
+   */
+  private void load() throws IOException
+  {
+    try ( final DataInputStream in = new DataInputStream( 
+      new BufferedInputStream( Files.newInputStream( file.toPath()))))
+    {
+      if ( in.readInt() != MAGIC )
+        throw new IOException( file + " is not a fingerprint table" );
+      
+      final int fields = in.readInt();
+      final int count = in.readInt();
+      if ( fields < 1 || count < 0 )
+        throw new IOException( file + " is corrupt" );
+      
+      for ( int i = 0; i < count; i++ )
+      {
+        final String sku = in.readUTF();
+        final long[] e = new long[Field.values().length];
+        for ( int j = 0; j < fields; j++ )
+        {
+          final long f = in.readLong();
+          if ( j < e.length )
+            e[j] = f;
+        }
+        
+        entries.put( sku, e );
+      }
+    } catch( EOFException e ) {
+      throw new IOException( file + " is truncated", e );
+    }
+  }
+}
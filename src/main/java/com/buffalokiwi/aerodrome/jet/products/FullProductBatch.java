@@ -0,0 +1,268 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import com.buffalokiwi.api.APILog;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Drives a batch product retrieval.
+ * 
+ * Skus are pulled from the iterator as slots free up, so no more than 
+ * concurrency products are in flight and the skus are never all held in 
+ * memory.  Each product is itself five requests, which pass through the 
+ * rate limiter and throttle of the client like any other request.
+ * 
+ * Cancelling the future stops new skus from being started.
+ * 
+ * @author John Quinn
+ */
+class FullProductBatch 
+{
+  /**
+   * Log 
+   */
+  private static final Log LOG = LogFactory.getLog( FullProductBatch.class );
+  
+  /**
+   * Api 
+   */
+  private final IJetAPIProduct api;
+  
+  /**
+   * Skus.  Only accessed by the thread draining.
+   */
+  private final Iterator<String> skus;
+  
+  /**
+   * Max products in flight 
+   */
+  private final int concurrency;
+  
+  /**
+   * Checkpoint or null 
+   */
+  private final IProductCheckpoint checkpoint;
+  
+  /**
+   * Listener 
+   */
+  private final IFullProductListener listener;
+  
+  /**
+   * Completes when every sku is done 
+   */
+  private final CompletableFuture<ProductBatchSummary> result = new CompletableFuture<>();
+  
+  /**
+   * Products in flight 
+   */
+  private final AtomicInteger inFlight = new AtomicInteger();
+  
+  /**
+   * Pending drain requests.  Only the thread that raises this from zero 
+   * drains, which keeps skus started by completions from recursing.
+   */
+  private final AtomicInteger drainRequests = new AtomicInteger();
+  
+  private final AtomicInteger retrieved = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicInteger skipped = new AtomicInteger();
+  
+  /**
+   * If the iterator is exhausted.  Only accessed by the thread draining.
+   */
+  private boolean exhausted = false;
+  
+  
+  /**
+   * Create a new FullProductBatch 
+   * @param api api 
+   * @param skus skus 
+   * @param concurrency Max products in flight 
+   * @param checkpoint checkpoint or null 
+   * @param listener listener 
+   */
+  FullProductBatch( final IJetAPIProduct api, final Iterator<String> skus, 
+    final int concurrency, final IProductCheckpoint checkpoint,
+    final IFullProductListener listener )
+  {
+    if ( skus == null )
+      throw new IllegalArgumentException( "skus cannot be null" );
+    else if ( concurrency < 1 )
+      throw new IllegalArgumentException( "concurrency must be greater than zero" );
+    else if ( listener == null )
+      throw new IllegalArgumentException( "listener cannot be null" );
+    
+    this.api = api;
+    this.skus = skus;
+    this.concurrency = concurrency;
+    this.checkpoint = checkpoint;
+    this.listener = listener;
+  }
+  
+  
+  /**
+   * Start the batch 
+   * @return summary 
+   */
+  CompletableFuture<ProductBatchSummary> start()
+  {
+    drain();
+    return result;
+  }
+  
+  
+  /**
+   * Start skus while there are free slots, and complete the result once 
+   * the iterator is exhausted and nothing is in flight 
+   */
+  private void drain()
+  {
+    if ( drainRequests.getAndIncrement() != 0 )
+      return;
+    
+    do {
+      while ( !exhausted && !result.isDone() && inFlight.get() < concurrency )
+      {
+        final String sku;
+        try {
+          if ( !skus.hasNext())
+          {
+            exhausted = true;
+            break;
+          }
+          
+          sku = skus.next();
+        } catch( RuntimeException e ) {
+          exhausted = true;
+          result.completeExceptionally( e );
+          break;
+        }
+        
+        if ( checkpoint != null && sku != null && checkpoint.isDone( sku ))
+        {
+          skipped.incrementAndGet();
+          continue;
+        }
+        
+        inFlight.incrementAndGet();
+        fetch( sku );
+      }
+      
+      if (( exhausted || result.isDone()) && inFlight.get() == 0 )
+      {
+        result.complete( new ProductBatchSummary( 
+          retrieved.get(), failed.get(), skipped.get()));
+      }
+    } while ( drainRequests.decrementAndGet() != 0 );
+  }
+  
+  
+  /**
+   * Retrieve a single product 
+   * @param sku sku 
+   */
+  private void fetch( final String sku )
+  {
+    CompletableFuture<FullProductResult> f;
+    try {
+      f = api.getFullProductAsync( sku );
+    } catch( RuntimeException e ) {
+      //..ie: an empty sku 
+      f = new CompletableFuture<>();
+      f.completeExceptionally( e );
+    }
+    
+    f.whenComplete(( res, t ) -> {
+      try {
+        if ( t == null )
+          onProduct( sku, res );
+        else
+          onError( sku, t );
+      } finally {
+        inFlight.decrementAndGet();
+        drain();
+      }
+    });
+  }
+  
+  
+  /**
+   * Handle a retrieved product.  The sku is only marked done if the 
+   * listener accepted it and no part other than the price failed.
+   * @param sku sku 
+   * @param res product 
+   */
+  private void onProduct( final String sku, final FullProductResult res )
+  {
+    try {
+      listener.onProduct( sku, res );
+    } catch( RuntimeException e ) {
+      APILog.error( LOG, e, "Product listener failed for sku", sku );
+      failed.incrementAndGet();
+      return;
+    }
+    
+    //..A missing price is only logged by getFullProduct(), but any other 
+    //  missing part means the sku has to be retrieved again 
+    for ( final FullProductResult.Part part : res.getErrors().keySet())
+    {
+      if ( part != FullProductResult.Part.PRICE )
+      {
+        failed.incrementAndGet();
+        return;
+      }
+    }
+    
+    retrieved.incrementAndGet();
+    
+    if ( checkpoint != null )
+    {
+      try {
+        checkpoint.markDone( sku );
+      } catch( IOException | RuntimeException e ) {
+        APILog.warn( LOG, e, "Failed to checkpoint sku", sku );
+      }
+    }
+  }
+  
+  
+  /**
+   * Handle a failed product 
+   * @param sku sku 
+   * @param t reason 
+   */
+  private void onError( final String sku, final Throwable t )
+  {
+    failed.incrementAndGet();
+    
+    final Throwable cause = ( t instanceof CompletionException && t.getCause() != null )
+      ? t.getCause() : t;
+    
+    try {
+      listener.onError( sku, ( cause instanceof Exception ) 
+        ? (Exception)cause : new CompletionException( cause ));
+    } catch( RuntimeException e ) {
+      APILog.error( LOG, e, "Product listener failed for sku", sku );
+    }
+  }
+}
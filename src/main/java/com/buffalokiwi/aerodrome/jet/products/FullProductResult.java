@@ -0,0 +1,115 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The result of retrieving a product along with its price, variations,
+ * returns exceptions and shipping exceptions.
+ * 
+ * The product is always present.  Any other part that could not be 
+ * retrieved is missing from the product, and the reason is available from
+ * getErrors().
+ * 
+ * @author John Quinn
+ */
+public class FullProductResult 
+{
+  /**
+   * Optional parts of a full product 
+   */
+  public static enum Part
+  {
+    PRICE,
+    VARIATIONS,
+    RETURNS_EXCEPTIONS,
+    SHIPPING_EXCEPTIONS
+  }
+  
+  
+  /**
+   * The product 
+   */
+  private final ProductRec product;
+  
+  /**
+   * Parts that failed 
+   */
+  private final Map<Part,Exception> errors;
+  
+  
+  /**
+   * Create a new FullProductResult 
+   * @param product product 
+   * @param errors Parts that failed 
+   */
+  FullProductResult( final ProductRec product, 
+    final Map<Part,Exception> errors )
+  {
+    if ( product == null )
+      throw new IllegalArgumentException( "product cannot be null" );
+    else if ( errors == null )
+      throw new IllegalArgumentException( "errors cannot be null" );
+    
+    this.product = product;
+    this.errors = ( errors.isEmpty()) 
+      ? Collections.emptyMap() 
+      : Collections.unmodifiableMap( new EnumMap<>( errors ));
+  }
+  
+  
+  /**
+   * Retrieve the product, including every part that was retrieved 
+   * @return product 
+   */
+  public ProductRec getProduct()
+  {
+    return product;
+  }
+  
+  
+  /**
+   * Retrieve the parts that failed 
+   * @return part to failure 
+   */
+  public Map<Part,Exception> getErrors()
+  {
+    return errors;
+  }
+  
+  
+  /**
+   * Retrieve why some part failed 
+   * @param part part 
+   * @return exception or null if the part was retrieved 
+   */
+  public Exception getError( final Part part )
+  {
+    return errors.get( part );
+  }
+  
+  
+  /**
+   * Detect if every part was retrieved 
+   * @return if nothing failed 
+   */
+  public boolean isComplete()
+  {
+    return errors.isEmpty();
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+/**
+ * Receives the results of a batch product retrieval as each sku completes.
+ * 
+ * Methods are called from the threads completing the requests, possibly 
+ * several at once, and should return quickly.
+ * 
+ * @author John Quinn
+ */
+public interface IFullProductListener 
+{
+  /**
+   * Called when a product was retrieved.  Some parts of the product may 
+   * have failed; see FullProductResult.getErrors().
+   * @param sku sku 
+   * @param result product 
+   */
+  public void onProduct( final String sku, final FullProductResult result );
+  
+  
+  /**
+   * Called when a product could not be retrieved 
+   * @param sku sku 
+   * @param e reason 
+   */
+  public void onError( final String sku, final Exception e );
+}
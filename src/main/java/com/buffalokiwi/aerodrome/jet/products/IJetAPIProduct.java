@@ -16,7 +16,10 @@ import com.buffalokiwi.aerodrome.jet.IJetAPI;
 import com.buffalokiwi.aerodrome.jet.IJetAPIResponse;
 import com.buffalokiwi.aerodrome.jet.JetException;
 import com.buffalokiwi.api.APIException;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  *
@@ -71,6 +74,47 @@ public interface IJetAPIProduct extends IJetAPI {
    */
   public ProductRec getFullProduct( final String sku ) throws APIException, JetException;
 
+  /**
+   * Retrieve product data, pricing, variations, returns exceptions and
+   * shipping exceptions without blocking.  The requests are sent in parallel.
+   * The future fails if the product cannot be retrieved; other failures are
+   * reported by FullProductResult.getErrors().
+   * @param sku product sku
+   * @return Product data and any failed parts
+   */
+  public CompletableFuture<FullProductResult> getFullProductAsync( final String sku );
+
+  /**
+   * Retrieve full products for a set of skus, reporting each one to the
+   * listener as it completes.
+   * Skus are pulled from the iterator as products complete, so a stream of
+   * skus can be passed with stream.iterator().  Skus marked done by the
+   * checkpoint are skipped.  A product is marked done once the listener 
+   * returns normally, unless a part other than the price failed; those 
+   * skus are counted as failed and retried on the next run.
+   * @param skus skus
+   * @param concurrency Max products in flight
+   * @param checkpoint checkpoint or null
+   * @param listener Receives each product or error
+   * @return Completes with the totals once every sku is done.  Cancel to
+   * stop starting new skus.
+   */
+  public CompletableFuture<ProductBatchSummary> getFullProducts( 
+    final Iterator<String> skus, final int concurrency, 
+    final IProductCheckpoint checkpoint, final IFullProductListener listener );
+
+  /**
+   * Retrieve full products for a set of skus, reporting each one to the
+   * listener as it completes.
+   * @param skus skus
+   * @param concurrency Max products in flight
+   * @param listener Receives each product or error
+   * @return Completes with the totals once every sku is done
+   */
+  public CompletableFuture<ProductBatchSummary> getFullProducts( 
+    final Collection<String> skus, final int concurrency, 
+    final IFullProductListener listener );
+
   /**
    * Retrieve product data
    * @param sku Sku to retrieve
@@ -147,6 +191,30 @@ public interface IJetAPIProduct extends IJetAPI {
    */
   public List<String> getSkuList( final int offset, final int limit ) throws APIException, JetException;
 
+  /**
+   * Retrieve a page of the sku list without blocking.
+   * @param offset The first SKU # you wish to appear in the return
+   * @param limit Max skus to return
+   * @return skus
+   */
+  public CompletableFuture<List<String>> getSkuListAsync( final int offset, final int limit );
+
+  /**
+   * Retrieve a cursor over the entire sku list that retrieves the next
+   * pages while the current one is consumed.
+   * @param pageSize Skus per page
+   * @param prefetch Pages retrieved ahead of the consumer
+   * @return cursor
+   */
+  public SkuCursor getSkuCursor( final int pageSize, final int prefetch );
+
+  /**
+   * Retrieve a cursor over the entire sku list using the default page size
+   * and prefetch.
+   * @return cursor
+   */
+  public SkuCursor getSkuCursor();
+
   /**
    * Get sales data.
    *
@@ -330,6 +398,38 @@ public interface IJetAPIProduct extends IJetAPI {
    * @throws JetException 
    */
   public IJetAPIResponse sendPutProductPrice( final String sku, final ProductPriceRec price ) throws APIException, JetException;
+
+  /**
+   * Send product price data without blocking.
+   * @param product product data
+   * @return response.  Fails with APIException or JetException.
+   */
+  public CompletableFuture<IJetAPIResponse> sendPutProductPriceAsync( final ProductRec product );
+
+  /**
+   * Send product inventory data without blocking.
+   * @param product product data
+   * @return response.  Fails with APIException or JetException.
+   */
+  public CompletableFuture<IJetAPIResponse> sendPutProductInventoryAsync( final ProductRec product );
+
+  /**
+   * Send product inventory data
+   * @param sku merchant sku
+   * @param inventory inventory data
+   * @return response
+   * @throws APIException
+   * @throws JetException
+   */
+  public IJetAPIResponse sendPutProductInventory( final String sku, final ProductInventoryRec inventory ) throws APIException, JetException;
+
+  /**
+   * Send product inventory data without blocking.
+   * @param sku merchant sku
+   * @param inventory inventory data
+   * @return response.  Fails with APIException or JetException.
+   */
+  public CompletableFuture<IJetAPIResponse> sendPutProductInventoryAsync( final String sku, final ProductInventoryRec inventory );
   
   /**
    * Send shipping exceptions to jet
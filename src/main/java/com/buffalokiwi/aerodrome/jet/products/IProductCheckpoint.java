@@ -0,0 +1,43 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import java.io.IOException;
+
+/**
+ * Records which skus of a batch product retrieval were completed, so an 
+ * interrupted batch can be resumed without retrieving them again.
+ * 
+ * Implementations must be thread safe.
+ * 
+ * @author John Quinn
+ */
+public interface IProductCheckpoint 
+{
+  /**
+   * Detect if some sku was completed by an earlier run 
+   * @param sku sku 
+   * @return if the sku can be skipped 
+   */
+  public boolean isDone( final String sku );
+  
+  
+  /**
+   * Record that some sku was completed 
+   * @param sku sku 
+   * @throws IOException if the checkpoint cannot be written 
+   */
+  public void markDone( final String sku ) throws IOException;
+}
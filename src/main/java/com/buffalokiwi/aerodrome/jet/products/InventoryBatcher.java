@@ -0,0 +1,633 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import com.buffalokiwi.aerodrome.jet.IJetAPIResponse;
+import com.buffalokiwi.api.APIException;
+import com.buffalokiwi.api.APILog;
+import com.buffalokiwi.api.PostFile;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.entity.ContentType;
+
+/**
+ * A write-behind buffer for per-sku inventory updates.
+ * 
+ * Updates are held until the batch reaches the max batch size or the 
+ * oldest pending update reaches the flush interval.  Repeated updates to a
+ * sku replace each other, so only the latest quantity is sent.
+ * 
+ * Batches of at least the bulk threshold are written to a 
+ * BulkInventoryFileGenerator file and sent through the bulk upload flow 
+ * (upload token, upload, uploaded files post), which is three requests 
+ * however many skus change.  Smaller batches are sent as one inventory put 
+ * per sku.
+ * 
+ * Batches are sent one at a time, in order.  Jet processes bulk files 
+ * asynchronously, so after a bulk file is uploaded the next batch is held 
+ * until Jet reports the file as processed.  Otherwise a put sent after the 
+ * upload could be overwritten by the older quantity in the file.  If the 
+ * file is still not processed after the bulk process timeout, a warning is 
+ * logged and the next batch is sent anyway.  Failed batches are reported to
+ * the listener and are not retried.
+ * 
+ * Close the batcher to send anything pending.
+ * 
+ * @author John Quinn
+ */
+public class InventoryBatcher implements Closeable
+{
+  /**
+   * Receives batch results.
+   * Called from the batcher thread; must return quickly.
+   */
+  public static interface IListener
+  {
+    /**
+     * Called after a batch was accepted by Jet 
+     * @param skus skus in the batch 
+     * @param bulk if the batch was sent as a bulk file 
+     */
+    public void onFlushed( final Collection<String> skus, final boolean bulk );
+    
+    /**
+     * Called when some skus could not be sent 
+     * @param skus skus that failed 
+     * @param e reason 
+     */
+    public void onError( final Collection<String> skus, final Exception e );
+  }
+  
+  
+  /**
+   * Logs batch errors 
+   */
+  public static final IListener LOG_LISTENER = new IListener() {
+    @Override
+    public void onFlushed( final Collection<String> skus, final boolean bulk ) {}
+
+    @Override
+    public void onError( final Collection<String> skus, final Exception e )
+    {
+      APILog.error( LOG, e, "Failed to send inventory for", 
+        String.valueOf( skus.size()), "skus" );
+    }
+  };
+  
+  
+  /**
+   * Builds InventoryBatcher instances
+   */
+  public static class Builder
+  {
+    private IJetAPIProduct productAPI = null;
+    private IJetAPIBulkProductUpload bulkAPI = null;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private int bulkThreshold = DEFAULT_BULK_THRESHOLD;
+    private long bulkPollInterval = DEFAULT_BULK_POLL_INTERVAL;
+    private long bulkProcessTimeout = DEFAULT_BULK_PROCESS_TIMEOUT;
+    private File tempDir = null;
+    private IListener listener = LOG_LISTENER;
+    
+    
+    /**
+     * Set the api used for inventory puts 
+     * @param api api 
+     * @return this 
+     */
+    public Builder setProductAPI( final IJetAPIProduct api )
+    {
+      this.productAPI = api;
+      return this;
+    }
+    
+    
+    /**
+     * Set the api used for bulk uploads.  Without one, every batch is sent
+     * as individual puts.
+     * @param api api 
+     * @return this 
+     */
+    public Builder setBulkAPI( final IJetAPIBulkProductUpload api )
+    {
+      this.bulkAPI = api;
+      return this;
+    }
+    
+    
+    /**
+     * Set the number of pending skus that triggers a flush.  Defaults to 
+     * 10000.
+     * @param size skus 
+     * @return this 
+     */
+    public Builder setMaxBatchSize( final int size )
+    {
+      this.maxBatchSize = size;
+      return this;
+    }
+    
+    
+    /**
+     * Set the longest time an update is held before it is sent.  Defaults
+     * to 30 seconds.
+     * @param millis milliseconds 
+     * @return this 
+     */
+    public Builder setFlushInterval( final long millis )
+    {
+      this.flushInterval = millis;
+      return this;
+    }
+    
+    
+    /**
+     * Set the smallest batch sent as a bulk file.  Defaults to 100.
+     * @param skus skus 
+     * @return this 
+     */
+    public Builder setBulkThreshold( final int skus )
+    {
+      this.bulkThreshold = skus;
+      return this;
+    }
+    
+    
+    /**
+     * Set the time between bulk file status checks.  Defaults to 10 seconds.
+     * @param millis milliseconds 
+     * @return this 
+     */
+    public Builder setBulkPollInterval( final long millis )
+    {
+      this.bulkPollInterval = millis;
+      return this;
+    }
+    
+    
+    /**
+     * Set the longest time the next batch waits for a bulk file to be 
+     * processed.  Defaults to 30 minutes.
+     * @param millis milliseconds 
+     * @return this 
+     */
+    public Builder setBulkProcessTimeout( final long millis )
+    {
+      this.bulkProcessTimeout = millis;
+      return this;
+    }
+    
+    
+    /**
+     * Set the directory for bulk files.  Defaults to java.io.tmpdir.
+     * @param dir directory 
+     * @return this 
+     */
+    public Builder setTempDir( final File dir )
+    {
+      this.tempDir = dir;
+      return this;
+    }
+    
+    
+    /**
+     * Set the listener.  Defaults to LOG_LISTENER.
+     * @param listener listener 
+     * @return this 
+     */
+    public Builder setListener( final IListener listener )
+    {
+      this.listener = listener;
+      return this;
+    }
+    
+    
+    /**
+     * Build the batcher 
+     * @return batcher 
+     * @throws IllegalArgumentException if the product api or listener is 
+     * missing, or a threshold is less than one 
+     */
+    public InventoryBatcher build() throws IllegalArgumentException
+    {
+      return new InventoryBatcher( this );
+    }
+  }
+  
+  
+  /**
+   * Default number of pending skus that triggers a flush 
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+  
+  /**
+   * Default longest time an update is held in milliseconds
+   */
+  public static final long DEFAULT_FLUSH_INTERVAL = 30000L;
+  
+  /**
+   * Default smallest batch sent as a bulk file 
+   */
+  public static final int DEFAULT_BULK_THRESHOLD = 100;
+  
+  /**
+   * Default time between bulk file status checks in milliseconds
+   */
+  public static final long DEFAULT_BULK_POLL_INTERVAL = 10000L;
+  
+  /**
+   * Default longest wait for a bulk file to be processed in milliseconds
+   */
+  public static final long DEFAULT_BULK_PROCESS_TIMEOUT = 1800000L;
+  
+  /**
+   * Log 
+   */
+  private static final Log LOG = LogFactory.getLog( InventoryBatcher.class );
+  
+  private final IJetAPIProduct productAPI;
+  private final IJetAPIBulkProductUpload bulkAPI;
+  private final int maxBatchSize;
+  private final long flushInterval;
+  private final int bulkThreshold;
+  private final long bulkPollInterval;
+  private final long bulkProcessTimeout;
+  private final File tempDir;
+  private final IListener listener;
+  
+  /**
+   * Sends batches one at a time and runs the flush timer 
+   */
+  private final ScheduledExecutorService executor 
+    = Executors.newSingleThreadScheduledExecutor( r -> {
+      final Thread t = new Thread( r, "JetInventoryBatcher" );
+      t.setDaemon( true );
+      return t;
+    });
+  
+  /**
+   * Pending updates by sku.  Guarded by this.
+   */
+  private Map<String,ProductInventoryRec> pending = new LinkedHashMap<>();
+  
+  /**
+   * Flush timer for the pending batch or null.  Guarded by this.
+   */
+  private ScheduledFuture<?> timer = null;
+  
+  /**
+   * If this was closed.  Guarded by this.
+   */
+  private boolean closed = false;
+  
+  /**
+   * Jet file id of the last bulk file, until it is processed, or null.  
+   * Only used by the batcher thread.
+   */
+  private String pendingFileId = null;
+  
+  
+  /**
+   * Create a new InventoryBatcher
+   * @param b builder 
+   */
+  private InventoryBatcher( final Builder b )
+  {
+    if ( b.productAPI == null )
+      throw new IllegalArgumentException( "productAPI cannot be null" );
+    else if ( b.listener == null )
+      throw new IllegalArgumentException( "listener cannot be null" );
+    else if ( b.maxBatchSize < 1 )
+      throw new IllegalArgumentException( "maxBatchSize must be greater than zero" );
+    else if ( b.flushInterval < 1 )
+      throw new IllegalArgumentException( "flushInterval must be greater than zero" );
+    else if ( b.bulkThreshold < 1 )
+      throw new IllegalArgumentException( "bulkThreshold must be greater than zero" );
+    else if ( b.bulkPollInterval < 1 )
+      throw new IllegalArgumentException( "bulkPollInterval must be greater than zero" );
+    else if ( b.bulkProcessTimeout < 0 )
+      throw new IllegalArgumentException( "bulkProcessTimeout cannot be less than zero" );
+    
+    this.productAPI = b.productAPI;
+    this.bulkAPI = b.bulkAPI;
+    this.maxBatchSize = b.maxBatchSize;
+    this.flushInterval = b.flushInterval;
+    this.bulkThreshold = b.bulkThreshold;
+    this.bulkPollInterval = b.bulkPollInterval;
+    this.bulkProcessTimeout = b.bulkProcessTimeout;
+    this.tempDir = b.tempDir;
+    this.listener = b.listener;
+  }
+  
+  
+  /**
+   * Queue the inventory of some product 
+   * @param product product 
+   * @throws IllegalStateException if this was closed 
+   */
+  public void update( final ProductRec product ) throws IllegalStateException
+  {
+    if ( product == null )
+      throw new IllegalArgumentException( "product cannot be null" );
+    
+    final ProductInventoryRec inv;
+    try {
+      inv = new ProductInventoryRec( product.getfNodeInventory(), null );
+    } catch( ParseException e ) {
+      //..Not parsed without a date
+      throw new IllegalStateException( e );
+    }
+    
+    update( product.getMerchantSku(), inv );
+  }
+  
+  
+  /**
+   * Queue an inventory update.  This replaces any pending update for sku.
+   * @param sku merchant sku 
+   * @param inventory inventory 
+   * @throws IllegalStateException if this was closed 
+   */
+  public void update( final String sku, final ProductInventoryRec inventory )
+    throws IllegalStateException
+  {
+    if ( sku == null || sku.isEmpty())
+      throw new IllegalArgumentException( "sku cannot be null or empty" );
+    else if ( inventory == null )
+      throw new IllegalArgumentException( "inventory cannot be null" );
+    
+    synchronized( this )
+    {
+      if ( closed )
+        throw new IllegalStateException( "This batcher is closed" );
+      
+      pending.put( sku, inventory );
+      
+      if ( pending.size() >= maxBatchSize )
+      {
+        flushLocked();
+      }
+      else if ( timer == null )
+      {
+        timer = executor.schedule( this::flush, flushInterval, TimeUnit.MILLISECONDS );
+      }
+    }
+  }
+  
+  
+  /**
+   * Retrieve the number of skus waiting to be sent 
+   * @return skus 
+   */
+  public synchronized int getPendingCount()
+  {
+    return pending.size();
+  }
+  
+  
+  /**
+   * Send everything pending now 
+   * @return Completes once the batch was sent or failed 
+   */
+  public synchronized CompletableFuture<Void> flush()
+  {
+    return flushLocked();
+  }
+  
+  
+  /**
+   * Send everything pending and stop.  Blocks until the last batch was 
+   * sent.
+   */
+  @Override
+  public void close()
+  {
+    final CompletableFuture<Void> last;
+    synchronized( this )
+    {
+      if ( closed )
+        return;
+      
+      last = flushLocked();
+      closed = true;
+    }
+    
+    try {
+      last.get();
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } catch( ExecutionException e ) {
+      //..Reported to the listener 
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  
+  /**
+   * Hand the pending batch to the executor.  Call while holding the lock.
+   * @return Completes once the batch was sent 
+   */
+  private CompletableFuture<Void> flushLocked()
+  {
+    if ( timer != null )
+    {
+      timer.cancel( false );
+      timer = null;
+    }
+    
+    if ( pending.isEmpty() || closed )
+      return CompletableFuture.completedFuture( null );
+    
+    final Map<String,ProductInventoryRec> batch = pending;
+    pending = new LinkedHashMap<>();
+    
+    return CompletableFuture.runAsync(() -> send( batch ), executor );
+  }
+  
+  
+  /**
+   * Send a batch 
+   * @param batch batch 
+   */
+  private void send( final Map<String,ProductInventoryRec> batch )
+  {
+    final Collection<String> skus = Collections.unmodifiableCollection( batch.keySet());
+    
+    //..Anything sent before the last bulk file is processed could be 
+    //  overwritten by it 
+    awaitPendingFile();
+    
+    if ( bulkAPI != null && batch.size() >= bulkThreshold )
+    {
+      try {
+        sendBulk( batch );
+        listener.onFlushed( skus, true );
+      } catch( APIException | IOException | RuntimeException e ) {
+        listener.onError( skus, e );
+      }
+    }
+    else
+    {
+      sendEach( batch );
+    }
+  }
+  
+  
+  /**
+   * Send a batch as a bulk inventory file 
+   * @param batch batch 
+   * @throws APIException if the upload fails 
+   * @throws IOException if the file cannot be written 
+   */
+  private void sendBulk( final Map<String,ProductInventoryRec> batch )
+    throws APIException, IOException
+  {
+    final File file = File.createTempFile( "jet-inventory-", ".json.gz", tempDir );
+    try {
+      try ( final BulkInventoryFileGenerator gen = new BulkInventoryFileGenerator( file ))
+      {
+        for ( final Map.Entry<String,ProductInventoryRec> e : batch.entrySet())
+        {
+          gen.writeLine( e.getKey(), e.getValue());
+        }
+      }
+      
+      APILog.info( LOG, "Sending bulk inventory file with", 
+        String.valueOf( batch.size()), "skus" );
+      
+      final BulkUploadAuthRec token = bulkAPI.getUploadToken();
+      
+      bulkAPI.sendAuthorizedFile( token.getUrl(), new PostFile( file, 
+        ContentType.create( "application/x-gzip" ), "gzip", file.getName()));
+      
+      bulkAPI.sendPostUploadedFiles( token.getUrl(), file.getName(), 
+        BulkUploadFileType.INVENTORY );
+      
+      pendingFileId = token.getJetFileId();
+    } finally {
+      if ( !file.delete())
+        file.deleteOnExit();
+    }
+  }
+  
+  
+  /**
+   * Wait for Jet to finish processing the last bulk file.  This gives up 
+   * with a warning after the bulk process timeout.
+   */
+  private void awaitPendingFile()
+  {
+    final String fileId = pendingFileId;
+    if ( fileId == null )
+      return;
+    
+    pendingFileId = null;
+    
+    final long deadline = System.currentTimeMillis() + bulkProcessTimeout;
+    
+    while ( true )
+    {
+      try {
+        final FileIdRec rec = bulkAPI.getJetFileId( fileId );
+        if ( rec.getStatus() == FileIdRec.UploadStatus.PROCESS_SUCCESS )
+          return;
+        else if ( rec.getStatus() == FileIdRec.UploadStatus.PROCESSED_WITH_ERRORS )
+        {
+          APILog.warn( LOG, "Bulk inventory file", fileId, "was processed with", 
+            String.valueOf( rec.getErrorCount()), "errors.  See", rec.getErrorUrl());
+          return;
+        }
+      } catch( APIException | RuntimeException e ) {
+        APILog.warn( LOG, e, "Failed to check the status of bulk inventory file", 
+          fileId );
+      }
+      
+      final long remaining = deadline - System.currentTimeMillis();
+      if ( remaining <= 0 )
+      {
+        APILog.warn( LOG, "Bulk inventory file", fileId, "was not processed within", 
+          String.valueOf( bulkProcessTimeout ), "ms.  Sending the next batch anyway" );
+        return;
+      }
+      
+      try {
+        Thread.sleep( Math.min( bulkPollInterval, remaining ));
+      } catch( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+  
+  
+  /**
+   * Send a batch as one put per sku and wait for all of them 
+   * @param batch batch 
+   */
+  private void sendEach( final Map<String,ProductInventoryRec> batch )
+  {
+    final List<String> skus = new ArrayList<>( batch.keySet());
+    final List<CompletableFuture<IJetAPIResponse>> sent = new ArrayList<>();
+    
+    for ( final Map.Entry<String,ProductInventoryRec> e : batch.entrySet())
+    {
+      CompletableFuture<IJetAPIResponse> f;
+      try {
+        f = productAPI.sendPutProductInventoryAsync( e.getKey(), e.getValue());
+      } catch( RuntimeException ex ) {
+        f = new CompletableFuture<>();
+        f.completeExceptionally( ex );
+      }
+      
+      sent.add( f );
+    }
+    
+    final List<String> ok = new ArrayList<>();
+    
+    for ( int i = 0; i < sent.size(); i++ )
+    {
+      try {
+        sent.get( i ).join();
+        ok.add( skus.get( i ));
+      } catch( CompletionException e ) {
+        final Throwable cause = ( e.getCause() == null ) ? e : e.getCause();
+        listener.onError( Collections.singletonList( skus.get( i )), 
+          ( cause instanceof Exception ) ? (Exception)cause : e );
+      }
+    }
+    
+    if ( !ok.isEmpty())
+      listener.onFlushed( Collections.unmodifiableList( ok ), false );
+  }
+}
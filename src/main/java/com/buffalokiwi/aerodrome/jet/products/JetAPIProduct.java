@@ -21,9 +21,17 @@ import com.buffalokiwi.api.IAPIHttpClient;
 import com.buffalokiwi.aerodrome.jet.IJetAPIResponse;
 import com.buffalokiwi.aerodrome.jet.JetConfig;
 import com.buffalokiwi.aerodrome.jet.JetException;
+import com.buffalokiwi.aerodrome.jet.Utils;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
@@ -199,6 +207,25 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
   }
 
 
+  /**
+   * Send product price data without blocking.
+   * @param product product data
+   * @return response.  Fails with APIException or JetException.
+   */
+  @Override
+  public CompletableFuture<IJetAPIResponse> sendPutProductPriceAsync( 
+    final ProductRec product )
+  {
+    APILog.info( LOG, "Sending", product.getMerchantSku(), "price" );
+    
+    return putAsync(
+      config.getAddProductPriceUrl( product.getMerchantSku()),
+      product.toPriceJson().toString(),
+      getJSONHeaderBuilder().build()
+    );
+  }
+
+
   /**
    * Adds product quantity and inventory data
    * @param product product data
@@ -222,6 +249,73 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
   }
   
   
+  /**
+   * Send product inventory data without blocking.
+   * @param product product data
+   * @return response.  Fails with APIException or JetException.
+   */
+  @Override
+  public CompletableFuture<IJetAPIResponse> sendPutProductInventoryAsync( 
+    final ProductRec product )
+  {
+    APILog.info( LOG, "Sending", product.getMerchantSku(), "inventory" );
+    
+    return putAsync(
+      config.getAddProductInventoryUrl( product.getMerchantSku()),
+      product.toInventoryJson().toString(),
+      getJSONHeaderBuilder().build()
+    );
+  }
+  
+  
+  /**
+   * Send product inventory data
+   * @param sku merchant sku
+   * @param inventory inventory data
+   * @return response 
+   * @throws APIException
+   * @throws JetException 
+   */
+  @Override
+  public IJetAPIResponse sendPutProductInventory( final String sku, 
+    final ProductInventoryRec inventory ) throws APIException, JetException
+  {
+    checkSku( sku );
+    Utils.checkNull( inventory, "inventory" );
+    
+    APILog.info( LOG, "Sending", sku, "inventory" );
+    
+    return put(
+      config.getAddProductInventoryUrl( sku ),
+      inventory.toJSON().toString(),
+      getJSONHeaderBuilder().build()
+    );
+  }
+  
+  
+  /**
+   * Send product inventory data without blocking.
+   * @param sku merchant sku
+   * @param inventory inventory data
+   * @return response.  Fails with APIException or JetException.
+   */
+  @Override
+  public CompletableFuture<IJetAPIResponse> sendPutProductInventoryAsync( 
+    final String sku, final ProductInventoryRec inventory )
+  {
+    checkSku( sku );
+    Utils.checkNull( inventory, "inventory" );
+    
+    APILog.info( LOG, "Sending", sku, "inventory" );
+    
+    return putAsync(
+      config.getAddProductInventoryUrl( sku ),
+      inventory.toJSON().toString(),
+      getJSONHeaderBuilder().build()
+    );
+  }
+  
+  
   /**
    * The variation request is used to create a variation-type relationship 
    * between several SKUs. To use this request, one must have already uploaded 
@@ -465,28 +559,185 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
   
   /**
    * Retrieve product data, pricing, variations, returns exceptions and 
-   * shipping exceptions 
+   * shipping exceptions.
+   * The requests are sent in parallel.  A missing price is logged and the 
+   * product is returned without it.
    * @param sku product sku 
    * @return Product data 
    * @throws APIException
    * @throws JetException 
+   * @see #getFullProductAsync(java.lang.String) 
    */
   @Override
   public ProductRec getFullProduct( final String sku ) throws APIException, JetException
   {
-    final ProductRec.Builder b = getProduct( sku ).toBuilder();
-    try {
-      ProductPriceRec p = getProductPrice( sku );
-      b.setfNodePrices( p.getFulfillmentNodes());
-    } catch( Exception e ) {
-      System.err.println( e );
-    }
+    final FullProductResult res = await( getFullProductAsync( sku ), "product " + sku );
     
-    b.setVariations( getProductVariations( sku ));
-    b.getReturnsExceptions().add( getReturnsExceptions( sku ));
-    b.setShippingExceptionNodes( getShippingExceptions( sku));
+    for ( final Map.Entry<FullProductResult.Part,Exception> e : res.getErrors().entrySet())
+    {
+      if ( e.getKey() == FullProductResult.Part.PRICE )
+        APILog.warn( LOG, e.getValue(), "Failed to retrieve the price for sku", sku );
+      else if ( e.getValue() instanceof APIException )
+        throw (APIException)e.getValue();
+      else if ( e.getValue() instanceof RuntimeException )
+        throw (RuntimeException)e.getValue();
+      else
+        throw new APIException( "Failed to retrieve product " + sku, e.getValue());
+    }
 
-    return b.build();    
+    return res.getProduct();    
+  }
+  
+  
+  /**
+   * Retrieve product data, pricing, variations, returns exceptions and 
+   * shipping exceptions without blocking.
+   * 
+   * All five requests are sent at once, so this takes about as long as the 
+   * slowest of them.  The number of requests actually in flight is bounded 
+   * by the connection pool and the throttle of the client.
+   * 
+   * The future fails if the product itself cannot be retrieved.  Any other 
+   * part that fails is left out of the product and reported by 
+   * FullProductResult.getErrors().
+   * 
+   * @param sku product sku 
+   * @return Product data and any failed parts 
+   */
+  @Override
+  public CompletableFuture<FullProductResult> getFullProductAsync( final String sku )
+  {
+    checkSku( sku );
+    
+    APILog.info( LOG, "Retrieving full product", sku );
+    
+    final CompletableFuture<ProductRec> product = getAsync( 
+      config.getGetProductURL( sku ), getPlainHeaderBuilder().build())
+      .thenApply( r -> ProductRec.fromJSON( r.getJsonObject()));
+    
+    final CompletableFuture<ProductPriceRec> price = getAsync( 
+      config.getGetProductPriceURL( sku ), getJSONHeaderBuilder().build())
+      .thenApply( r -> ProductPriceRec.fromJSON( r.getJsonObject()));
+    
+    final CompletableFuture<ProductVariationGroupRec> variations = getAsync( 
+      config.getGetProductVariationURL( sku ), getJSONHeaderBuilder().build())
+      .thenApply( r -> {
+        try {
+          return toVariations( sku, r );
+        } catch( JetException e ) {
+          throw new CompletionException( e );
+        }
+      });
+    
+    final CompletableFuture<ReturnsExceptionRec> returns = getAsync( 
+      config.getGetReturnsExceptionURL( sku ), getJSONHeaderBuilder().build())
+      .thenApply( r -> ReturnsExceptionRec.fromJSON( r.getJsonObject()));
+    
+    final CompletableFuture<List<FNodeShippingRec>> shipping = getAsync( 
+      config.getGetShippingExceptionURL( sku ), getJSONHeaderBuilder().build())
+      .thenApply( r -> toShippingExceptions( r ));
+    
+    //..Fails as soon as the product fails
+    return product.thenCompose( p -> CompletableFuture.allOf( 
+      price, variations, returns, shipping ).handle(( v, t ) -> {
+      
+      final ProductRec.Builder b = p.toBuilder();
+      final Map<FullProductResult.Part,Exception> errors 
+        = new EnumMap<>( FullProductResult.Part.class );
+      
+      final ProductPriceRec pr = getPart( price, FullProductResult.Part.PRICE, errors );
+      if ( pr != null )
+        b.setfNodePrices( pr.getFulfillmentNodes());
+      
+      final ProductVariationGroupRec vr = getPart( variations, 
+        FullProductResult.Part.VARIATIONS, errors );
+      if ( vr != null )
+        b.setVariations( vr );
+      
+      final ReturnsExceptionRec rr = getPart( returns, 
+        FullProductResult.Part.RETURNS_EXCEPTIONS, errors );
+      if ( rr != null )
+        b.getReturnsExceptions().add( rr );
+      
+      final List<FNodeShippingRec> sr = getPart( shipping, 
+        FullProductResult.Part.SHIPPING_EXCEPTIONS, errors );
+      if ( sr != null )
+        b.setShippingExceptionNodes( sr );
+      
+      return new FullProductResult( b.build(), errors );
+    }));
+  }
+  
+  
+  /**
+   * Retrieve full products for a set of skus, reporting each one to the 
+   * listener as it completes.
+   * 
+   * No more than concurrency products are in flight, and each of them is 
+   * five requests sent through the rate limiter and throttle of the client.
+   * Skus are pulled from the iterator as products complete, so a stream of 
+   * skus (ie: from a database cursor) can be passed with stream.iterator().
+   * 
+   * Skus marked done by the checkpoint are skipped.  A product is marked 
+   * done once the listener returns normally and nothing but the price 
+   * failed.  Other products are counted as failed and are not marked, so a 
+   * resumed batch tries them again.
+   * 
+   * @param skus skus 
+   * @param concurrency Max products in flight 
+   * @param checkpoint checkpoint or null 
+   * @param listener Receives each product or error 
+   * @return Completes with the totals once every sku is done.  Cancel to 
+   * stop starting new skus.
+   */
+  @Override
+  public CompletableFuture<ProductBatchSummary> getFullProducts( 
+    final Iterator<String> skus, final int concurrency, 
+    final IProductCheckpoint checkpoint, final IFullProductListener listener )
+  {
+    return new FullProductBatch( this, skus, concurrency, checkpoint, listener ).start();
+  }
+  
+  
+  /**
+   * Retrieve full products for a set of skus, reporting each one to the 
+   * listener as it completes.
+   * @param skus skus 
+   * @param concurrency Max products in flight 
+   * @param listener Receives each product or error 
+   * @return Completes with the totals once every sku is done 
+   */
+  @Override
+  public CompletableFuture<ProductBatchSummary> getFullProducts( 
+    final Collection<String> skus, final int concurrency, 
+    final IFullProductListener listener )
+  {
+    if ( skus == null )
+      throw new IllegalArgumentException( "skus cannot be null" );
+    
+    return getFullProducts( skus.iterator(), concurrency, null, listener );
+  }
+  
+  
+  /**
+   * Retrieve the result of a completed part of a full product 
+   * @param <T> part type 
+   * @param f part 
+   * @param part which part
+   * @param errors Failures are added here 
+   * @return result or null if the part failed 
+   */
+  private static <T> T getPart( final CompletableFuture<T> f, 
+    final FullProductResult.Part part, 
+    final Map<FullProductResult.Part,Exception> errors )
+  {
+    try {
+      return f.join();
+    } catch( CompletionException | CancellationException e ) {
+      final Throwable t = unwrapAsyncException( e );
+      errors.put( part, ( t instanceof Exception ) ? (Exception)t : e );
+      return null;
+    }
   }
   
   
@@ -610,11 +861,22 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
   {
     checkSku( sku );
     
+    return toVariations( sku, sendGetProductVariations( sku ));
+  }
+  
+  
+  /**
+   * Convert a product variations response 
+   * @param sku Product sku 
+   * @param res response 
+   * @return variations 
+   * @throws JetException if the response is invalid
+   */
+  private static ProductVariationGroupRec toVariations( final String sku, 
+    final IJetAPIResponse res ) throws JetException
+  {
     try {
-      return ProductVariationGroupRec.fromJSON( 
-        sku, 
-        sendGetProductVariations( sku ).getJsonObject()
-      );
+      return ProductVariationGroupRec.fromJSON( sku, res.getJsonObject());
     } catch( ClassCastException e ) {
       APILog.error( LOG, 
         "Failed to convert variation_refinements or children_skus to a List" );
@@ -636,15 +898,24 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
   {
     checkSku( sku );
     
-    final JsonArray nodes = sendGetProductShippingExceptions( sku )
-      .getJsonObject()
-      .getJsonArray( "fulfillment_nodes" );    
+    return toShippingExceptions( sendGetProductShippingExceptions( sku ));
+  }
+  
+  
+  /**
+   * Convert a product shipping exceptions response 
+   * @param res response 
+   * @return exceptions 
+   */
+  private static List<FNodeShippingRec> toShippingExceptions( 
+    final IJetAPIResponse res )
+  {
+    final JsonArray nodes = res.getJsonObject().getJsonArray( "fulfillment_nodes" );    
     
     final List<FNodeShippingRec> out = new ArrayList<>();
     
     if ( nodes == null )
       return out;
-        
     
     for ( int i = 0; i < nodes.size(); i++ )
     {
@@ -652,7 +923,6 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
     }
     
     return out;
-    
   }
   
   
@@ -747,6 +1017,59 @@ public class JetAPIProduct extends JetAPI implements IJetAPIProduct
     return jsonArrayToTokenList( sendGetSkuList( offset, limit )
       .getJsonObject().getJsonArray( "sku_urls" ), false );
   }
+  
+  
+  /**
+   * Retrieve a page of the sku list without blocking.
+   * @param offset The first SKU # you wish to appear in the return
+   * @param limit Max skus to return 
+   * @return skus 
+   */
+  @Override
+  public CompletableFuture<List<String>> getSkuListAsync( final int offset, 
+    final int limit )
+  {
+    if ( offset < 0 )
+      throw new IllegalArgumentException( "offset cannot be less than zero" );
+    else if ( limit < 1 )
+      throw new IllegalArgumentException( "limit cannot be less than one" );
+    
+    APILog.info( LOG, "Sending GET sku list at (", String.valueOf( offset ), 
+       ".", String.valueOf( limit ), ")" );
+    
+    return getAsync( config.getSkuListURL( offset, limit ), 
+      getJSONHeaderBuilder().build())
+      .thenApply( r -> jsonArrayToTokenList( 
+        r.getJsonObject().getJsonArray( "sku_urls" ), false ));
+  }
+  
+  
+  /**
+   * Retrieve a cursor over the entire sku list.
+   * The next prefetch pages are retrieved while the current page is 
+   * consumed, which replaces a paging loop that waits on every page.
+   * @param pageSize Skus per page 
+   * @param prefetch Pages retrieved ahead of the consumer 
+   * @return cursor 
+   */
+  @Override
+  public SkuCursor getSkuCursor( final int pageSize, final int prefetch )
+  {
+    return new SkuCursor( offset -> getSkuListAsync( offset, pageSize ), 
+      pageSize, prefetch );
+  }
+  
+  
+  /**
+   * Retrieve a cursor over the entire sku list using the default page size
+   * and prefetch.
+   * @return cursor 
+   */
+  @Override
+  public SkuCursor getSkuCursor()
+  {
+    return getSkuCursor( SkuCursor.DEFAULT_PAGE_SIZE, SkuCursor.DEFAULT_PREFETCH );
+  }
 
   
   /**
@@ -0,0 +1,93 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+/**
+ * Totals for a finished batch product retrieval 
+ * 
+ * @author John Quinn
+ */
+public class ProductBatchSummary 
+{
+  /**
+   * Products retrieved 
+   */
+  private final int retrieved;
+  
+  /**
+   * Products that failed 
+   */
+  private final int failed;
+  
+  /**
+   * Skus skipped by the checkpoint 
+   */
+  private final int skipped;
+  
+  
+  /**
+   * Create a new ProductBatchSummary 
+   * @param retrieved Products retrieved 
+   * @param failed Products that failed 
+   * @param skipped Skus skipped by the checkpoint 
+   */
+  ProductBatchSummary( final int retrieved, final int failed, 
+    final int skipped )
+  {
+    this.retrieved = retrieved;
+    this.failed = failed;
+    this.skipped = skipped;
+  }
+  
+  
+  /**
+   * Retrieve the number of products retrieved and accepted by the listener.
+   * This includes products missing only the price.
+   * @return count 
+   */
+  public int getRetrieved()
+  {
+    return retrieved;
+  }
+  
+  
+  /**
+   * Retrieve the number of products that could not be retrieved, were 
+   * missing a part other than the price, or were rejected by the listener 
+   * @return count 
+   */
+  public int getFailed()
+  {
+    return failed;
+  }
+  
+  
+  /**
+   * Retrieve the number of skus skipped because the checkpoint marked them
+   * as done 
+   * @return count 
+   */
+  public int getSkipped()
+  {
+    return skipped;
+  }
+  
+  
+  @Override
+  public String toString()
+  {
+    return "retrieved=" + retrieved + ", failed=" + failed + ", skipped=" + skipped;
+  }
+}
@@ -0,0 +1,355 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import com.buffalokiwi.aerodrome.jet.IJetAPIResponse;
+import com.buffalokiwi.aerodrome.jet.products.FingerprintTable.Field;
+import com.buffalokiwi.api.APIException;
+import com.buffalokiwi.api.APILog;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Pushes price and inventory for a catalog, skipping every sku whose 
+ * payload has not changed since Jet last acknowledged it.
+ * 
+ * Each payload is fingerprinted and compared with the fingerprint table.
+ * Only changed payloads are sent, and a fingerprint is recorded once Jet 
+ * acknowledges the payload, so failed sends are retried by the next sync.
+ * The table is saved after every sync, so a restart does not resend the 
+ * catalog.  The api volume of a sync scales with the number of changed 
+ * skus rather than with the catalog size.
+ * 
+ * Use FingerprintTable.remove() or clear() to force a sku or the whole 
+ * catalog to be sent again (ie: after editing prices in the partner portal).
+ * 
+ * @author John Quinn
+ */
+public class ProductSyncEngine 
+{
+  /**
+   * Builds ProductSyncEngine instances 
+   */
+  public static class Builder
+  {
+    private IJetAPIProduct api = null;
+    private FingerprintTable table = null;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean price = true;
+    private boolean inventory = true;
+    
+    
+    /**
+     * Set the api used to send updates 
+     * @param api api 
+     * @return this 
+     */
+    public Builder setAPI( final IJetAPIProduct api )
+    {
+      this.api = api;
+      return this;
+    }
+    
+    
+    /**
+     * Set the fingerprint table 
+     * @param table table 
+     * @return this 
+     */
+    public Builder setFingerprintTable( final FingerprintTable table )
+    {
+      this.table = table;
+      return this;
+    }
+    
+    
+    /**
+     * Set the max number of updates in flight.  Defaults to 8.
+     * @param concurrency updates 
+     * @return this 
+     */
+    public Builder setConcurrency( final int concurrency )
+    {
+      this.concurrency = concurrency;
+      return this;
+    }
+    
+    
+    /**
+     * Toggle syncing prices.  Defaults to on.
+     * @param on on 
+     * @return this 
+     */
+    public Builder setSyncPrice( final boolean on )
+    {
+      this.price = on;
+      return this;
+    }
+    
+    
+    /**
+     * Toggle syncing inventory.  Defaults to on.
+     * @param on on 
+     * @return this 
+     */
+    public Builder setSyncInventory( final boolean on )
+    {
+      this.inventory = on;
+      return this;
+    }
+    
+    
+    /**
+     * Build the engine 
+     * @return engine 
+     * @throws IllegalArgumentException if the api or table is missing, or 
+     * concurrency is less than one 
+     */
+    public ProductSyncEngine build() throws IllegalArgumentException
+    {
+      return new ProductSyncEngine( this );
+    }
+  }
+  
+  
+  /**
+   * Default max updates in flight 
+   */
+  public static final int DEFAULT_CONCURRENCY = 8;
+  
+  /**
+   * Log 
+   */
+  private static final Log LOG = LogFactory.getLog( ProductSyncEngine.class );
+  
+  private final IJetAPIProduct api;
+  private final FingerprintTable table;
+  private final int concurrency;
+  private final boolean price;
+  private final boolean inventory;
+  
+  
+  /**
+   * Create a new ProductSyncEngine 
+   * @param b builder 
+   */
+  private ProductSyncEngine( final Builder b )
+  {
+    if ( b.api == null )
+      throw new IllegalArgumentException( "api cannot be null" );
+    else if ( b.table == null )
+      throw new IllegalArgumentException( "table cannot be null" );
+    else if ( b.concurrency < 1 )
+      throw new IllegalArgumentException( "concurrency must be greater than zero" );
+    
+    this.api = b.api;
+    this.table = b.table;
+    this.concurrency = b.concurrency;
+    this.price = b.price;
+    this.inventory = b.inventory;
+  }
+  
+  
+  /**
+   * Retrieve the fingerprint table 
+   * @return table 
+   */
+  public FingerprintTable getFingerprintTable()
+  {
+    return table;
+  }
+  
+  
+  /**
+   * Send the changed prices and inventory of some products 
+   * @param products products 
+   * @return totals 
+   * @throws APIException if interrupted 
+   */
+  public ProductSyncSummary sync( final Collection<ProductRec> products )
+    throws APIException
+  {
+    if ( products == null )
+      throw new IllegalArgumentException( "products cannot be null" );
+    
+    return sync( products.iterator());
+  }
+  
+  
+  /**
+   * Send the changed prices and inventory of some products.
+   * Blocks until every update was acknowledged or failed, then saves the 
+   * fingerprint table.  Failing to save the table is logged; the next sync
+   * then resends the skus sent by this one.
+   * @param products products 
+   * @return totals 
+   * @throws APIException if interrupted 
+   */
+  public ProductSyncSummary sync( final Iterator<ProductRec> products )
+    throws APIException
+  {
+    if ( products == null )
+      throw new IllegalArgumentException( "products cannot be null" );
+    
+    final Semaphore slots = new Semaphore( concurrency );
+    final AtomicInteger pricesSent = new AtomicInteger();
+    final AtomicInteger inventorySent = new AtomicInteger();
+    final Map<String,Map<Field,Exception>> errors = new ConcurrentHashMap<>();
+    int checked = 0;
+    int unchanged = 0;
+    
+    try {
+      while ( products.hasNext())
+      {
+        final ProductRec p = products.next();
+        final String sku = p.getMerchantSku();
+        checked++;
+        
+        //..Build both payloads first, so a bad product sends nothing 
+        String pricePayload = null;
+        String inventoryPayload = null;
+        Field field = Field.PRICE;
+        try {
+          if ( price )
+            pricePayload = p.toPriceJson().toString();
+          
+          field = Field.INVENTORY;
+          if ( inventory )
+            inventoryPayload = p.toInventoryJson().toString();
+        } catch( RuntimeException e ) {
+          //..ie: a product without a price 
+          addError( errors, sku, field, e );
+          continue;
+        }
+        
+        boolean sent = false;
+        
+        if ( pricePayload != null )
+        {
+          sent |= send( slots, sku, Field.PRICE, pricePayload, 
+            p, api::sendPutProductPriceAsync, pricesSent, errors );
+        }
+
+        if ( inventoryPayload != null )
+        {
+          sent |= send( slots, sku, Field.INVENTORY, inventoryPayload, 
+            p, api::sendPutProductInventoryAsync, inventorySent, errors );
+        }
+        
+        if ( !sent )
+          unchanged++;
+      }
+      
+      //..Wait for everything in flight 
+      slots.acquire( concurrency );
+      slots.release( concurrency );
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while syncing products", e );
+    }
+    
+    try {
+      table.save();
+    } catch( IOException e ) {
+      APILog.warn( LOG, e, "Failed to save the fingerprint table" );
+    }
+    
+    return new ProductSyncSummary( checked, unchanged, pricesSent.get(), 
+      inventorySent.get(), errors );
+  }
+  
+  
+  /**
+   * Send a payload if its fingerprint changed 
+   * @param slots Slots for updates in flight 
+   * @param sku sku 
+   * @param field payload type 
+   * @param payload payload 
+   * @param product product 
+   * @param request sends the payload 
+   * @param sentCount Incremented when the payload is acknowledged 
+   * @param errors Failures are added here 
+   * @return if the payload was sent 
+   * @throws InterruptedException if interrupted waiting for a slot 
+   */
+  private boolean send( final Semaphore slots, final String sku, 
+    final Field field, final String payload, final ProductRec product,
+    final Function<ProductRec,CompletableFuture<IJetAPIResponse>> request, 
+    final AtomicInteger sentCount, 
+    final Map<String,Map<Field,Exception>> errors )
+    throws InterruptedException
+  {
+    final long fp = FingerprintTable.fingerprint( payload );
+    if ( table.matches( sku, field, fp ))
+      return false;
+    
+    slots.acquire();
+    
+    CompletableFuture<IJetAPIResponse> f;
+    try {
+      f = request.apply( product );
+    } catch( RuntimeException e ) {
+      f = new CompletableFuture<>();
+      f.completeExceptionally( e );
+    }
+    
+    f.whenComplete(( res, t ) -> {
+      try {
+        if ( t == null )
+        {
+          table.put( sku, field, fp );
+          sentCount.incrementAndGet();
+        }
+        else
+        {
+          final Throwable cause = ( t instanceof CompletionException && t.getCause() != null )
+            ? t.getCause() : t;
+          
+          addError( errors, sku, field, ( cause instanceof Exception ) 
+            ? (Exception)cause : new CompletionException( cause ));
+        }
+      } finally {
+        slots.release();
+      }
+    });
+    
+    return true;
+  }
+  
+  
+  /**
+   * Record a failure 
+   * @param errors failures by sku and field 
+   * @param sku sku 
+   * @param field payload type 
+   * @param e failure 
+   */
+  private static void addError( final Map<String,Map<Field,Exception>> errors,
+    final String sku, final Field field, final Exception e )
+  {
+    errors.computeIfAbsent( String.valueOf( sku ), 
+      k -> new ConcurrentHashMap<>()).put( field, e );
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import com.buffalokiwi.aerodrome.jet.products.FingerprintTable.Field;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Totals for a single price and inventory sync cycle 
+ * 
+ * @author John Quinn
+ */
+public class ProductSyncSummary 
+{
+  private final int checked;
+  private final int unchanged;
+  private final int pricesSent;
+  private final int inventorySent;
+  private final Map<String,Map<Field,Exception>> errors;
+  
+  
+  /**
+   * Create a new ProductSyncSummary 
+   * @param checked Products checked 
+   * @param unchanged Products with nothing to send 
+   * @param pricesSent Prices acknowledged by Jet 
+   * @param inventorySent Inventory acknowledged by Jet 
+   * @param errors Failed sends by sku and field 
+   */
+  ProductSyncSummary( final int checked, final int unchanged, 
+    final int pricesSent, final int inventorySent, 
+    final Map<String,Map<Field,Exception>> errors )
+  {
+    this.checked = checked;
+    this.unchanged = unchanged;
+    this.pricesSent = pricesSent;
+    this.inventorySent = inventorySent;
+    
+    final Map<String,Map<Field,Exception>> copy = new HashMap<>();
+    for ( final Map.Entry<String,Map<Field,Exception>> e : errors.entrySet())
+    {
+      final Map<Field,Exception> fields = new EnumMap<>( Field.class );
+      fields.putAll( e.getValue());
+      copy.put( e.getKey(), Collections.unmodifiableMap( fields ));
+    }
+    
+    this.errors = Collections.unmodifiableMap( copy );
+  }
+  
+  
+  /**
+   * Retrieve the number of products checked 
+   * @return count 
+   */
+  public int getChecked()
+  {
+    return checked;
+  }
+  
+  
+  /**
+   * Retrieve the number of products with nothing to send 
+   * @return count 
+   */
+  public int getUnchanged()
+  {
+    return unchanged;
+  }
+  
+  
+  /**
+   * Retrieve the number of prices acknowledged by Jet 
+   * @return count 
+   */
+  public int getPricesSent()
+  {
+    return pricesSent;
+  }
+  
+  
+  /**
+   * Retrieve the number of inventory updates acknowledged by Jet 
+   * @return count 
+   */
+  public int getInventorySent()
+  {
+    return inventorySent;
+  }
+  
+  
+  /**
+   * Retrieve the failed sends.  These payloads are sent again on the next 
+   * sync.
+   * @return sku to the failure of each payload type 
+   */
+  public Map<String,Map<Field,Exception>> getErrors()
+  {
+    return errors;
+  }
+  
+  
+  @Override
+  public String toString()
+  {
+    return "checked=" + checked + ", unchanged=" + unchanged 
+      + ", pricesSent=" + pricesSent + ", inventorySent=" + inventorySent 
+      + ", failed=" + errors.size();
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.aerodrome.jet.products;
+
+import com.buffalokiwi.api.APIException;
+import com.buffalokiwi.api.UncheckedAPIException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks the entire sku list of a merchant one page at a time.
+ * 
+ * While the consumer works through a page, the next few pages are already
+ * being retrieved, so the consumer rarely waits on the network.  The list
+ * ends at the first page holding fewer skus than the page size, and any 
+ * pages requested past the end are discarded.
+ * 
+ * Each call to iterator() or stream() starts a new pass from the first 
+ * page.  Failed requests are thrown from the iterator as 
+ * UncheckedAPIException, and end the pass.
+ * 
+ * Streams are sequential, but can be made parallel; skus are then handed 
+ * to the workers in batches.  Close the stream when abandoning it early.
+ * 
+ * @author John Quinn
+ */
+public class SkuCursor implements Iterable<String>
+{
+  /**
+   * Default skus per page 
+   */
+  public static final int DEFAULT_PAGE_SIZE = 100;
+  
+  /**
+   * Default number of pages retrieved ahead of the consumer
+   */
+  public static final int DEFAULT_PREFETCH = 3;
+  
+  
+  /**
+   * A single pass over the list 
+   */
+  private final class Cursor implements Iterator<String>, AutoCloseable
+  {
+    /**
+     * Pages requested and not yet consumed, in order 
+     */
+    private final ArrayDeque<CompletableFuture<List<String>>> pages = new ArrayDeque<>();
+    
+    /**
+     * Offset of the next page to request 
+     */
+    private int nextOffset = 0;
+    
+    /**
+     * The page being consumed 
+     */
+    private Iterator<String> current = Collections.emptyIterator();
+    
+    /**
+     * If the last page was reached or the pass failed 
+     */
+    private boolean last = false;
+    
+    
+    private Cursor()
+    {
+      fill();
+    }
+    
+    
+    @Override
+    public boolean hasNext()
+    {
+      while ( !current.hasNext())
+      {
+        if ( last || pages.isEmpty())
+          return false;
+        
+        final List<String> page = take( pages.poll());
+        if ( page.size() < pageSize )
+          close();
+        else
+          fill();
+        
+        current = page.iterator();
+      }
+      
+      return true;
+    }
+    
+    
+    @Override
+    public String next()
+    {
+      if ( !hasNext())
+        throw new NoSuchElementException();
+      
+      return current.next();
+    }
+    
+    
+    /**
+     * End the pass and discard any pages requested ahead 
+     */
+    @Override
+    public void close()
+    {
+      last = true;
+      
+      for ( final CompletableFuture<List<String>> f : pages )
+      {
+        f.cancel( false );
+      }
+      
+      pages.clear();
+    }
+    
+    
+    /**
+     * Request pages until prefetch pages are waiting 
+     */
+    private void fill()
+    {
+      while ( !last && pages.size() < prefetch )
+      {
+        pages.add( loader.apply( nextOffset ));
+        nextOffset += pageSize;
+      }
+    }
+    
+    
+    /**
+     * Wait for a page 
+     * @param f page 
+     * @return skus 
+     * @throws UncheckedAPIException if the page could not be retrieved 
+     */
+    private List<String> take( final CompletableFuture<List<String>> f )
+    {
+      try {
+        return f.get();
+      } catch( InterruptedException e ) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new UncheckedAPIException( 
+          new APIException( "Interrupted while waiting for the sku list", e ));
+      } catch( ExecutionException e ) {
+        close();
+        
+        Throwable cause = e.getCause();
+        if ( cause instanceof CompletionException && cause.getCause() != null )
+          cause = cause.getCause();
+        
+        if ( cause instanceof APIException )
+          throw new UncheckedAPIException((APIException)cause );
+        else if ( cause instanceof RuntimeException )
+          throw (RuntimeException)cause;
+        
+        throw new UncheckedAPIException( 
+          new APIException( "Failed to retrieve the sku list", e ));
+      }
+    }
+  }
+  
+  
+  /**
+   * Retrieves the page at some offset 
+   */
+  private final IntFunction<CompletableFuture<List<String>>> loader;
+  
+  /**
+   * Skus per page 
+   */
+  private final int pageSize;
+  
+  /**
+   * Pages retrieved ahead of the consumer 
+   */
+  private final int prefetch;
+  
+  
+  /**
+   * Create a new SkuCursor 
+   * @param loader Retrieves the page at some offset 
+   * @param pageSize Skus per page 
+   * @param prefetch Pages retrieved ahead of the consumer 
+   * @throws IllegalArgumentException if pageSize or prefetch is less than one
+   */
+  SkuCursor( final IntFunction<CompletableFuture<List<String>>> loader,
+    final int pageSize, final int prefetch ) throws IllegalArgumentException
+  {
+    if ( loader == null )
+      throw new IllegalArgumentException( "loader cannot be null" );
+    else if ( pageSize < 1 )
+      throw new IllegalArgumentException( "pageSize must be greater than zero" );
+    else if ( prefetch < 1 )
+      throw new IllegalArgumentException( "prefetch must be greater than zero" );
+    
+    this.loader = loader;
+    this.pageSize = pageSize;
+    this.prefetch = prefetch;
+  }
+  
+  
+  /**
+   * Start a new pass over the sku list 
+   * @return skus 
+   */
+  @Override
+  public Iterator<String> iterator()
+  {
+    return new Cursor();
+  }
+  
+  
+  /**
+   * Start a new pass over the sku list as a stream.
+   * Closing the stream discards any pages requested ahead.
+   * @return skus 
+   */
+  public Stream<String> stream()
+  {
+    final Cursor c = new Cursor();
+    return StreamSupport.stream( Spliterators.spliteratorUnknownSize( c, 
+      Spliterator.ORDERED | Spliterator.NONNULL ), false ).onClose( c::close );
+  }
+}
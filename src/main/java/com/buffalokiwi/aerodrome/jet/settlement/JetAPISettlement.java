@@ -154,7 +154,10 @@ public class JetAPISettlement extends JetAPI implements IJetAPISettlement
   public SettlementRec getSettlementReport( final String id )
     throws APIException, JetException
   {
-    return SettlementRec.fromJson( sendGetSettlementReport( id )
-      .getJsonObject());
+    //..Settlement reports can be large; parse straight from the connection 
+    return SettlementRec.fromJson( getJson(
+      config.getGetSettlementReportUrl( id ),
+      getJSONHeaderBuilder().build()
+    ));
   }
 }
@@ -16,8 +16,15 @@ package com.buffalokiwi.api;
 
 import org.apache.http.client.utils.URIBuilder;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.URI;
 import java.nio.charset.UnsupportedCharsetException;
 import java.io.UnsupportedEncodingException;
@@ -25,24 +32,32 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.ParseException;
 import org.apache.http.client.RedirectException;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.HttpMultipartMode;
@@ -89,6 +104,38 @@ public class API implements IApi
    */
   protected final boolean lockHost;
   
+  /**
+   * If response objects should keep their raw content after it has been 
+   * parsed into json.
+   */
+  private volatile boolean retainResponseContent = true;
+  
+  /**
+   * Decides if failed requests are sent again.  null disables retries.
+   */
+  private volatile IRetryPolicy retryPolicy = new RetryPolicy.Builder().build();
+  
+  /**
+   * Cache for get requests.  null disables caching.
+   */
+  private volatile ResponseCache responseCache = null;
+  
+  /**
+   * Bodies larger than this are written to a temporary file.  
+   * Zero keeps every body in memory, truncated at maxDownloadSize.
+   */
+  private volatile long spillThreshold = 0;
+  
+  /**
+   * Where spilled bodies are written.  null uses the default temp directory.
+   */
+  private volatile File spillDirectory = null;
+  
+  /**
+   * Per-endpoint request metrics.  null disables metrics.
+   */
+  private volatile RequestMetrics metrics = null;
+  
   /**
    * Logger instance 
    */
@@ -146,6 +193,98 @@ public class API implements IApi
   }
 
 
+  /**
+   * Toggle keeping the raw response content after the response has been 
+   * parsed by getJsonObject().  Turn this off to release the content string 
+   * as soon as it has been parsed; getResponseContent() will then serialize
+   * the parsed object on demand.  Defaults to on.
+   * @param on toggle
+   */
+  public void setRetainResponseContent( final boolean on )
+  {
+    retainResponseContent = on;
+  }
+  
+  
+  /**
+   * Set the policy deciding if and when failed requests are sent again.
+   * By default GET, PUT and DELETE requests are retried after I/O errors and
+   * 429, 502, 503 or 504 responses with exponential backoff.  POST requests 
+   * are only retried if they carry an Idempotency-Key header.
+   * @param policy policy or null to disable retries 
+   */
+  public void setRetryPolicy( final IRetryPolicy policy )
+  {
+    retryPolicy = policy;
+  }
+  
+  
+  /**
+   * Set the cache used by get().
+   * Cached responses are revalidated with a conditional request every time,
+   * and are only returned when the server responds with 304 Not Modified.
+   * @param cache cache or null to disable caching.  Caches may be shared 
+   * between api instances.
+   */
+  public void setResponseCache( final ResponseCache cache )
+  {
+    responseCache = cache;
+  }
+  
+  
+  /**
+   * Retrieve the cache set by setResponseCache()
+   * @return cache or null 
+   */
+  public ResponseCache getResponseCache()
+  {
+    return responseCache;
+  }
+  
+  
+  /**
+   * Record latency, byte counts and status codes for every exchange.
+   * Endpoints are named by getEndpointName().
+   * @param metrics metrics or null to disable.  Metrics may be shared 
+   * between api instances.
+   */
+  public void setMetrics( final RequestMetrics metrics )
+  {
+    this.metrics = metrics;
+  }
+  
+  
+  /**
+   * Retrieve the metrics set by setMetrics()
+   * @return metrics or null 
+   */
+  public RequestMetrics getMetrics()
+  {
+    return metrics;
+  }
+  
+  
+  /**
+   * Write response bodies larger than some size to a temporary file instead
+   * of holding them in memory.  When this is enabled, bodies are never 
+   * truncated at the max download size.  Read spilled bodies with 
+   * IAPIResponse.getContentStream() or getJsonParser().
+   * @param bytes Largest body kept in memory.  Zero disables spilling.
+   * @param directory Where to write the files.  null uses the default 
+   * temporary directory.
+   */
+  public void setSpillThreshold( final long bytes, final File directory )
+  {
+    if ( bytes < 0 )
+      throw new IllegalArgumentException( "bytes must be greater than or equal to zero" );
+    else if ( directory != null && !directory.isDirectory())
+      throw new IllegalArgumentException( "directory must be a directory" );
+    
+    spillThreshold = bytes;
+    spillDirectory = directory;
+  }
+  
+  
   /**
    * Perform a get-based request to some endpoint
    * @param url The URL
@@ -170,10 +309,142 @@ public class API implements IApi
   public IAPIResponse get( final String url, final Map<String,String> headers ) 
     throws APIException
   {
-    //..Execute
-    return executeRequest( createRequest( REQUEST_TYPE.GET, url, headers ));
+    final HttpUriRequest hr = createRequest( REQUEST_TYPE.GET, url, headers );
+    final ResponseCache cache = responseCache;
+    
+    if ( cache == null )
+      return executeRequest( hr );
+    
+    final IAPIResponse cached = cache.addConditionalHeaders( hr );
+    return cache.onResponse( hr, executeRequest( hr ), cached );
+  }
+  
+  
+  /**
+   * Perform a get-based request to some endpoint and stream the response 
+   * body to some handler.  The body is never buffered in memory and is 
+   * not limited by the max download size.
+   * @param <T> Handler result type 
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @param handler Receives the decoded response body 
+   * @return The handler result 
+   * @throws APIException If something goes wrong
+   */
+  @Override
+  public <T> T getStream( final String url, final Map<String,String> headers,
+    final IResponseStreamHandler<T> handler ) throws APIException
+  {
+    if ( handler == null )
+      throw new IllegalArgumentException( "handler cannot be null" );
+    
+    return executeStreamRequest( 
+      createRequest( REQUEST_TYPE.GET, url, headers ), handler );
+  }
+
+
+  /**
+   * Perform a non-blocking get-based request to some endpoint.
+   * The returned future completes on an I/O thread; don't block in 
+   * dependent stages.
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException if something goes wrong.
+   */
+  @Override
+  public CompletableFuture<? extends IAPIResponse> getAsync( final String url, 
+    final Map<String,String> headers )
+  {
+    try {
+      return executeRequestAsync( createRequest( REQUEST_TYPE.GET, url, headers ));
+    } catch( APIException e ) {
+      return failedFuture( e );
+    }
   }
+  
+  
+  /**
+   * Send arbitrary post data to some endpoint without blocking.
+   * @param url The URL
+   * @param payload Data to send
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException if something goes wrong.
+   */
+  @Override
+  public CompletableFuture<? extends IAPIResponse> postAsync( final String url, 
+    final String payload, final Map<String,String> headers )
+  {
+    try {
+      final HttpPost post = (HttpPost)createRequest( 
+        REQUEST_TYPE.POST, url, headers );
+
+      if ( payload != null )
+        post.setEntity( createStringEntity( payload ));
+
+      return executeRequestAsync( post );
+    } catch( APIException e ) {
+      return failedFuture( e );
+    }
+  }
+  
+  
+  /**
+   * Perform a non-blocking put-based request to some endpoint
+   * @param url The URL
+   * @param payload Data to send
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException if something goes wrong.
+   */
+  @Override
+  public CompletableFuture<? extends IAPIResponse> putAsync( final String url, 
+    final String payload, final Map<String,String> headers )
+  {
+    try {
+      final HttpPut put = (HttpPut)createRequest( 
+        REQUEST_TYPE.PUT, url, headers );
 
+      put.setEntity( createStringEntity( payload ));
+
+      return executeRequestAsync( put );
+    } catch( APIException e ) {
+      return failedFuture( e );
+    }
+  }
+  
+  
+  /**
+   * Create a future that has already failed 
+   * @param <T> Future type 
+   * @param t cause 
+   * @return future 
+   */
+  protected static <T> CompletableFuture<T> failedFuture( final Throwable t )
+  {
+    final CompletableFuture<T> out = new CompletableFuture<>();
+    out.completeExceptionally( t );
+    return out;
+  }
+  
+  
+  /**
+   * Create a string entity for some payload 
+   * @param payload payload 
+   * @return entity 
+   * @throws APIException if the encoding is not supported 
+   */
+  private StringEntity createStringEntity( final String payload ) 
+    throws APIException
+  {
+    try {
+      final StringEntity entity = new StringEntity( payload );
+      APILog.trace( LOG, payload );
+      return entity;
+    } catch( UnsupportedEncodingException e ) {
+      throw new APIException( 
+        "Unsupported payload encoding, cannot create StringEntity", e );
+    }
+  }
+  
 
   /**
    * Perform a post-based request to some endpoint
@@ -223,17 +494,11 @@ public class API implements IApi
     {
       //..Ensure the file exists
       final PostFile pf = files.get( name );
-
-      if ( !pf.getFile().exists())
-      {
-        throw new IllegalArgumentException( 
-          pf.getFile() + " (" + pf.getFilename() 
-            + ") does not exist; cannot upload non-existent file." );
-      }
+      pf.checkExists();
 
       APILog.trace( LOG, "Added file", pf.getFile(), "(", pf.getFilename(), ")" );
 
-      builder.addBinaryBody( name, pf.getFile(), pf.getContentType(), pf.getFilename());
+      builder.addPart( name, new PostFileBody( pf ));
     }
   }
   
@@ -383,9 +648,8 @@ public class API implements IApi
   @Override
   public IAPIResponse post( final String url, final PostFile file, Map<String,String> headers ) throws APIException
   {
-    final FileEntity entity = new FileEntity( file.getFile(), file.getContentType());
-    if ( file.hasContentEncoding())
-      entity.setContentEncoding( file.getContentEncoding());
+    file.checkExists();
+    final PostFileEntity entity = new PostFileEntity( file );
     
     final HttpPost post = (HttpPost)createRequest( REQUEST_TYPE.POST, url, headers );
     post.setEntity( entity );
@@ -484,9 +748,8 @@ public class API implements IApi
   @Override
   public IAPIResponse put( final String url, final PostFile file, Map<String,String> headers ) throws APIException
   {
-    final FileEntity entity = new FileEntity( file.getFile(), file.getContentType());
-    if ( file.hasContentEncoding())
-      entity.setContentEncoding( file.getContentEncoding());
+    file.checkExists();
+    final PostFileEntity entity = new PostFileEntity( file );
     
     //..Create the new put request
     final HttpPut put = (HttpPut)createRequest( 
@@ -634,25 +897,10 @@ public class API implements IApi
     try {
       if ( entity != null )
       {
-        //..Get the charset
-        String charset = "UTF-8";
-
-        try {
-          java.nio.charset.Charset cs = ContentType.getOrDefault( entity )
-              .getCharset();
-          
-          if ( cs != null )
-            charset = cs.displayName();          
-        } catch( ParseException | UnsupportedCharsetException e ) {
-          //..No nothing, use defaults
-        }
-
-        if (( charset == null ) || ( charset.isEmpty())) charset = "UTF-8";
-
         //..Process the stream
         try ( final InputStream in = entity.getContent()) {
           final IAPIResponse res = processEntity( 
-            createResponseObject( response ), in, charset 
+            createResponseObject( response ), in, getCharset( entity )
           );
           
           APILog.debug( LOG, 
@@ -694,74 +942,233 @@ public class API implements IApi
   }
 
 
+  /**
+   * Retrieve the charset name for some entity.
+   * Defaults to UTF-8 if the content type does not specify one.
+   * @param entity entity
+   * @return charset name
+   */
+  private String getCharset( final HttpEntity entity )
+  {
+    String charset = "UTF-8";
+
+    try {
+      java.nio.charset.Charset cs = ContentType.getOrDefault( entity )
+          .getCharset();
+
+      if ( cs != null )
+        charset = cs.name();
+    } catch( ParseException | UnsupportedCharsetException e ) {
+      //..No nothing, use defaults
+    }
+
+    if (( charset == null ) || ( charset.isEmpty())) charset = "UTF-8";
+    
+    return charset;
+  }
+  
+  
+  /**
+   * Prepare a streaming response.
+   * If the response was successful, the entity content is decoded and handed
+   * to the handler without buffering.  Otherwise, the entity is buffered as 
+   * usual and passed to checkStreamResponse().
+   * @param <T> Handler result type 
+   * @param response HTTP Response
+   * @param hr The request 
+   * @param handler Stream handler 
+   * @return handler result 
+   * @throws APIException 
+   */
+  private <T> T processStreamResponse( final HttpResponse response, 
+    final HttpUriRequest hr, final IResponseStreamHandler<T> handler ) 
+    throws APIException
+  {
+    if ( response == null )
+      throw new APIException( "Endpoint response was null" );
+    
+    final HttpEntity entity = response.getEntity();
+    final IAPIResponse res = createResponseObject( response );
+    
+    if ( entity == null || !res.isSuccess())
+    {
+      checkStreamResponse( processResponse( response, hr ));
+      throw new APIException( "Endpoint responded with " 
+        + String.valueOf( res.getStatusLine().getStatusCode()) 
+        + "; there is nothing to stream" );
+    }
+    
+    APILog.debug( LOG, 
+      String.valueOf( res.getStatusLine().getStatusCode()), 
+      res.getStatusLine().getReasonPhrase(), 
+      "(streaming) for", 
+      hr.getURI().toString()
+    );
+    
+    try ( final Reader in = new InputStreamReader( 
+      entity.getContent(), getCharset( entity ))) 
+    {
+      return handler.processStream( res, in );
+    } catch( IOException e ) {
+      hr.abort();
+      throw new APIException( "Failed to process content stream.  " 
+        + e.getMessage(), e );
+    } catch( RuntimeException e ) {
+      //..Abort
+      hr.abort();
+      throw new APIException( e.getMessage(), e );
+    } finally {
+      try {
+        EntityUtils.consume( entity );
+      } catch( IOException e ) {}
+    }
+  }
+  
+  
+  /**
+   * Called when a streaming request did not return a successful response.
+   * The response content has been buffered.
+   * Override this to throw a more meaningful exception.
+   * @param res response 
+   * @throws APIException always
+   */
+  protected void checkStreamResponse( final IAPIResponse res ) 
+    throws APIException
+  {
+    throw new APIException( "Endpoint responded with " 
+      + String.valueOf( res.getStatusLine().getStatusCode()) + " - " 
+      + res.getStatusLine().getReasonPhrase());
+  }
+
+
   /**
    * Retrieves the status and version number information from the response
    * @param response Response to pull data from
    */
   private IAPIResponse createResponseObject( final HttpResponse response )
   {
-    return new APIResponse(
+    final IAPIResponse res = new APIResponse(
       response.getProtocolVersion(),
       response.getStatusLine(),
       new ArrayList<>( Arrays.asList( response.getAllHeaders()))
     );
+    
+    res.setRetainContent( retainResponseContent );
+    
+    return res;
   }
 
 
   /**
    * Process the retrieved entity stream.
    * This will limit the buffer size to getMaxDownloadSize() or the size of the
-   * content-length header.
+   * content-length header.  If a spill threshold is set, bodies larger than 
+   * the threshold are written to a temporary file instead, and are not 
+   * limited.
+   * The raw bytes are buffered and decoded once, so multi-byte characters are
+   * never split.
    * @param entity
    * @throws BrowserException
    */
   private IAPIResponse processEntity( final IAPIResponse res, 
      final InputStream in, final String charset ) throws APIException
   {
+    final long spill = spillThreshold;
+    final long limit = ( spill > 0 ) ? spill : maxDownloadSize;
+    
+    File file = null;
+    OutputStream fileOut = null;
+    
     //..Buffer dat ish
     try ( BufferedInputStream content = new BufferedInputStream( in ))
     {
-      //..1 kilobyte worth of bytes
-      byte[] bytes = new byte[1024];
+      //..8 kilobytes worth of bytes
+      byte[] bytes = new byte[8192];
 
       //..Total bytes read from the stream
-      int totalBytes = 0;
+      long totalBytes = 0;
 
       //..Number of bytes read from the stream
       int bytesRead;
 
-      //..Create a new html buffer to store the data
-      final StringBuilder htmlBuffer = new StringBuilder( 
-         res.getContentLength());
+      //..Create a new buffer to store the raw data
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 
+        (int)Math.min( limit, 
+          Math.max( res.getContentLength(), bytes.length )));
 
       //..Read the bytes
-      while (( bytesRead = content.read( bytes )) != -1 )
+      while (( bytesRead = content.read( bytes, 0, ( spill > 0 ) ? bytes.length 
+        : (int)Math.min( bytes.length, maxDownloadSize - totalBytes ))) > 0 )
       {
         //..Increment the total bytes read
         totalBytes += bytesRead;
 
+        if ( fileOut == null && spill > 0 && totalBytes > spill )
+        {
+          //..Too big for memory, move what we have to a file 
+          file = File.createTempFile( "aerodrome", ".body", spillDirectory );
+          fileOut = new BufferedOutputStream( new FileOutputStream( file ), 65536 );
+          buffer.writeTo( fileOut );
+          buffer.reset();
+        }
+        
         //..Append the bytes read to the buffer
-        htmlBuffer.append( new String( bytes, 0, bytesRead, charset ));
+        if ( fileOut != null )
+          fileOut.write( bytes, 0, bytesRead );
+        else
+          buffer.write( bytes, 0, bytesRead );
 
         //..Break on max download size
-        if ( totalBytes >= maxDownloadSize )
+        if ( spill <= 0 && totalBytes >= maxDownloadSize )
+        {
+          if ( content.read() != -1 )
+          {
+            APILog.warn( LOG, "Response body truncated at", 
+              String.valueOf( maxDownloadSize ), "bytes" );
+          }
           break;
+        }
       }
-
-      //..set the character set used to create the htmlBuffer
-      if ( LOG.isTraceEnabled())
+      
+      if ( res instanceof APIResponse )
+        ((APIResponse)res).setBodyLength( totalBytes );
+      
+      if ( fileOut != null )
       {
-        final String buff = htmlBuffer.toString();
-        APILog.trace( LOG, buff );
-        res.setContent( buff, charset );
+        fileOut.close();
+        fileOut = null;
+        
+        APILog.debug( LOG, "Response body of", String.valueOf( totalBytes ), 
+          "bytes written to", file.getAbsolutePath());
+        
+        ((APIResponse)res).setSpilledContent( 
+          new SpilledContent( file, totalBytes ), charset );
+        
+        file = null;
+        return res;
       }
-      else
-        res.setContent( htmlBuffer.toString(), charset );
+      
+      //..Decode the entire body at once 
+      final String body = buffer.toString( charset );
+
+      //..set the character set used to create the body
+      APILog.trace( LOG, body );
+      res.setContent( body, charset );
 
     } catch( IOException e ) {
       //..Oh noes!
       throw new APIException( "Failed to process content stream.  " 
         + e.getMessage(), e );
+    } finally {
+      if ( fileOut != null )
+      {
+        try {
+          fileOut.close();
+        } catch( IOException e ) {}
+      }
+      
+      if ( file != null )
+        file.delete();
     }
 
     //..Return the results
@@ -770,7 +1177,441 @@ public class API implements IApi
 
 
   /**
-   * Execute a HttpRequest
+   * Block until the client rate limiter allows some request to be sent 
+   * @param hr request 
+   * @throws APIException if interrupted while waiting 
+   */
+  protected void throttle( final HttpUriRequest hr ) throws APIException
+  {
+    final RequestRateLimiter limiter = client.getRateLimiter();
+    if ( limiter != null )
+      limiter.acquire( hr.getURI());
+  }
+  
+  
+  /**
+   * Execute a HttpRequest and stream the response body to some handler.
+   * Failed attempts are retried according to the retry policy, as long as 
+   * the handler has not been given the stream.
+   * @param <T> Handler result type 
+   * @param hr request
+   * @param handler Stream handler 
+   * @return handler result 
+   * @throws APIException If the request failed
+   */
+  protected <T> T executeStreamRequest( final HttpUriRequest hr, 
+    final IResponseStreamHandler<T> handler ) throws APIException
+  {
+    beginRetries( hr );
+    
+    for ( int attempts = 1; ; attempts++ )
+    {
+      final AdaptiveThrottle.Permit permit = acquirePermit();
+      HttpResponse received = null;
+      EndpointMetrics.Call call = null;
+      long delay;
+
+      //..Execute and process the response
+      try {
+        throttle( hr );
+        call = beginCall( hr );
+
+        try ( final CloseableHttpResponse response = client.getClient()
+          .execute( hr, context )) 
+        {
+          received = response;
+          
+          final IAPIResponse head = createResponseObject( response );
+          delay = ( head.isSuccess()) ? -1 
+            : getRetryDelay( hr, attempts, head, null );
+          
+          if ( delay < 0 )
+            return processStreamResponse( response, hr, handler );
+          
+          EntityUtils.consume( response.getEntity());
+        }
+      } catch( IOException e ) {
+        delay = getRetryDelay( hr, attempts, null, e );
+        if ( delay < 0 )
+          throw new APIException( "Failed to make request\n" + e.getMessage(), e );
+      } finally {
+        releasePermit( permit, received );
+        endCall( call, received, null );
+      }
+      
+      waitForRetry( hr, delay );
+    }
+  }
+  
+  
+  /**
+   * Execute a HttpRequest with the non-blocking client.
+   * The response is processed on the I/O thread that completes the exchange.
+   * Failed attempts are retried according to the retry policy without 
+   * holding a thread.
+   * Cancelling the returned future cancels the exchange.
+   * @param hr request
+   * @return response.  Fails with APIException if the request failed.
+   */
+  protected CompletableFuture<IAPIResponse> executeRequestAsync( 
+    final HttpUriRequest hr ) 
+  {
+    final CompletableFuture<IAPIResponse> out = new CompletableFuture<>();
+    beginRetries( hr );
+    attemptAsync( hr, out, 1 );
+    return out;
+  }
+  
+  
+  /**
+   * Make a single non-blocking attempt at some request, and schedule the 
+   * next attempt if it should be retried.
+   * @param hr request 
+   * @param out future completed with the final outcome 
+   * @param attempts attempt number 
+   */
+  private void attemptAsync( final HttpUriRequest hr, 
+    final CompletableFuture<IAPIResponse> out, final int attempts )
+  {
+    if ( out.isDone())
+      return;
+    
+    final CompletableFuture<IAPIResponse> attempt = new CompletableFuture<>();
+    
+    out.whenComplete(( res, t ) -> {
+      if ( out.isCancelled())
+        attempt.cancel( false );
+    });
+    
+    attempt.whenComplete(( res, t ) -> {
+      if ( out.isDone())
+        return;
+      else if ( attempt.isCancelled())
+      {
+        out.cancel( false );
+        return;
+      }
+      
+      final Throwable cause = ( t instanceof CompletionException 
+        && t.getCause() != null ) ? t.getCause() : t;
+      
+      final long delay = ( cause == null || cause instanceof Exception )
+        ? getRetryDelay( hr, attempts, res, (Exception)cause ) : -1;
+      
+      if ( delay >= 0 )
+      {
+        resetRequest( hr );
+        APIScheduler.schedule(() -> attemptAsync( hr, out, attempts + 1 ), 
+          delay, TimeUnit.MILLISECONDS );
+      }
+      else if ( cause == null )
+        out.complete( res );
+      else if ( cause instanceof APIException )
+        out.completeExceptionally( cause );
+      else 
+      {
+        out.completeExceptionally( new APIException( 
+          "Failed to make request\n" + cause.getMessage(), 
+          ( cause instanceof Exception ) ? (Exception)cause : null ));
+      }
+    });
+    
+    //..Wait for the throttle and the rate limiter without holding a thread 
+    final AdaptiveThrottle adaptive = client.getAdaptiveThrottle();
+    final CompletableFuture<AdaptiveThrottle.Permit> permit = ( adaptive == null )
+      ? CompletableFuture.completedFuture( null ) : adaptive.acquireAsync();
+    
+    attempt.whenComplete(( res, t ) -> {
+      if ( attempt.isCancelled())
+        permit.cancel( false );
+    });
+    
+    permit.thenAccept( p -> {
+      if ( attempt.isDone())
+      {
+        releasePermit( p, null );
+        return;
+      }
+      
+      final RequestRateLimiter limiter = client.getRateLimiter();
+      final CompletableFuture<Void> token = ( limiter == null )
+        ? CompletableFuture.completedFuture( null ) 
+        : limiter.acquireAsync( hr.getURI());
+      
+      token.thenRun(() -> {
+        if ( attempt.isDone())
+          releasePermit( p, null );
+        else
+          sendAsync( hr, attempt, p );
+      });
+    });
+  }
+  
+  
+  /**
+   * Wait for a slot from the client adaptive throttle
+   * @return permit or null if the client is not throttled 
+   * @throws APIException if interrupted while waiting 
+   */
+  private AdaptiveThrottle.Permit acquirePermit() throws APIException
+  {
+    final AdaptiveThrottle adaptive = client.getAdaptiveThrottle();
+    return ( adaptive == null ) ? null : adaptive.acquire();
+  }
+  
+  
+  /**
+   * Give a throttle slot back, adjusting the throttle by the response status
+   * @param permit permit or null 
+   * @param response response or null if none was received 
+   */
+  private static void releasePermit( final AdaptiveThrottle.Permit permit, 
+    final HttpResponse response )
+  {
+    if ( permit == null )
+      return;
+    else if ( response == null )
+      permit.release();
+    else
+      permit.release( response );
+  }
+  
+  
+  /**
+   * Retrieve the name used to group metrics for some request.
+   * This uses the method and path.  Subclasses should override this when
+   * paths contain ids, so each id does not become its own endpoint.
+   * @param hr request 
+   * @return endpoint name (ie: "GET /orders/ready")
+   */
+  protected String getEndpointName( final HttpUriRequest hr )
+  {
+    final String path = hr.getURI().getRawPath();
+    return hr.getMethod() + " " + 
+      (( path == null || path.isEmpty()) ? "/" : path );
+  }
+  
+  
+  /**
+   * Start recording an exchange 
+   * @param hr request 
+   * @return call or null if metrics are disabled 
+   */
+  private EndpointMetrics.Call beginCall( final HttpUriRequest hr )
+  {
+    final RequestMetrics m = metrics;
+    if ( m == null )
+      return null;
+    
+    long sent = -1;
+    if ( hr instanceof HttpEntityEnclosingRequest )
+    {
+      final HttpEntity entity = ((HttpEntityEnclosingRequest)hr).getEntity();
+      if ( entity != null )
+        sent = entity.getContentLength();
+    }
+    
+    return m.get( getEndpointName( hr )).begin( sent );
+  }
+  
+  
+  /**
+   * Finish recording an exchange 
+   * @param call call or null 
+   * @param response response or null if none was received 
+   * @param res processed response or null 
+   */
+  private static void endCall( final EndpointMetrics.Call call, 
+    final HttpResponse response, final IAPIResponse res )
+  {
+    if ( call == null )
+      return;
+    else if ( response == null )
+      call.fail();
+    else
+    {
+      call.end( response.getStatusLine().getStatusCode(), 
+        ( res instanceof APIResponse ) ? ((APIResponse)res).getBodyLength() : 0 );
+    }
+  }
+  
+  
+  /**
+   * Tell the retry policy a new request is starting 
+   * @param hr request 
+   */
+  private void beginRetries( final HttpUriRequest hr )
+  {
+    final IRetryPolicy policy = retryPolicy;
+    if ( policy != null )
+      policy.onRequest( hr );
+  }
+  
+  
+  /**
+   * Ask the retry policy if an attempt should be retried 
+   * @param hr request 
+   * @param attempts attempts made so far 
+   * @param response last response or null 
+   * @param error last error or null 
+   * @return milliseconds to wait or -1 to give up 
+   */
+  private long getRetryDelay( final HttpUriRequest hr, final int attempts,
+    final IAPIResponse response, final Exception error )
+  {
+    final IRetryPolicy policy = retryPolicy;
+    if ( policy == null )
+      return -1;
+    
+    final long delay = policy.getRetryDelay( hr, attempts, response, error );
+    if ( delay >= 0 )
+    {
+      APILog.warn( LOG, "Retrying", hr.getMethod(), hr.getURI().toString(), 
+        "in", String.valueOf( delay ), "ms after", 
+        ( error != null ) ? error.getClass().getSimpleName() + ": " + error.getMessage()
+          : String.valueOf( response.getStatusLine().getStatusCode()));
+    }
+    
+    return delay;
+  }
+  
+  
+  /**
+   * Sleep before retrying a request and make the request ready to send again
+   * @param hr request 
+   * @param delay milliseconds 
+   * @throws APIException if interrupted 
+   */
+  private void waitForRetry( final HttpUriRequest hr, final long delay )
+    throws APIException
+  {
+    try {
+      Thread.sleep( delay );
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting to retry a request", e );
+    }
+    
+    resetRequest( hr );
+  }
+  
+  
+  /**
+   * Make a request object ready to send again 
+   * @param hr request 
+   */
+  private static void resetRequest( final HttpUriRequest hr )
+  {
+    if ( hr instanceof HttpRequestBase )
+      ((HttpRequestBase)hr).reset();
+  }
+  
+  
+  /**
+   * Send a request with the non-blocking client and complete some future 
+   * with the response.
+   * @param hr request 
+   * @param out future to complete.  Completed exceptionally with the raw 
+   * exception if the exchange failed.
+   * @param permit throttle permit to release once the exchange is done
+   */
+  private void sendAsync( final HttpUriRequest hr, 
+    final CompletableFuture<IAPIResponse> out, 
+    final AdaptiveThrottle.Permit permit )
+  {
+    final EndpointMetrics.Call call = beginCall( hr );
+    
+    try {
+      //..Interceptors run too late to replace the entity of async requests 
+      final GzipRequestInterceptor compressor = client.getRequestCompressor();
+      if ( compressor != null )
+        compressor.compress( hr, context );
+      
+      final Future<HttpResponse> exchange = client.getAsyncClient().execute( 
+        hr, HttpClientContext.create(), new FutureCallback<HttpResponse>() 
+      {
+        @Override
+        public void completed( final HttpResponse response ) 
+        {
+          IAPIResponse res = null;
+          try {
+            decodeAsyncEntity( response );
+            res = processResponse( response, hr );
+          } catch( APIException e ) {
+            out.completeExceptionally( e );
+          } catch( RuntimeException e ) {
+            out.completeExceptionally( new APIException( e.getMessage(), e ));
+          } finally {
+            releasePermit( permit, response );
+            endCall( call, response, res );
+          }
+          
+          if ( res != null )
+            out.complete( res );
+        }
+
+        @Override
+        public void failed( final Exception e ) 
+        {
+          releasePermit( permit, null );
+          endCall( call, null, null );
+          out.completeExceptionally( e );
+        }
+
+        @Override
+        public void cancelled() 
+        {
+          releasePermit( permit, null );
+          endCall( call, null, null );
+          out.cancel( false );
+        }
+      });
+      
+      out.whenComplete(( res, t ) -> {
+        if ( out.isCancelled())
+          exchange.cancel( true );
+      });      
+    } catch( APIException e ) {
+      releasePermit( permit, null );
+      endCall( call, null, null );
+      out.completeExceptionally( e );
+    } catch( IOException e ) {
+      releasePermit( permit, null );
+      endCall( call, null, null );
+      out.completeExceptionally( new APIException( "Failed to compress the request body", e ));
+    }
+  }
+  
+  
+  /**
+   * The async client does not decompress entities.
+   * If gzip is allowed and the response is gzipped, this will wrap the 
+   * entity in a decompressing entity.
+   * @param response response 
+   */
+  private void decodeAsyncEntity( final HttpResponse response )
+  {
+    final HttpEntity entity = response.getEntity();
+    if ( !client.isGzipAllowed() || entity == null 
+      || entity.getContentEncoding() == null )
+    {
+      return;
+    }
+    
+    for ( final HeaderElement codec : entity.getContentEncoding().getElements())
+    {
+      if ( codec.getName().equalsIgnoreCase( "gzip" )) 
+      {
+        response.setEntity( new GzipDecompressingEntity( entity ));
+        return;
+      }
+    }
+  }
+  
+  
+  /**
+   * Execute a HttpRequest.
+   * Failed attempts are retried according to the retry policy.
    * @param hr request
    * @return response
    * @throws APIException If the request failed
@@ -778,13 +1619,64 @@ public class API implements IApi
   protected IAPIResponse executeRequest( final HttpUriRequest hr ) 
     throws APIException
   {
-    //..Execute and process the response
-    try ( final CloseableHttpResponse response = client.getClient()
-      .execute( hr, context )) 
+    beginRetries( hr );
+    
+    for ( int attempts = 1; ; attempts++ )
     {
-      return processResponse( response, hr );
-    } catch( IOException e ) {
-      throw new APIException( "Failed to make request\n" + e.getMessage(), e );
+      final IAPIResponse res;
+      
+      try {
+        res = executeRequestOnce( hr );
+      } catch( IOException e ) {
+        final long delay = getRetryDelay( hr, attempts, null, e );
+        if ( delay < 0 )
+          throw new APIException( "Failed to make request\n" + e.getMessage(), e );
+        
+        waitForRetry( hr, delay );
+        continue;
+      }
+      
+      final long delay = ( res.isSuccess()) ? -1 
+        : getRetryDelay( hr, attempts, res, null );
+      
+      if ( delay < 0 )
+        return res;
+      
+      waitForRetry( hr, delay );
+    }
+  }
+  
+  
+  /**
+   * Make a single attempt at some request 
+   * @param hr request 
+   * @return response 
+   * @throws IOException if the exchange failed 
+   * @throws APIException if the response could not be processed 
+   */
+  private IAPIResponse executeRequestOnce( final HttpUriRequest hr )
+    throws IOException, APIException
+  {
+    final AdaptiveThrottle.Permit permit = acquirePermit();
+    HttpResponse received = null;
+    IAPIResponse res = null;
+    EndpointMetrics.Call call = null;
+    
+    //..Execute and process the response
+    try {
+      throttle( hr );
+      call = beginCall( hr );
+      
+      try ( final CloseableHttpResponse response = client.getClient()
+        .execute( hr, context )) 
+      {
+        received = response;
+        res = processResponse( response, hr );
+        return res;
+      }
+    } finally {
+      releasePermit( permit, received );
+      endCall( call, received, res );
     }
   }
-}
\ No newline at end of file
+}
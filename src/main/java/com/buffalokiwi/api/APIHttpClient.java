@@ -19,10 +19,25 @@ import java.net.URISyntaxException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
@@ -31,8 +46,14 @@ import org.apache.http.client.RedirectStrategy;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
@@ -40,6 +61,10 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 
@@ -92,6 +117,35 @@ public class APIHttpClient implements IAPIHttpClient
      */
     public static final long DEFAULT_CRAWL_DELAY = 1000L;
     
+    /**
+     * Default milliseconds a pooled connection may sit idle before it is 
+     * revalidated on lease
+     */
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+    
+    /**
+     * Default milliseconds between idle connection sweeps 
+     */
+    public static final long DEFAULT_IDLE_EVICTION_INTERVAL = 5000L;
+    
+    /**
+     * Default milliseconds a pooled connection may sit idle before it is closed
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000L;
+    
+    /**
+     * Default total time to live for a pooled connection in milliseconds.
+     * Zero means connections live until closed by the server or the idle 
+     * monitor.
+     */
+    public static final long DEFAULT_CONNECTION_TTL = 0L;
+    
+    /**
+     * Default number of requests that may be sent back to back to a host 
+     * that has been idle for at least the crawl delay 
+     */
+    public static final int DEFAULT_RATE_LIMIT_BURST = 1;
+    
     /**
      * The user agent string to use
      */
@@ -132,6 +186,78 @@ public class APIHttpClient implements IAPIHttpClient
      */
     private String host = "";
     
+    /**
+     * Maximum pooled connections 
+     */
+    private int maxTotal = DEFAULT_MAX_TOTAL;
+    
+    /**
+     * Maximum pooled connections per route 
+     */
+    private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+    
+    /**
+     * Idle millis before a leased connection is revalidated 
+     */
+    private int validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+    
+    /**
+     * Millis between idle connection sweeps 
+     */
+    private long idleEvictionInterval = DEFAULT_IDLE_EVICTION_INTERVAL;
+    
+    /**
+     * Idle millis before a pooled connection is closed 
+     */
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    
+    /**
+     * Connection time to live in millis 
+     */
+    private long connectionTTL = DEFAULT_CONNECTION_TTL;
+    
+    /**
+     * Burst size for the default rate limiter 
+     */
+    private int rateLimitBurst = DEFAULT_RATE_LIMIT_BURST;
+    
+    /**
+     * If setCrawlDelay() or setRateLimitBurst() was called.  
+     * The default limiter only limits hosts when this is set.
+     */
+    private boolean hostLimitSet = false;
+    
+    /**
+     * Rate limiter to use instead of the crawl delay based default 
+     */
+    private RequestRateLimiter rateLimiter = null;
+    
+    /**
+     * If the adaptive throttle is enabled 
+     */
+    private boolean adaptiveThrottle = true;
+    
+    /**
+     * Smallest request body to gzip.  Less than zero disables.
+     */
+    private long requestCompressionThreshold = -1;
+    
+    /**
+     * Lease waits longer than this are reported.  Zero disables.
+     */
+    private long poolSaturationThreshold 
+      = ConnectionPoolMonitor.DEFAULT_SATURATION_THRESHOLD;
+    
+    /**
+     * Connections held longer than this are reported.  Zero disables.
+     */
+    private long leakDetectionThreshold = 0;
+    
+    /**
+     * Receives pool warnings.  null logs them.
+     */
+    private ConnectionPoolMonitor.IListener poolListener = null;
+    
     
     /**
      * Set the user agent string to use
@@ -211,7 +337,8 @@ public class APIHttpClient implements IAPIHttpClient
     
     /**
      * Sets the crawl delay in milliseconds.
-     * This is the minimum time between requests 
+     * This is the minimum time between requests to a host.  
+     * Hosts are not rate limited unless this or setRateLimitBurst() is called.
      * @param delay Delay between requests 
      * @return The builder instance 
      * @throws IllegalArgumentException if delay is less than zero
@@ -226,6 +353,7 @@ public class APIHttpClient implements IAPIHttpClient
       }
 
       crawlDelay = delay;
+      hostLimitSet = true;
       
       return this;
     }
@@ -258,7 +386,242 @@ public class APIHttpClient implements IAPIHttpClient
     
     
     /**
-     * Build the HttpClient shared instance. 
+     * Set the maximum number of connections held by this client's pool.
+     * @param max max connections 
+     * @return builder
+     * @throws IllegalArgumentException if max is less than one
+     */
+    public APIHttpClient.Builder setMaxTotal( final int max )
+      throws IllegalArgumentException
+    {
+      if ( max < 1 )
+        throw new IllegalArgumentException( "max must be greater than zero" );
+      
+      maxTotal = max;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the maximum number of connections held by this client's pool 
+     * for a single route (host).
+     * @param max max connections 
+     * @return builder
+     * @throws IllegalArgumentException if max is less than one
+     */
+    public APIHttpClient.Builder setMaxPerRoute( final int max )
+      throws IllegalArgumentException
+    {
+      if ( max < 1 )
+        throw new IllegalArgumentException( "max must be greater than zero" );
+      
+      maxPerRoute = max;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Pooled connections idle for longer than this are checked for staleness
+     * before they are leased.  Zero or less disables the check.
+     * @param millis milliseconds 
+     * @return builder
+     */
+    public APIHttpClient.Builder setValidateAfterInactivity( final int millis )
+    {
+      validateAfterInactivity = millis;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the time between idle and expired connection sweeps.
+     * @param millis milliseconds 
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than one
+     */
+    public APIHttpClient.Builder setIdleEvictionInterval( final long millis )
+      throws IllegalArgumentException
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+      
+      idleEvictionInterval = millis;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the time a pooled connection may sit idle before it is closed.
+     * @param millis milliseconds 
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than one
+     */
+    public APIHttpClient.Builder setIdleTimeout( final long millis )
+      throws IllegalArgumentException
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+      
+      idleTimeout = millis;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the total time to live for a pooled connection.  Connections 
+     * older than this are not reused.  Zero disables the limit.
+     * @param millis milliseconds 
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than zero
+     */
+    public APIHttpClient.Builder setConnectionTimeToLive( final long millis )
+      throws IllegalArgumentException
+    {
+      if ( millis < 0 )
+      {
+        throw new IllegalArgumentException( 
+          "millis must be greater than or equal to zero" );
+      }
+      
+      connectionTTL = millis;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the number of requests that may be sent back to back to a host
+     * that has been idle for at least the crawl delay.  
+     * Ignored if setRateLimiter() is used.
+     * @param burst burst size 
+     * @return builder
+     * @throws IllegalArgumentException if burst is less than one
+     */
+    public APIHttpClient.Builder setRateLimitBurst( final int burst )
+      throws IllegalArgumentException
+    {
+      if ( burst < 1 )
+        throw new IllegalArgumentException( "burst must be greater than zero" );
+      
+      rateLimitBurst = burst;
+      hostLimitSet = true;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the rate limiter used for every request made with the client.
+     * By default, hosts are not limited unless setCrawlDelay() or 
+     * setRateLimitBurst() is used, and then each host is limited to one 
+     * request every crawl delay milliseconds.  Use this to add endpoint groups or different host limits.
+     * @param limiter limiter 
+     * @return builder
+     */
+    public APIHttpClient.Builder setRateLimiter( final RequestRateLimiter limiter )
+    {
+      if ( limiter == null )
+        throw new IllegalArgumentException( "limiter cannot be null" );
+      
+      rateLimiter = limiter;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Toggle limiting the number of requests in flight based on how the 
+     * remote host responds.  The limit starts at max per route, is cut in
+     * half by each 429 or 503 response, and recovers as requests succeed.
+     * Retry-After headers pause new requests.  Defaults to on.
+     * @param on toggle 
+     * @return builder
+     */
+    public APIHttpClient.Builder setAdaptiveThrottle( final boolean on )
+    {
+      adaptiveThrottle = on;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Gzip request bodies of at least some size and send them with 
+     * Content-Encoding: gzip.  Thresholds for individual endpoints can be 
+     * set later with getRequestCompressor().  Defaults to off.
+     * @param bytes Smallest body to compress.  Less than zero disables.
+     * @return builder
+     */
+    public APIHttpClient.Builder setRequestCompressionThreshold( final long bytes )
+    {
+      requestCompressionThreshold = bytes;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Report leases that wait longer than some time for a connection.
+     * Defaults to 500 milliseconds.
+     * @param millis Wait in milliseconds.  Zero disables.
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than zero 
+     */
+    public APIHttpClient.Builder setPoolSaturationThreshold( final long millis )
+      throws IllegalArgumentException
+    {
+      if ( millis < 0 )
+        throw new IllegalArgumentException( "millis must be greater than or equal to zero" );
+      
+      poolSaturationThreshold = millis;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Report connections that are leased for longer than some time, along 
+     * with the stack of the call that leased them.  Defaults to off.
+     * @param millis Time in milliseconds.  Zero disables.
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than zero 
+     */
+    public APIHttpClient.Builder setLeakDetectionThreshold( final long millis )
+      throws IllegalArgumentException
+    {
+      if ( millis < 0 )
+        throw new IllegalArgumentException( "millis must be greater than or equal to zero" );
+      
+      leakDetectionThreshold = millis;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Set the listener for pool saturation and leak warnings.
+     * Defaults to logging them.
+     * @param listener listener 
+     * @return builder
+     */
+    public APIHttpClient.Builder setPoolListener( 
+      final ConnectionPoolMonitor.IListener listener )
+    {
+      poolListener = listener;
+      
+      return this;
+    }
+    
+    
+    /**
+     * Build the HttpClient instance.
+     * Each built client owns its own connection pool and idle connection 
+     * monitor.  Call shutdown() when the client is no longer needed.
      * Available via getClient().
      * @return the client
      * @throws URISyntaxException if URIBuilder throws an exception 
@@ -275,36 +638,69 @@ public class APIHttpClient implements IAPIHttpClient
         allowgzip, 
         allowUntrustedSSL, 
         host,
-        crawlDelay 
+        crawlDelay,
+        maxTotal,
+        maxPerRoute,
+        validateAfterInactivity,
+        idleEvictionInterval,
+        idleTimeout,
+        connectionTTL
       );
       
-      //..Create the new shared client to use 
+      client.poolMonitor = new ConnectionPoolMonitor( 
+        poolSaturationThreshold, leakDetectionThreshold, poolListener );
+      
+      //..Create the pool and the client that uses it
+      client.pool = client.createConnectionManager();
       client.client = client.createNewClient();
       
+      //..The default limiter does not throttle hosts unless asked to, but 
+      //  endpoint group limits can still be added to it 
+      if ( rateLimiter != null )
+        client.rateLimiter = rateLimiter;
+      else if ( hostLimitSet )
+        client.rateLimiter = RequestRateLimiter.everyMillis( crawlDelay, rateLimitBurst );
+      else
+        client.rateLimiter = new RequestRateLimiter( 0, rateLimitBurst );
+      
+      if ( adaptiveThrottle )
+        client.adaptiveThrottle = new AdaptiveThrottle( maxPerRoute );
+      
+      client.requestCompressor.setDefaultThreshold( requestCompressionThreshold );
+      
+      //..Start evicting idle connections 
+      client.monitor = new IdleConnectionMonitorThread( 
+        client.pool, idleEvictionInterval, idleTimeout );
+      client.monitor.start();
+      
+      CLIENTS.add( client );
+      
       return client;
     }
   } //..End Builder 
   
   
   /**
-   * Maximum connections
+   * Default maximum connections
    */
   public static final int DEFAULT_MAX_TOTAL = 200;
 
   /**
-   * Maximum connections per route 
+   * Default maximum connections per route 
    */
   public static final int DEFAULT_MAX_PER_ROUTE = 50;
   
   /**
-   * The HTTP Client connection manager
+   * Every client built and not yet shut down.
+   * Used by the deprecated shutdownConnectionManager().
    */
-  private static final PoolingHttpClientConnectionManager POOL = new PoolingHttpClientConnectionManager();
+  private static final Set<APIHttpClient> CLIENTS 
+    = Collections.synchronizedSet( Collections.newSetFromMap( new WeakHashMap<>()));
   
   /**
-   * The idle connection monitor thread
-   */  
-  private static final IdleConnectionMonitorThread MONITOR = new IdleConnectionMonitorThread( POOL );
+   * Log
+   */
+  private static final Log LOG = LogFactory.getLog( APIHttpClient.class );
   
   /**
    * The user agent string to use
@@ -347,21 +743,76 @@ public class APIHttpClient implements IAPIHttpClient
    */
   private final long crawlDelay; 
   
+  /**
+   * Maximum pooled connections 
+   */
+  private final int maxTotal;
+  
+  /**
+   * Maximum pooled connections per route 
+   */
+  private final int maxPerRoute;
+  
+  /**
+   * Idle millis before a leased connection is revalidated 
+   */
+  private final int validateAfterInactivity;
+  
+  /**
+   * Millis between idle connection sweeps 
+   */
+  private final long idleEvictionInterval;
+  
+  /**
+   * Idle millis before a pooled connection is closed 
+   */
+  private final long idleTimeout;
+  
+  /**
+   * Connection time to live in millis.  Zero is forever.
+   */
+  private final long connectionTTL;
+  
+  /**
+   * The connection manager owned by this client 
+   */
+  private PoolingHttpClientConnectionManager pool = null;
+  
+  /**
+   * Pool telemetry 
+   */
+  private ConnectionPoolMonitor poolMonitor = null;
+  
+  /**
+   * The idle connection monitor thread for pool 
+   */
+  private IdleConnectionMonitorThread monitor = null;
+  
+  /**
+   * The request rate limiter 
+   */
+  private RequestRateLimiter rateLimiter = null;
+  
+  /**
+   * Limits requests in flight 
+   */
+  private AdaptiveThrottle adaptiveThrottle = null;
+  
+  /**
+   * Gzips request bodies 
+   */
+  private final GzipRequestInterceptor requestCompressor = new GzipRequestInterceptor();
+  
   /**
    * The HttpClient 
    */
   private CloseableHttpClient client = null;
- 
   
   /**
-   * Static Init
+   * The non-blocking HttpClient.
+   * This is created and started the first time getAsyncClient() is called.
    */
-  static 
-  {
-    //..Set the pool defaults
-    POOL.setMaxTotal( DEFAULT_MAX_TOTAL );
-    POOL.setDefaultMaxPerRoute( DEFAULT_MAX_PER_ROUTE );
-  }
+  private volatile CloseableHttpAsyncClient asyncClient = null;
   
 
   /**
@@ -374,6 +825,13 @@ public class APIHttpClient implements IAPIHttpClient
    * @param allowUntrustedSSL If untrusted ssl is allowed
    * @param host The host (http://donkey.co)
    * @param crawlDelay some delay to use between requests 
+   * @param maxTotal Max pooled connections 
+   * @param maxPerRoute Max pooled connections per route 
+   * @param validateAfterInactivity Idle millis before a leased connection
+   * is revalidated 
+   * @param idleEvictionInterval Millis between idle connection sweeps 
+   * @param idleTimeout Idle millis before a pooled connection is closed 
+   * @param connectionTTL Connection time to live in millis.  Zero is forever.
    * @throws URISyntaxException If the host is invalid 
    */
   protected APIHttpClient( 
@@ -384,7 +842,13 @@ public class APIHttpClient implements IAPIHttpClient
     final boolean allowgzip,
     final boolean allowUntrustedSSL,
     final String host,
-    final long crawlDelay ) throws URISyntaxException
+    final long crawlDelay,
+    final int maxTotal,
+    final int maxPerRoute,
+    final int validateAfterInactivity,
+    final long idleEvictionInterval,
+    final long idleTimeout,
+    final long connectionTTL ) throws URISyntaxException
   {
     this.host = new URIBuilder( host );
     this.readTimeout = readTimeout;
@@ -394,19 +858,228 @@ public class APIHttpClient implements IAPIHttpClient
     this.allowUntrustedSSL = allowUntrustedSSL;
     this.userAgent = userAgent;
     this.crawlDelay = crawlDelay;    
+    this.maxTotal = maxTotal;
+    this.maxPerRoute = maxPerRoute;
+    this.validateAfterInactivity = validateAfterInactivity;
+    this.idleEvictionInterval = idleEvictionInterval;
+    this.idleTimeout = idleTimeout;
+    this.connectionTTL = connectionTTL;
+  }
+  
+
+  /**
+   * Create a new APIHttpClient instance using the default pool settings.
+   * @param userAgent The user agent 
+   * @param readTimeout The read timeout 
+   * @param accept The accept header value 
+   * @param acceptLanguage The accept language header value 
+   * @param allowgzip If gzip is allowed
+   * @param allowUntrustedSSL If untrusted ssl is allowed
+   * @param host The host (http://donkey.co)
+   * @param crawlDelay some delay to use between requests 
+   * @throws URISyntaxException If the host is invalid 
+   */
+  protected APIHttpClient( 
+    final String userAgent,
+    final long readTimeout,
+    final String accept,
+    final String acceptLanguage,
+    final boolean allowgzip,
+    final boolean allowUntrustedSSL,
+    final String host,
+    final long crawlDelay ) throws URISyntaxException
+  {
+    this( userAgent, readTimeout, accept, acceptLanguage, allowgzip, 
+      allowUntrustedSSL, host, crawlDelay, DEFAULT_MAX_TOTAL, 
+      DEFAULT_MAX_PER_ROUTE, Builder.DEFAULT_VALIDATE_AFTER_INACTIVITY,
+      Builder.DEFAULT_IDLE_EVICTION_INTERVAL, Builder.DEFAULT_IDLE_TIMEOUT,
+      Builder.DEFAULT_CONNECTION_TTL );
   }
 
 
   /**
-   * Shutdown the underlying connection manager
+   * Shutdown the connection managers of every client built so far.
+   * @deprecated Pools are owned by each client.  Use shutdown() on the 
+   * client that is no longer needed.
    */
-  public static synchronized void shutdownConnectionManager()
+  @Deprecated
+  public static void shutdownConnectionManager()
   {
-    //..Shutdown the monitor thread
-    MONITOR.shutdown();
- 
-    //..Shutdown the connection pool
-    POOL.shutdown();
+    final List<APIHttpClient> clients;
+    synchronized( CLIENTS )
+    {
+      clients = new ArrayList<>( CLIENTS );
+    }
+    
+    for ( final APIHttpClient c : clients )
+    {
+      c.shutdown();
+    }
+  }
+  
+  
+  /**
+   * Shut down this client.
+   * Stops the idle connection monitor, closes every pooled connection and 
+   * shuts down the non-blocking client if it was started.  
+   * Other clients are not affected.
+   */
+  @Override
+  public synchronized void shutdown()
+  {
+    if ( monitor != null )
+      monitor.shutdown();
+    
+    if ( pool != null )
+      pool.shutdown();
+    
+    shutdownAsyncClient();
+    
+    CLIENTS.remove( this );
+  }
+  
+  
+  /**
+   * Retrieve the connection manager owned by this client 
+   * @return pool 
+   */
+  public PoolingHttpClientConnectionManager getConnectionManager()
+  {
+    return pool;
+  }
+  
+  
+  /**
+   * Retrieve the telemetry for the connection pool 
+   * @return monitor 
+   */
+  @Override
+  public ConnectionPoolMonitor getPoolMonitor()
+  {
+    return poolMonitor;
+  }
+  
+  
+  /**
+   * Open pooled connections to the configured host before they are needed.
+   * 
+   * The first connection is opened on the calling thread, so its TLS 
+   * session is cached and the remaining handshakes can resume it.  The rest
+   * are opened in parallel and held until every one of them is open, so 
+   * each is a separate connection.  They are then returned to the pool as 
+   * reusable, and the first requests after this call skip the TCP and TLS 
+   * handshakes.
+   * 
+   * Only the blocking client pool is warmed.
+   * 
+   * @param connections Number of connections to open.  This is capped at 
+   * the max per route.
+   * @param timeoutMillis Longest time to wait for the pool and for each 
+   * connection to open 
+   * @return the number of connections that were opened 
+   * @throws APIException if no host is configured, or if no connection 
+   * could be opened 
+   * @throws IllegalArgumentException if connections or timeoutMillis are 
+   * less than one 
+   */
+  @Override
+  public int warmUp( final int connections, final long timeoutMillis ) 
+    throws APIException, IllegalArgumentException
+  {
+    if ( connections < 1 )
+      throw new IllegalArgumentException( "connections must be greater than zero" );
+    else if ( timeoutMillis < 1 )
+      throw new IllegalArgumentException( "timeoutMillis must be greater than zero" );
+    
+    final HttpRoute route = getHostRoute();
+    final PoolingHttpClientConnectionManager mgr = getPool();
+    final int n = Math.min( connections, maxPerRoute );
+    
+    final List<HttpClientConnection> opened = new ArrayList<>();
+    Exception error = null;
+    
+    try {
+      //..Prime the tls session cache 
+      opened.add( openConnection( mgr, route, timeoutMillis ));
+    } catch( IOException | InterruptedException | ExecutionException e ) {
+      error = e;
+    }
+    
+    if ( error == null && n > 1 )
+    {
+      final ExecutorService pool = Executors.newFixedThreadPool( 
+        Math.min( n - 1, 16 ), r -> {
+          final Thread t = new Thread( r, "APIHttpClient-warmUp" );
+          t.setDaemon( true );
+          return t;
+        });
+      
+      try {
+        final List<Future<HttpClientConnection>> pending = new ArrayList<>();
+        for ( int i = 1; i < n; i++ )
+        {
+          pending.add( pool.submit(() -> openConnection( mgr, route, timeoutMillis )));
+        }
+        
+        for ( final Future<HttpClientConnection> f : pending )
+        {
+          try {
+            opened.add( f.get());
+          } catch( ExecutionException e ) {
+            error = ( e.getCause() instanceof Exception ) 
+              ? (Exception)e.getCause() : e;
+          }
+        }
+      } catch( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        error = e;
+      } finally {
+        pool.shutdownNow();
+      }
+    }
+    
+    //..Hand everything back to the pool 
+    for ( final HttpClientConnection conn : opened )
+    {
+      mgr.releaseConnection( conn, null, readTimeout, TimeUnit.MILLISECONDS );
+    }
+    
+    if ( opened.isEmpty())
+    {
+      throw new APIException( "Failed to open a connection to " + route 
+        + ( error == null ? "" : "  " + error.getMessage()), error );
+    }
+    else if ( error != null )
+    {
+      APILog.warn( LOG, "Only", String.valueOf( opened.size()), "of", 
+        String.valueOf( n ), "connections to", String.valueOf( route ), 
+        "were opened:", error.getMessage());
+    }
+    
+    APILog.debug( LOG, "Opened", String.valueOf( opened.size()), 
+      "connections to", String.valueOf( route ));
+    
+    return opened.size();
+  }
+  
+  
+  /**
+   * Retrieve the maximum number of pooled connections 
+   * @return max 
+   */
+  public int getMaxTotal()
+  {
+    return maxTotal;
+  }
+  
+  
+  /**
+   * Retrieve the maximum number of pooled connections per route 
+   * @return max 
+   */
+  public int getMaxPerRoute()
+  {
+    return maxPerRoute;
   }
 
 
@@ -476,6 +1149,39 @@ public class APIHttpClient implements IAPIHttpClient
   }
   
   
+  /**
+   * Retrieve the rate limiter used for requests made with this client 
+   * @return limiter 
+   */
+  @Override
+  public RequestRateLimiter getRateLimiter()
+  {
+    return rateLimiter;
+  }
+  
+  
+  /**
+   * Retrieve the throttle limiting the number of requests in flight
+   * @return throttle or null 
+   */
+  @Override
+  public AdaptiveThrottle getAdaptiveThrottle()
+  {
+    return adaptiveThrottle;
+  }
+  
+  
+  /**
+   * Retrieve the interceptor compressing request bodies 
+   * @return compressor 
+   */
+  @Override
+  public GzipRequestInterceptor getRequestCompressor()
+  {
+    return requestCompressor;
+  }
+  
+  
   /**
    * Retrieve the host 
    * @return host 
@@ -498,6 +1204,103 @@ public class APIHttpClient implements IAPIHttpClient
   }
   
   
+  /**
+   * Retrieve the shared non-blocking client instance.
+   * The client is built and started on first use, and uses the same headers
+   * and ssl settings as getClient().  Gzip response content is NOT 
+   * decompressed by this client.
+   * @return client 
+   * @throws APIException If there is a problem creating the client 
+   */
+  @Override
+  public CloseableHttpAsyncClient getAsyncClient() throws APIException
+  {
+    CloseableHttpAsyncClient c = asyncClient;
+    if ( c != null )
+      return c;
+    
+    synchronized( this )
+    {
+      if ( asyncClient == null )
+      {
+        c = createNewAsyncClient();
+        c.start();
+        asyncClient = c;
+      }
+      
+      return asyncClient;
+    }
+  }
+  
+  
+  /**
+   * Shut down the non-blocking client if it was started.
+   * In-flight requests are cancelled.
+   */
+  public synchronized void shutdownAsyncClient()
+  {
+    if ( asyncClient == null )
+      return;
+    
+    try {
+      asyncClient.close();
+    } catch( IOException e ) {
+      //..Nothing to do 
+    }
+    
+    asyncClient = null;
+  }
+  
+  
+  /**
+   * Create a new non-blocking HttpClient instance to use.
+   * The returned client has not been started.
+   * @return client 
+   * @throws APIException If there is a problem creating the client or strategy
+   */
+  @Override
+  public CloseableHttpAsyncClient createNewAsyncClient() throws APIException
+  {
+    final HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+      //..Set the request configuration
+      .setDefaultRequestConfig( createRequestConfig())
+
+      //..Set the user agent
+      .setUserAgent( getUserAgent())
+
+      //..Enable support for things like 301/302 redirects
+      .setRedirectStrategy( createRedirectAndRobotsStrategy())
+
+      //..Keep the connection alive for some time
+      .setKeepAliveStrategy( createConnectionKeepAliveStrategy())
+
+      .addInterceptorFirst( createUserAgentInterceptor())
+
+      .setMaxConnTotal( maxTotal )            
+      .setMaxConnPerRoute( maxPerRoute )
+
+      //..Add a few headers for what types of encoding to accept, etc.
+      .addInterceptorFirst( createAcceptInterceptor());  
+    //..End builder chain 
+    
+    //..Response interceptors run before the async client buffers the entity,
+    //..so gzip content is decoded by the caller once the response completes.
+    
+    if ( allowUntrustedSSL )
+      builder.setSSLStrategy( new SSLIOSessionStrategy( createSelfSignedSSLContext()));
+    
+    final CloseableHttpAsyncClient built = buildAsyncClient( builder );
+    
+    if ( built == null )
+    {
+      throw new APIException( 
+        "Failed to build the async http client.  buildAsyncClient() returned null" );
+    }
+    
+    return built;
+  }
+  
+  
   /**
    * Create a new HttpClient instance to use
    * @return
@@ -514,7 +1317,7 @@ public class APIHttpClient implements IAPIHttpClient
       .setDefaultRequestConfig( createRequestConfig())
 
       //..Set the client connection manager
-      .setConnectionManager( POOL )
+      .setConnectionManager( getPool())
 
       //..Set the user agent
       .setUserAgent( getUserAgent())
@@ -528,9 +1331,9 @@ public class APIHttpClient implements IAPIHttpClient
       //..Add the user agent intercept for setting the user agent
       //..Don't know if this is still necessary
       .addInterceptorFirst( createUserAgentInterceptor())
-            
-      .setMaxConnTotal( DEFAULT_MAX_TOTAL )            
-      .setMaxConnPerRoute( DEFAULT_MAX_PER_ROUTE )
+
+      //..Retries are handled by the API retry policy 
+      .disableAutomaticRetries()
 
       //..Add a few headers for what types of encoding to accept, etc.
       .addInterceptorFirst( createAcceptInterceptor());  
@@ -543,10 +1346,126 @@ public class APIHttpClient implements IAPIHttpClient
       builder.addInterceptorFirst( createGzipResponseInterceptor());
     }
     
+    //..Compress request bodies.  The async client fixes the entity before 
+    //..interceptors run, so API compresses those requests itself.
+    builder.addInterceptorFirst( requestCompressor );
+    
     return getBuiltClient( builder );
   }
   
   
+  /**
+   * Create a new connection manager for this client.
+   * The ssl socket factory is registered here since HttpClientBuilder
+   * ignores its own socket factory once a connection manager is supplied.
+   * @return pool 
+   * @throws APIException If there is a problem creating the ssl context 
+   */
+  protected PoolingHttpClientConnectionManager createConnectionManager()
+    throws APIException
+  {
+    final SSLConnectionSocketFactory sslFactory = ( allowUntrustedSSL )
+      ? new SSLConnectionSocketFactory( createSelfSignedSSLContext())
+      : SSLConnectionSocketFactory.getSocketFactory();
+    
+    final Registry<ConnectionSocketFactory> registry 
+      = RegistryBuilder.<ConnectionSocketFactory>create()
+        .register( "http", PlainConnectionSocketFactory.getSocketFactory())
+        .register( "https", sslFactory )
+        .build();
+    
+    if ( poolMonitor == null )
+      poolMonitor = new ConnectionPoolMonitor( 
+        ConnectionPoolMonitor.DEFAULT_SATURATION_THRESHOLD, 0, null );
+    
+    final PoolingHttpClientConnectionManager mgr 
+      = new MonitoredConnectionManager( registry, 
+        ( connectionTTL > 0 ) ? connectionTTL : -1, poolMonitor );
+    
+    poolMonitor.attach( mgr );
+    
+    mgr.setMaxTotal( maxTotal );
+    mgr.setDefaultMaxPerRoute( maxPerRoute );
+    mgr.setValidateAfterInactivity( validateAfterInactivity );
+    
+    return mgr;
+  }
+  
+  
+  /**
+   * Retrieve the pool, creating it if createNewClient() was called before
+   * the builder assigned one.
+   * @return pool
+   * @throws APIException If there is a problem creating the pool 
+   */
+  private synchronized PoolingHttpClientConnectionManager getPool()
+    throws APIException
+  {
+    if ( pool == null )
+      pool = createConnectionManager();
+    
+    return pool;
+  }
+  
+  
+  /**
+   * Retrieve the route to the configured host, as HttpClient would plan it
+   * @return route 
+   * @throws APIException if there is no host 
+   */
+  private HttpRoute getHostRoute() throws APIException
+  {
+    final String name = host.getHost();
+    if ( name == null || name.isEmpty())
+      throw new APIException( "No host is configured" );
+    
+    final String scheme = ( host.getScheme() == null ) 
+      ? "http" : host.getScheme().toLowerCase();
+    final boolean secure = scheme.equals( "https" );
+    
+    int port = host.getPort();
+    if ( port <= 0 )
+      port = ( secure ) ? 443 : 80;
+    
+    return new HttpRoute( new HttpHost( name, port, scheme ), null, secure );
+  }
+  
+  
+  /**
+   * Lease a connection from the pool and connect it.
+   * The connection must be released.
+   * @param mgr pool
+   * @param route route 
+   * @param timeoutMillis Longest wait for the pool and for the connection 
+   * @return open connection 
+   * @throws IOException if the connection cannot be opened 
+   * @throws InterruptedException if interrupted 
+   * @throws ExecutionException if the lease fails or times out
+   */
+  private static HttpClientConnection openConnection( 
+    final PoolingHttpClientConnectionManager mgr, final HttpRoute route,
+    final long timeoutMillis ) 
+    throws IOException, InterruptedException, ExecutionException
+  {
+    final HttpClientConnection conn = mgr.requestConnection( route, null )
+      .get( timeoutMillis, TimeUnit.MILLISECONDS );
+    
+    try {
+      if ( !conn.isOpen())
+      {
+        final HttpClientContext context = HttpClientContext.create();
+        mgr.connect( conn, route, (int)Math.min( timeoutMillis, Integer.MAX_VALUE ), context );
+        mgr.routeComplete( conn, route, context );
+      }
+      
+      return conn;
+    } catch( IOException | RuntimeException e ) {
+      mgr.releaseConnection( conn, null, 0, TimeUnit.MILLISECONDS );
+      throw e;
+    }
+  }
+  
+  
   /**
    * Retrieve a keep alive strategy.
    * This will use the value of readTimeout.
@@ -636,6 +1555,19 @@ public class APIHttpClient implements IAPIHttpClient
   }
  
 
+  /**
+   * Build the non-blocking http client.  
+   * 
+   * @param builder The client builder 
+   * @return The built client 
+   */
+  protected CloseableHttpAsyncClient buildAsyncClient( 
+    final HttpAsyncClientBuilder builder )
+  {
+    return builder.build();
+  }
+  
+
   /**
    * Retrieve the built http client.  
    * This will call buildClient() to allow overrides, and will throw an 
@@ -647,12 +1579,8 @@ public class APIHttpClient implements IAPIHttpClient
   private CloseableHttpClient getBuiltClient( final HttpClientBuilder builder )
     throws APIException 
   {
-    final CloseableHttpClient built;
-    
-    if ( allowUntrustedSSL )
-      built = buildClient( setClientToSelfSigned( builder ));
-    else
-      built = buildClient( builder );
+    //..The ssl socket factory is registered with the pool 
+    final CloseableHttpClient built = buildClient( builder );
     
     if ( built == null )
     {
@@ -707,22 +1635,18 @@ public class APIHttpClient implements IAPIHttpClient
   
   
   /**
-   * Create a HTTP client that uses a self-signed and always trusted
-   * SSL strategy.
-   *
-   * @param custom The client builder
-   * @return builder with unsafe SSL strategy
-   * @throws APIException If there is a problem creating the client or strategy
+   * Create a ssl context that trusts self-signed certificates 
+   * @return context 
+   * @throws APIException If there is a problem creating the context 
    */
-  private HttpClientBuilder setClientToSelfSigned( final HttpClientBuilder custom ) throws APIException
+  private SSLContext createSelfSignedSSLContext() throws APIException
   {
     final SSLContextBuilder builder = new SSLContextBuilder();
     try {
       builder.loadTrustMaterial( null, new TrustSelfSignedStrategy());
-      SSLConnectionSocketFactory sf = new SSLConnectionSocketFactory( builder.build());
-      return custom.setSSLSocketFactory( sf );
+      return builder.build();
     } catch( NoSuchAlgorithmException | KeyStoreException | KeyManagementException e ) {
       throw new APIException( "Failed to create self-signed trust strategy and/or SSL-enabled HTTP Client", e );
     }
-  }  
+  }
 }
\ No newline at end of file
@@ -14,7 +14,13 @@
 
 package com.buffalokiwi.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +28,7 @@ import javax.json.Json;
 import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
+import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParsingException;
 import org.apache.commons.logging.Log;
 import org.apache.http.Header;
@@ -55,14 +62,36 @@ public class APIResponse implements IAPIResponse
 
   /**
    * APIResponse content
+   * This is null if the content was released after parsing.
    */
-  private String content = "";
+  private volatile String content = "";
 
   /**
    * APIResponse charset
    */
   private String charset = "";
   
+  /**
+   * The parsed response content.
+   * This is populated the first time getJsonObject() is called.
+   */
+  private volatile JsonObject json = null;
+  
+  /**
+   * If the raw content should be kept after it has been parsed 
+   */
+  private volatile boolean retainContent = true;
+  
+  /**
+   * The response body when it was too large to keep in memory 
+   */
+  private volatile SpilledContent spilled = null;
+  
+  /**
+   * Number of body bytes read from the connection 
+   */
+  private volatile long bodyLength = 0;
+  
   
   
   /**
@@ -80,7 +109,21 @@ public class APIResponse implements IAPIResponse
     throws NoSuchMethodException, InstantiationException, InvocationTargetException, IllegalArgumentException, IllegalAccessException 
   {    
     T r = type.getConstructor( ProtocolVersion.class, StatusLine.class, List.class ).newInstance( that.getProtocolVersion(), that.getStatusLine(), that.headers());
-    r.setContent( that.getResponseContent(), that.getResponseCharsetName());
+    
+    if ( that instanceof APIResponse )
+    {
+      //..Carry over the parsed content so it isn't parsed twice 
+      final APIResponse a = (APIResponse)that;
+      final APIResponse b = r;
+      b.content = a.content;
+      b.charset = a.charset;
+      b.json = a.json;
+      b.retainContent = a.retainContent;
+      b.spilled = a.spilled;
+    }
+    else
+      r.setContent( that.getResponseContent(), that.getResponseCharsetName());
+    
     return r;    
   }
   
@@ -155,6 +198,125 @@ public class APIResponse implements IAPIResponse
   {
     this.content = content;
     this.charset = charset;
+    this.json = null;
+    this.spilled = null;
+  }
+  
+  
+  /**
+   * Set the content to a body that was written to a file 
+   * @param spilled file 
+   * @param charset character set name
+   */
+  void setSpilledContent( final SpilledContent spilled, final String charset )
+  {
+    this.content = null;
+    this.charset = charset;
+    this.json = null;
+    this.spilled = spilled;
+  }
+  
+  
+  /**
+   * Set the number of body bytes read from the connection 
+   * @param bytes bytes 
+   */
+  void setBodyLength( final long bytes )
+  {
+    this.bodyLength = bytes;
+  }
+  
+  
+  /**
+   * Retrieve the number of body bytes read from the connection 
+   * @return bytes 
+   */
+  long getBodyLength()
+  {
+    return bodyLength;
+  }
+  
+  
+  /**
+   * Detect if the body was too large to keep in memory and was written to 
+   * a temporary file.
+   * @return is spilled 
+   */
+  @Override
+  public boolean isSpilled()
+  {
+    return spilled != null;
+  }
+  
+  
+  /**
+   * Open a stream over the raw response body.
+   * The caller must close the stream.
+   * @return body 
+   * @throws IOException if the content cannot be read 
+   */
+  @Override
+  public InputStream getContentStream() throws IOException
+  {
+    final SpilledContent s = spilled;
+    if ( s != null )
+      return s.open();
+    
+    return new ByteArrayInputStream( getResponseContent().getBytes( getCharset()));
+  }
+  
+  
+  /**
+   * Create a streaming json parser over the response body.
+   * The caller must close the parser.
+   * @return parser 
+   * @throws IOException if the content cannot be read 
+   */
+  @Override
+  public JsonParser getJsonParser() throws IOException
+  {
+    final SpilledContent s = spilled;
+    if ( s != null )
+      return Json.createParser( new InputStreamReader( s.open(), getCharset()));
+    
+    return Json.createParser( new StringReader( getResponseContent()));
+  }
+  
+  
+  /**
+   * Delete the temporary file holding a spilled body.
+   * Does nothing if the body is in memory.
+   */
+  @Override
+  public void releaseContent()
+  {
+    final SpilledContent s = spilled;
+    if ( s != null )
+      s.release();
+  }
+  
+  
+  /**
+   * Retrieve the charset name, defaulting to UTF-8
+   * @return charset 
+   */
+  private String getCharset()
+  {
+    return ( charset == null || charset.isEmpty()) ? "UTF-8" : charset;
+  }
+  
+  
+  /**
+   * Toggle keeping the raw content string after the content has been parsed 
+   * by getJsonObject().  When this is off, the string is released once
+   * parsed, and getResponseContent() will serialize the parsed object 
+   * instead.  Defaults to on.
+   * @param on toggle 
+   */
+  @Override
+  public void setRetainContent( final boolean on )
+  {
+    retainContent = on;
   }
 
 
@@ -165,7 +327,30 @@ public class APIResponse implements IAPIResponse
   @Override
   public String getResponseContent()
   {
-    return content;
+    final String c = content;
+    if ( c != null )
+      return c;
+    
+    final SpilledContent s = spilled;
+    if ( s != null && json == null )
+    {
+      //..Read the whole file.  This is not kept in memory.
+      try ( final Reader in = new InputStreamReader( s.open(), getCharset())) {
+        final StringBuilder out = new StringBuilder((int)Math.min( Integer.MAX_VALUE - 8, s.getLength()));
+        final char[] buf = new char[8192];
+        int n;
+        while (( n = in.read( buf )) != -1 )
+        {
+          out.append( buf, 0, n );
+        }
+        return out.toString();
+      } catch( IOException e ) {
+        throw new UncheckedIOException( e );
+      }
+    }
+    
+    //..The content was released after parsing 
+    return json.toString();
   }
 
 
@@ -181,7 +366,12 @@ public class APIResponse implements IAPIResponse
 
 
   /**
-   * Retrieve the response as a parsed JsonObject
+   * Retrieve the response as a parsed JsonObject.
+   * The content is parsed once, and the same (immutable) object is returned
+   * on subsequent calls.
+   * Spilled bodies are parsed on every call and the result is not kept, since
+   * holding the whole tree would defeat spilling.  Read those with 
+   * getJsonParser() or getContentStream() instead.
    * @return response
    * @throws JsonException if a JSON object cannot
    *     be created due to i/o error (IOException would be
@@ -193,11 +383,26 @@ public class APIResponse implements IAPIResponse
   public JsonObject getJsonObject()
     throws JsonException, JsonParsingException
   {
-    try ( final JsonReader reader = Json.createReader( 
-      new StringReader( content ))) 
+    JsonObject out = json;
+    if ( out != null )
+      return out;
+    
+    //..Two threads may race here, but the results are equal and immutable.
+    //  openReader() copes with the content being released by the other one.
+    try ( final JsonReader reader = Json.createReader( openReader())) 
     {
-      return reader.readObject();
+      out = reader.readObject();
     }
+    
+    if ( spilled != null )
+      return out;
+    
+    json = out;
+    
+    if ( !retainContent )
+      content = null;
+    
+    return out;
   }
 
   
@@ -210,7 +415,45 @@ public class APIResponse implements IAPIResponse
   @Override
   public boolean isJson()
   {
-    return content.trim().startsWith( "{" );
+    if ( json != null )
+      return true;
+    else if ( spilled == null )
+      return getResponseContent().trim().startsWith( "{" );
+    
+    //..Only look at the start of a spilled body 
+    try ( final Reader in = openReader()) {
+      int c;
+      while (( c = in.read()) != -1 && Character.isWhitespace( c ))
+      {
+        //..skip 
+      }
+      return c == '{';
+    } catch( IOException e ) {
+      return false;
+    }
+  }
+  
+  
+  /**
+   * Open a reader over the content 
+   * @return reader 
+   * @throws JsonException if a spilled body cannot be read 
+   */
+  private Reader openReader() throws JsonException
+  {
+    final SpilledContent s = spilled;
+    if ( s == null )
+    {
+      //..json is published before the content is released
+      final String c = content;
+      return new StringReader(( c != null ) ? c : json.toString());
+    }
+    
+    try {
+      return new InputStreamReader( s.open(), getCharset());
+    } catch( IOException e ) {
+      throw new JsonException( "Failed to read the response content", e );
+    }
   }
   
 
@@ -0,0 +1,74 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shared daemon timer used to wake up delayed work without holding a
+ * thread.  Scheduled tasks must be short; anything slow should hand off to
+ * another executor.
+ * 
+ * @author John Quinn
+ */
+final class APIScheduler
+{
+  /**
+   * The timer 
+   */
+  private static final ScheduledExecutorService SCHEDULER
+    = Executors.newSingleThreadScheduledExecutor( r -> {
+      final Thread t = new Thread( r, "APIScheduler" );
+      t.setDaemon( true );
+      return t;
+    });
+  
+  
+  /**
+   * Run some task after a delay 
+   * @param task task 
+   * @param delay delay 
+   * @param unit delay unit 
+   * @return scheduled task 
+   */
+  static ScheduledFuture<?> schedule( final Runnable task, final long delay, 
+    final TimeUnit unit )
+  {
+    return SCHEDULER.schedule( task, delay, unit );
+  }
+  
+  
+  /**
+   * Run some task repeatedly until the returned future is cancelled
+   * @param task task 
+   * @param delay delay between the end of one run and the start of the next
+   * @param unit delay unit 
+   * @return scheduled task 
+   */
+  static ScheduledFuture<?> scheduleWithFixedDelay( final Runnable task, 
+    final long delay, final TimeUnit unit )
+  {
+    return SCHEDULER.scheduleWithFixedDelay( task, delay, delay, unit );
+  }
+  
+  
+  private APIScheduler()
+  {
+    //..No instances 
+  }
+}
@@ -0,0 +1,456 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Limits the number of requests in flight and adapts that limit to how the
+ * remote host is coping (AIMD).
+ *
+ * Every successful response raises the limit by 1/limit, so the limit grows
+ * by about one per round trip.  A 429 or 503 response cuts the limit in half;
+ * responses to requests sent before the last cut do not cut it again.  A
+ * Retry-After header pauses every new request until the given time.
+ *
+ * Since the number of requests sent per second is roughly the limit divided
+ * by the response time, shrinking the limit shrinks the request rate too.
+ *
+ * Every permit must be released exactly once.
+ *
+ * @author John Quinn
+ */
+public class AdaptiveThrottle
+{
+  /**
+   * A slot for a single request
+   */
+  public final class Permit
+  {
+    /**
+     * When the permit was issued
+     */
+    private final long start = System.nanoTime();
+
+    /**
+     * If this was released
+     */
+    private final AtomicBoolean released = new AtomicBoolean( false );
+
+
+    /**
+     * Release the permit after a response was received
+     * @param status HTTP status code
+     * @param retryAfterMillis Value of the Retry-After header in
+     * milliseconds, or -1 if there was none.
+     */
+    public void release( final int status, final long retryAfterMillis )
+    {
+      if ( released.compareAndSet( false, true ))
+        onRelease( this, status, retryAfterMillis );
+    }
+
+
+    /**
+     * Release the permit after a response was received
+     * @param response response
+     */
+    public void release( final HttpResponse response )
+    {
+      release( response.getStatusLine().getStatusCode(),
+        getRetryAfterMillis( response.getFirstHeader( "Retry-After" )));
+    }
+
+
+    /**
+     * Release the permit without adjusting the limit.
+     * Use this when no response was received.
+     */
+    public void release()
+    {
+      release( 0, -1 );
+    }
+  }
+
+
+  /**
+   * Default smallest limit
+   */
+  public static final int DEFAULT_MIN_LIMIT = 1;
+
+  /**
+   * Default factor applied to the limit when the host is overloaded
+   */
+  public static final double DEFAULT_BACKOFF_RATIO = 0.5D;
+
+  /**
+   * Longest pause honored from a Retry-After header.
+   * Protects against a bad header parking every request for hours.
+   */
+  public static final long MAX_RETRY_AFTER = 300000L;
+
+  /**
+   * Smallest limit
+   */
+  private final int minLimit;
+
+  /**
+   * Largest limit
+   */
+  private final int maxLimit;
+
+  /**
+   * Factor applied to the limit when the host is overloaded
+   */
+  private final double backoffRatio;
+
+  /**
+   * Current limit
+   */
+  private double limit;
+
+  /**
+   * Permits currently issued
+   */
+  private int inFlight = 0;
+
+  /**
+   * No permits are issued before this System.nanoTime() value
+   */
+  private long pausedUntil;
+
+  /**
+   * When the limit was last cut
+   */
+  private long lastBackoff;
+
+  /**
+   * If a wake up is scheduled for the end of the pause
+   */
+  private boolean wakeScheduled = false;
+
+  /**
+   * Callers waiting for a permit
+   */
+  private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+
+  /**
+   * Retrieve the Retry-After value in milliseconds.
+   * The header may contain seconds or an HTTP date.
+   * @param header Retry-After header or null
+   * @return milliseconds or -1 if the header is missing or invalid
+   */
+  public static long getRetryAfterMillis( final Header header )
+  {
+    if ( header == null || header.getValue() == null )
+      return -1;
+
+    final String value = header.getValue().trim();
+
+    try {
+      return Math.max( 0L, TimeUnit.SECONDS.toMillis( Long.parseLong( value )));
+    } catch( NumberFormatException e ) {
+      //..Try a date
+    }
+
+    final Date d = DateUtils.parseDate( value );
+    if ( d == null )
+      return -1;
+
+    return Math.max( 0L, d.getTime() - System.currentTimeMillis());
+  }
+
+
+  /**
+   * Retrieve the Retry-After value of some response in milliseconds.
+   * @param response response
+   * @return milliseconds or -1 if the header is missing or invalid
+   */
+  public static long getRetryAfterMillis( final IAPIResponse response )
+  {
+    for ( final Header h : response.headers())
+    {
+      if ( h.getName().equalsIgnoreCase( "Retry-After" ))
+        return getRetryAfterMillis( h );
+    }
+
+    return -1;
+  }
+
+
+  /**
+   * Create a new AdaptiveThrottle starting at maxLimit
+   * @param maxLimit Largest number of requests in flight
+   * @throws IllegalArgumentException if maxLimit is less than one
+   */
+  public AdaptiveThrottle( final int maxLimit ) throws IllegalArgumentException
+  {
+    this( DEFAULT_MIN_LIMIT, maxLimit, DEFAULT_BACKOFF_RATIO );
+  }
+
+
+  /**
+   * Create a new AdaptiveThrottle starting at maxLimit
+   * @param minLimit Smallest number of requests in flight
+   * @param maxLimit Largest number of requests in flight
+   * @param backoffRatio Factor applied to the limit when the host is
+   * overloaded.  Between 0 and 1.
+   * @throws IllegalArgumentException if minLimit is less than one, maxLimit
+   * is less than minLimit, or backoffRatio is not between 0 and 1
+   */
+  public AdaptiveThrottle( final int minLimit, final int maxLimit,
+    final double backoffRatio ) throws IllegalArgumentException
+  {
+    if ( minLimit < 1 )
+      throw new IllegalArgumentException( "minLimit must be greater than zero" );
+    else if ( maxLimit < minLimit )
+      throw new IllegalArgumentException( "maxLimit must be greater than or equal to minLimit" );
+    else if ( !( backoffRatio > 0 && backoffRatio < 1 ))
+      throw new IllegalArgumentException( "backoffRatio must be between 0 and 1" );
+
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.limit = maxLimit;
+
+    final long now = System.nanoTime();
+    this.pausedUntil = now;
+    this.lastBackoff = now;
+  }
+
+
+  /**
+   * Retrieve the current limit
+   * @return max requests in flight
+   */
+  public synchronized int getLimit()
+  {
+    return (int)limit;
+  }
+
+
+  /**
+   * Retrieve the number of permits currently issued
+   * @return requests in flight
+   */
+  public synchronized int getInFlight()
+  {
+    return inFlight;
+  }
+
+
+  /**
+   * Retrieve the number of callers waiting for a permit
+   * @return waiting callers
+   */
+  public synchronized int getQueueLength()
+  {
+    return waiters.size();
+  }
+
+
+  /**
+   * Retrieve the time left on a Retry-After pause
+   * @return milliseconds
+   */
+  public synchronized long getPauseMillis()
+  {
+    return Math.max( 0L, TimeUnit.NANOSECONDS.toMillis( pausedUntil - System.nanoTime()));
+  }
+
+
+  /**
+   * Take a permit if one is available right now
+   * @return permit or null
+   */
+  public Permit tryAcquire()
+  {
+    synchronized( this )
+    {
+      if ( !waiters.isEmpty() || !canIssue( System.nanoTime()))
+        return null;
+
+      inFlight++;
+    }
+
+    return new Permit();
+  }
+
+
+  /**
+   * Retrieve a future that completes with a permit once one is available.
+   * This never blocks.  Cancelling the future gives up the place in line.
+   * @return permit
+   */
+  public CompletableFuture<Permit> acquireAsync()
+  {
+    final Permit p = tryAcquire();
+    if ( p != null )
+      return CompletableFuture.completedFuture( p );
+
+    final CompletableFuture<Permit> out = new CompletableFuture<>();
+    synchronized( this )
+    {
+      waiters.add( out );
+    }
+
+    dispatch();
+    return out;
+  }
+
+
+  /**
+   * Block until a permit is available
+   * @return permit
+   * @throws APIException if interrupted while waiting
+   */
+  public Permit acquire() throws APIException
+  {
+    final CompletableFuture<Permit> f = acquireAsync();
+    try {
+      return f.get();
+    } catch( InterruptedException e ) {
+      if ( !f.cancel( false ))
+        f.join().release();
+
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting for the throttle", e );
+    } catch( ExecutionException e ) {
+      //..Waiters are only ever completed with a permit
+      throw new APIException( e.getMessage(), e );
+    }
+  }
+
+
+  /**
+   * Adjust the limit and hand the freed slot to the next waiter
+   * @param p The released permit
+   * @param status HTTP status or zero if there was no response
+   * @param retryAfterMillis Retry-After in milliseconds or -1
+   */
+  private void onRelease( final Permit p, final int status,
+    final long retryAfterMillis )
+  {
+    synchronized( this )
+    {
+      inFlight--;
+
+      final long now = System.nanoTime();
+
+      if ( status == 429 || status == HttpStatus.SC_SERVICE_UNAVAILABLE )
+      {
+        //..Only cut once per round trip
+        if ( p.start - lastBackoff >= 0 )
+        {
+          limit = Math.max( minLimit, limit * backoffRatio );
+          lastBackoff = now;
+        }
+
+        if ( retryAfterMillis > 0 )
+        {
+          final long until = now + TimeUnit.MILLISECONDS.toNanos(
+            Math.min( retryAfterMillis, MAX_RETRY_AFTER ));
+
+          if ( until - pausedUntil > 0 )
+            pausedUntil = until;
+        }
+      }
+      else if ( status >= 200 && status < 500 )
+      {
+        limit = Math.min( maxLimit, limit + ( 1D / limit ));
+      }
+    }
+
+    dispatch();
+  }
+
+
+  /**
+   * Issue permits to waiters while there is room.
+   * Futures are completed outside of the lock.
+   */
+  private void dispatch()
+  {
+    while ( true )
+    {
+      final List<CompletableFuture<Permit>> ready = new ArrayList<>();
+
+      synchronized( this )
+      {
+        final long now = System.nanoTime();
+        while ( !waiters.isEmpty() && canIssue( now ))
+        {
+          inFlight++;
+          ready.add( waiters.poll());
+        }
+
+        if ( !waiters.isEmpty() && pausedUntil - now > 0 && !wakeScheduled )
+        {
+          wakeScheduled = true;
+          APIScheduler.schedule(() -> {
+            synchronized( AdaptiveThrottle.this )
+            {
+              wakeScheduled = false;
+            }
+            dispatch();
+          }, pausedUntil - now, TimeUnit.NANOSECONDS );
+        }
+      }
+
+      if ( ready.isEmpty())
+        return;
+
+      boolean returned = false;
+      for ( final CompletableFuture<Permit> f : ready )
+      {
+        if ( !f.complete( new Permit()))
+        {
+          //..Cancelled while waiting
+          synchronized( this )
+          {
+            inFlight--;
+          }
+          returned = true;
+        }
+      }
+
+      if ( !returned )
+        return;
+    }
+  }
+
+
+  /**
+   * Test if a permit can be issued.  Call while holding the lock.
+   * @param now System.nanoTime()
+   * @return if there is room
+   */
+  private boolean canIssue( final long now )
+  {
+    return inFlight < (int)limit && now - pausedUntil >= 0;
+  }
+}
@@ -0,0 +1,524 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A circuit breaker for a single endpoint.
+ *
+ * While CLOSED, calls are counted in a rolling window.  Once the window holds
+ * at least the minimum number of calls and either the failure rate or the
+ * slow call rate reaches its threshold, the breaker OPENs and every call is
+ * rejected.  After the open duration the breaker goes HALF_OPEN and lets a
+ * few probe calls through.  If every probe succeeds the breaker closes,
+ * otherwise it opens again.
+ *
+ * @author John Quinn
+ */
+public class CircuitBreaker
+{
+  /**
+   * Breaker states
+   */
+  public static enum State { CLOSED, OPEN, HALF_OPEN };
+
+
+  /**
+   * Receives breaker state changes
+   */
+  public static interface IStateListener
+  {
+    /**
+     * Called after the breaker changed state
+     * @param breaker The breaker
+     * @param from Previous state
+     * @param to New state
+     */
+    public void onStateChange( final CircuitBreaker breaker, final State from,
+      final State to );
+  }
+
+
+  /**
+   * Use this to build instances of CircuitBreaker
+   */
+  public static class Builder
+  {
+    private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private long slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private long window = DEFAULT_WINDOW;
+    private long openDuration = DEFAULT_OPEN_DURATION;
+    private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+
+    /**
+     * Set the failure rate that opens the breaker
+     * @param rate Between 0 and 1
+     * @return builder
+     */
+    public Builder setFailureRateThreshold( final double rate )
+    {
+      if ( !( rate > 0 && rate <= 1 ))
+        throw new IllegalArgumentException( "rate must be greater than 0 and less than or equal to 1" );
+
+      failureRateThreshold = rate;
+      return this;
+    }
+
+
+    /**
+     * Set the slow call rate that opens the breaker
+     * @param rate Between 0 and 1
+     * @return builder
+     */
+    public Builder setSlowCallRateThreshold( final double rate )
+    {
+      if ( !( rate > 0 && rate <= 1 ))
+        throw new IllegalArgumentException( "rate must be greater than 0 and less than or equal to 1" );
+
+      slowCallRateThreshold = rate;
+      return this;
+    }
+
+
+    /**
+     * Calls taking at least this long are slow
+     * @param millis milliseconds
+     * @return builder
+     */
+    public Builder setSlowCallDuration( final long millis )
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+
+      slowCallDuration = millis;
+      return this;
+    }
+
+
+    /**
+     * Set the number of calls the window must hold before rates are checked
+     * @param calls calls
+     * @return builder
+     */
+    public Builder setMinimumCalls( final int calls )
+    {
+      if ( calls < 1 )
+        throw new IllegalArgumentException( "calls must be greater than zero" );
+
+      minimumCalls = calls;
+      return this;
+    }
+
+
+    /**
+     * Set the length of the rolling window
+     * @param millis milliseconds.  Rounded up to whole seconds.
+     * @return builder
+     */
+    public Builder setWindow( final long millis )
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+
+      window = millis;
+      return this;
+    }
+
+
+    /**
+     * Set how long the breaker stays open before probing
+     * @param millis milliseconds
+     * @return builder
+     */
+    public Builder setOpenDuration( final long millis )
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+
+      openDuration = millis;
+      return this;
+    }
+
+
+    /**
+     * Set the number of probe calls let through while half open
+     * @param calls calls
+     * @return builder
+     */
+    public Builder setHalfOpenCalls( final int calls )
+    {
+      if ( calls < 1 )
+        throw new IllegalArgumentException( "calls must be greater than zero" );
+
+      halfOpenCalls = calls;
+      return this;
+    }
+
+
+    /**
+     * Build a breaker
+     * @param name Breaker name.  ie: the endpoint
+     * @param listener State change listener or null
+     * @return breaker
+     */
+    public CircuitBreaker build( final String name, final IStateListener listener )
+    {
+      return new CircuitBreaker( name, listener, failureRateThreshold,
+        slowCallRateThreshold, slowCallDuration, minimumCalls, window,
+        openDuration, halfOpenCalls );
+    }
+  } //..End Builder
+
+
+  /**
+   * Default failure rate threshold
+   */
+  public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5D;
+
+  /**
+   * Default slow call rate threshold
+   */
+  public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8D;
+
+  /**
+   * Default slow call duration
+   */
+  public static final long DEFAULT_SLOW_CALL_DURATION = 10000L;
+
+  /**
+   * Default minimum calls in the window
+   */
+  public static final int DEFAULT_MINIMUM_CALLS = 20;
+
+  /**
+   * Default rolling window length
+   */
+  public static final long DEFAULT_WINDOW = 30000L;
+
+  /**
+   * Default open duration
+   */
+  public static final long DEFAULT_OPEN_DURATION = 30000L;
+
+  /**
+   * Default probes while half open
+   */
+  public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+  /**
+   * Length of a single window bucket
+   */
+  private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos( 1 );
+
+  private final String name;
+  private final IStateListener listener;
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final long slowCallNanos;
+  private final int minimumCalls;
+  private final long openNanos;
+  private final int halfOpenCalls;
+
+  /**
+   * Bucket index (nanoTime / BUCKET_NANOS) of each slot
+   */
+  private final long[] bucketIds;
+  private final int[] calls;
+  private final int[] failures;
+  private final int[] slow;
+
+  private State state = State.CLOSED;
+
+  /**
+   * Incremented on every state change.
+   * Outcomes of calls issued in an earlier generation are ignored.
+   */
+  private long generation = 0;
+
+  /**
+   * When the open state ends
+   */
+  private long openUntil = 0;
+
+  private int probesIssued = 0;
+  private int probeSuccesses = 0;
+
+
+  /**
+   * Create a new CircuitBreaker
+   * @param name name
+   * @param listener listener or null
+   * @param failureRateThreshold failure rate threshold
+   * @param slowCallRateThreshold slow call rate threshold
+   * @param slowCallDuration slow call duration in millis
+   * @param minimumCalls minimum calls in the window
+   * @param window window length in millis
+   * @param openDuration open duration in millis
+   * @param halfOpenCalls probes while half open
+   */
+  protected CircuitBreaker( final String name, final IStateListener listener,
+    final double failureRateThreshold, final double slowCallRateThreshold,
+    final long slowCallDuration, final int minimumCalls, final long window,
+    final long openDuration, final int halfOpenCalls )
+  {
+    this.name = name;
+    this.listener = listener;
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos( slowCallDuration );
+    this.minimumCalls = minimumCalls;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos( openDuration );
+    this.halfOpenCalls = halfOpenCalls;
+
+    final int buckets = (int)Math.max( 1L, ( window + 999L ) / 1000L );
+    bucketIds = new long[buckets];
+    calls = new int[buckets];
+    failures = new int[buckets];
+    slow = new int[buckets];
+    Arrays.fill( bucketIds, Long.MIN_VALUE );
+  }
+
+
+  /**
+   * Retrieve the breaker name
+   * @return name
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+
+  /**
+   * Retrieve the current state
+   * @return state
+   */
+  public synchronized State getState()
+  {
+    return state;
+  }
+
+
+  /**
+   * Ask to make a call.
+   * @return a ticket to pass to onSuccess() or onFailure(), or -1 if the
+   * call is rejected
+   */
+  public long tryAcquire()
+  {
+    final long ticket;
+    final State from;
+    final State to;
+
+    synchronized( this )
+    {
+      from = state;
+
+      if ( state == State.OPEN )
+      {
+        if ( System.nanoTime() - openUntil < 0 )
+          return -1;
+
+        transition( State.HALF_OPEN );
+      }
+
+      if ( state == State.HALF_OPEN )
+      {
+        if ( probesIssued >= halfOpenCalls )
+          return -1;
+
+        probesIssued++;
+      }
+
+      ticket = generation;
+      to = state;
+    }
+
+    notifyListener( from, to );
+    return ticket;
+  }
+
+
+  /**
+   * Record a call that succeeded
+   * @param ticket ticket from tryAcquire()
+   * @param nanos call duration
+   */
+  public void onSuccess( final long ticket, final long nanos )
+  {
+    record( ticket, false, nanos );
+  }
+
+
+  /**
+   * Record a call that failed
+   * @param ticket ticket from tryAcquire()
+   * @param nanos call duration
+   */
+  public void onFailure( final long ticket, final long nanos )
+  {
+    record( ticket, true, nanos );
+  }
+
+
+  /**
+   * Retrieve the failure rate in the current window
+   * @return rate between 0 and 1
+   */
+  public synchronized double getFailureRate()
+  {
+    final int[] t = totals( System.nanoTime() / BUCKET_NANOS );
+    return ( t[0] == 0 ) ? 0D : (double)t[1] / t[0];
+  }
+
+
+  /**
+   * Retrieve the slow call rate in the current window
+   * @return rate between 0 and 1
+   */
+  public synchronized double getSlowCallRate()
+  {
+    final int[] t = totals( System.nanoTime() / BUCKET_NANOS );
+    return ( t[0] == 0 ) ? 0D : (double)t[2] / t[0];
+  }
+
+
+  /**
+   * Record the outcome of a call
+   * @param ticket ticket
+   * @param failed if it failed
+   * @param nanos duration
+   */
+  private void record( final long ticket, final boolean failed, final long nanos )
+  {
+    final State from;
+    final State to;
+
+    synchronized( this )
+    {
+      from = state;
+
+      if ( ticket != generation )
+        return;
+
+      final boolean isSlow = nanos >= slowCallNanos;
+
+      if ( state == State.HALF_OPEN )
+      {
+        if ( failed || isSlow )
+          open();
+        else if ( ++probeSuccesses >= halfOpenCalls )
+          transition( State.CLOSED );
+      }
+      else if ( state == State.CLOSED )
+      {
+        final long id = System.nanoTime() / BUCKET_NANOS;
+        final int i = (int)Math.floorMod( id, (long)bucketIds.length );
+        if ( bucketIds[i] != id )
+        {
+          bucketIds[i] = id;
+          calls[i] = 0;
+          failures[i] = 0;
+          slow[i] = 0;
+        }
+
+        calls[i]++;
+        if ( failed )
+          failures[i]++;
+        if ( isSlow )
+          slow[i]++;
+
+        final int[] t = totals( id );
+        if ( t[0] >= minimumCalls
+          && ((double)t[1] / t[0] >= failureRateThreshold
+            || (double)t[2] / t[0] >= slowCallRateThreshold ))
+        {
+          open();
+        }
+      }
+
+      to = state;
+    }
+
+    notifyListener( from, to );
+  }
+
+
+  /**
+   * Sum the buckets in the window.  Call while holding the lock.
+   * @param id current bucket id
+   * @return calls, failures, slow calls
+   */
+  private int[] totals( final long id )
+  {
+    final int[] out = new int[3];
+    for ( int i = 0; i < bucketIds.length; i++ )
+    {
+      if ( bucketIds[i] != Long.MIN_VALUE && id - bucketIds[i] < bucketIds.length )
+      {
+        out[0] += calls[i];
+        out[1] += failures[i];
+        out[2] += slow[i];
+      }
+    }
+
+    return out;
+  }
+
+
+  /**
+   * Open the breaker.  Call while holding the lock.
+   */
+  private void open()
+  {
+    transition( State.OPEN );
+    openUntil = System.nanoTime() + openNanos;
+  }
+
+
+  /**
+   * Change state and reset the counters.  Call while holding the lock.
+   * @param to new state
+   */
+  private void transition( final State to )
+  {
+    state = to;
+    generation++;
+    probesIssued = 0;
+    probeSuccesses = 0;
+
+    if ( to == State.CLOSED )
+      Arrays.fill( bucketIds, Long.MIN_VALUE );
+  }
+
+
+  /**
+   * Tell the listener about a state change.
+   * Both states are read while holding the lock, and the listener is called 
+   * outside of it.
+   * @param from state before the change
+   * @param to state after the change 
+   */
+  private void notifyListener( final State from, final State to )
+  {
+    if ( listener != null && from != to )
+      listener.onStateChange( this, from, to );
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+/**
+ * Thrown when a request is rejected because the circuit breaker for its 
+ * endpoint is open.  The request was not sent.
+ * 
+ * @author John Quinn
+ */
+public class CircuitBreakerOpenException extends APIException
+{
+  private static final long serialVersionUID = 1L;
+  
+  /**
+   * The breaker name 
+   */
+  private final String endpoint;
+  
+  
+  /**
+   * Create a new CircuitBreakerOpenException 
+   * @param endpoint The breaker name 
+   */
+  public CircuitBreakerOpenException( final String endpoint )
+  {
+    super( "Circuit breaker is open for " + endpoint );
+    this.endpoint = endpoint;
+  }
+  
+  
+  /**
+   * Retrieve the name of the breaker that rejected the request 
+   * @return endpoint 
+   */
+  public String getEndpoint()
+  {
+    return endpoint;
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates and holds one circuit breaker per endpoint.
+ * Every breaker is built with the same settings, and state changes of every
+ * breaker are sent to the registered listeners.
+ * 
+ * @author John Quinn
+ */
+public class CircuitBreakerRegistry 
+{
+  /**
+   * Builds the breakers 
+   */
+  private final CircuitBreaker.Builder builder;
+  
+  /**
+   * Breakers by endpoint 
+   */
+  private final Map<String,CircuitBreaker> breakers = new ConcurrentHashMap<>();
+  
+  /**
+   * State change listeners 
+   */
+  private final List<CircuitBreaker.IStateListener> listeners = new CopyOnWriteArrayList<>();
+  
+  /**
+   * Forwards state changes to listeners 
+   */
+  private final CircuitBreaker.IStateListener dispatcher = ( b, from, to ) -> {
+    for ( final CircuitBreaker.IStateListener l : listeners )
+    {
+      l.onStateChange( b, from, to );
+    }
+  };
+  
+  
+  /**
+   * Create a registry using the default breaker settings 
+   */
+  public CircuitBreakerRegistry()
+  {
+    this( new CircuitBreaker.Builder());
+  }
+  
+  
+  /**
+   * Create a new registry 
+   * @param builder Used to build each breaker 
+   */
+  public CircuitBreakerRegistry( final CircuitBreaker.Builder builder )
+  {
+    if ( builder == null )
+      throw new IllegalArgumentException( "builder cannot be null" );
+    
+    this.builder = builder;
+  }
+  
+  
+  /**
+   * Add a state change listener 
+   * @param listener listener 
+   */
+  public void addListener( final CircuitBreaker.IStateListener listener )
+  {
+    if ( listener == null )
+      throw new IllegalArgumentException( "listener cannot be null" );
+    
+    listeners.add( listener );
+  }
+  
+  
+  /**
+   * Retrieve the breaker for some endpoint, creating it if necessary 
+   * @param endpoint endpoint name 
+   * @return breaker 
+   */
+  public CircuitBreaker get( final String endpoint )
+  {
+    return breakers.computeIfAbsent( endpoint, e -> builder.build( e, dispatcher ));
+  }
+  
+  
+  /**
+   * Retrieve every breaker created so far 
+   * @return breakers 
+   */
+  public List<CircuitBreaker> getAll()
+  {
+    return Collections.unmodifiableList( new ArrayList<>( breakers.values()));
+  }
+}
@@ -0,0 +1,483 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Telemetry for the connection pool of an APIHttpClient.
+ *
+ * Every lease is timed, so a pool that is running out of connections shows
+ * up as a growing lease wait well before requests fail with a connection
+ * request timeout.  Leases that wait longer than the saturation threshold
+ * are reported to the listener along with the pool stats for the route.
+ *
+ * When leak detection is enabled, the stack of the call that leased each
+ * connection is recorded, and connections held longer than the threshold
+ * are reported to the listener.  This is how an entity that was never
+ * consumed is tracked down.  Recording a stack for every lease is not free,
+ * so leak detection is off by default.
+ *
+ * @author John Quinn
+ */
+public class ConnectionPoolMonitor
+{
+  /**
+   * Receives pool warnings.
+   * Listeners are called from request threads and from a shared timer, and
+   * must return quickly.
+   */
+  public static interface IListener
+  {
+    /**
+     * Called when a lease waited longer than the saturation threshold
+     * @param route route
+     * @param waitMillis How long the lease waited
+     * @param stats Pool stats for the route
+     */
+    public void onSaturated( final HttpRoute route, final long waitMillis,
+      final PoolStats stats );
+
+    /**
+     * Called once for each connection held longer than the leak threshold
+     * @param route route
+     * @param heldMillis How long the connection has been leased
+     * @param leasedAt Stack of the call that leased the connection
+     */
+    public void onLeak( final HttpRoute route, final long heldMillis,
+      final Throwable leasedAt );
+  }
+
+
+  /**
+   * Pool state for a single route
+   */
+  public static class RouteSnapshot
+  {
+    private final HttpRoute route;
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+    private final long leases;
+    private final double p50;
+    private final double p99;
+    private final double maxWait;
+
+    private RouteSnapshot( final HttpRoute route, final PoolStats stats,
+      final LatencyHistogram wait )
+    {
+      this.route = route;
+      this.leased = stats.getLeased();
+      this.available = stats.getAvailable();
+      this.pending = stats.getPending();
+      this.max = stats.getMax();
+
+      if ( wait == null )
+      {
+        this.leases = 0;
+        this.p50 = 0;
+        this.p99 = 0;
+        this.maxWait = 0;
+      }
+      else
+      {
+        final double[] p = wait.getPercentilesMillis( 0.5D, 0.99D );
+        this.leases = wait.getCount();
+        this.p50 = p[0];
+        this.p99 = p[1];
+        this.maxWait = wait.getMaxMillis();
+      }
+    }
+
+    public HttpRoute getRoute()
+    {
+      return route;
+    }
+
+    /**
+     * Retrieve the number of connections currently leased
+     * @return connections
+     */
+    public int getLeased()
+    {
+      return leased;
+    }
+
+    /**
+     * Retrieve the number of idle pooled connections
+     * @return connections
+     */
+    public int getAvailable()
+    {
+      return available;
+    }
+
+    /**
+     * Retrieve the number of callers waiting for a connection
+     * @return callers
+     */
+    public int getPending()
+    {
+      return pending;
+    }
+
+    /**
+     * Retrieve the maximum number of connections for the route
+     * @return connections
+     */
+    public int getMax()
+    {
+      return max;
+    }
+
+    /**
+     * Retrieve the number of leases made so far
+     * @return leases
+     */
+    public long getLeaseCount()
+    {
+      return leases;
+    }
+
+    public double getLeaseWaitP50Millis()
+    {
+      return p50;
+    }
+
+    public double getLeaseWaitP99Millis()
+    {
+      return p99;
+    }
+
+    public double getLeaseWaitMaxMillis()
+    {
+      return maxWait;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format( "%s leased=%d available=%d pending=%d max=%d "
+        + "leases=%d wait p50=%.2fms p99=%.2fms max=%.2fms",
+        route, leased, available, pending, max, leases, p50, p99, maxWait );
+    }
+  }
+
+
+  /**
+   * A leased connection
+   */
+  private static class Lease
+  {
+    private final HttpRoute route;
+    private final long start = System.nanoTime();
+    private final Throwable leasedAt;
+    private volatile boolean reported = false;
+
+    private Lease( final HttpRoute route, final Throwable leasedAt )
+    {
+      this.route = route;
+      this.leasedAt = leasedAt;
+    }
+  }
+
+
+  /**
+   * Logs pool warnings
+   */
+  public static final IListener LOG_LISTENER = new IListener()
+  {
+    @Override
+    public void onSaturated( final HttpRoute route, final long waitMillis,
+      final PoolStats stats )
+    {
+      APILog.warn( LOG, "Connection pool saturated for", String.valueOf( route ),
+        "waited", String.valueOf( waitMillis ), "ms for a connection", 
+        String.valueOf( stats ));
+    }
+
+    @Override
+    public void onLeak( final HttpRoute route, final long heldMillis,
+      final Throwable leasedAt )
+    {
+      APILog.warn( LOG, leasedAt, "Connection to", String.valueOf( route ), 
+        "has been leased for", String.valueOf( heldMillis ), "ms.", 
+        "It may have been leaked; an entity that is never consumed or closed", 
+        "never returns its connection." );
+    }
+  };
+
+  /**
+   * Default saturation threshold in milliseconds
+   */
+  public static final long DEFAULT_SATURATION_THRESHOLD = 500L;
+
+  /**
+   * Log
+   */
+  private static final Log LOG = LogFactory.getLog( ConnectionPoolMonitor.class );
+
+  /**
+   * Lease waits longer than this are reported.  Zero disables.
+   */
+  private final long saturationThreshold;
+
+  /**
+   * Connections held longer than this are reported.  Zero disables.
+   */
+  private final long leakThreshold;
+
+  /**
+   * Listener
+   */
+  private final IListener listener;
+
+  /**
+   * Lease wait by route
+   */
+  private final Map<HttpRoute,LatencyHistogram> leaseWait = new ConcurrentHashMap<>();
+
+  /**
+   * Leased connections when leak detection is enabled
+   */
+  private final Map<HttpClientConnection,Lease> leases = new ConcurrentHashMap<>();
+
+  /**
+   * The monitored pool
+   */
+  private volatile PoolingHttpClientConnectionManager pool = null;
+
+  /**
+   * Leak sweep or null
+   */
+  private ScheduledFuture<?> sweep = null;
+
+
+  /**
+   * Create a new ConnectionPoolMonitor
+   * @param saturationThreshold Lease waits longer than this many
+   * milliseconds are reported.  Zero disables.
+   * @param leakThreshold Connections held longer than this many milliseconds
+   * are reported.  Zero disables leak detection.
+   * @param listener Receives warnings.  null logs them.
+   * @throws IllegalArgumentException if a threshold is less than zero
+   */
+  public ConnectionPoolMonitor( final long saturationThreshold,
+    final long leakThreshold, final IListener listener )
+    throws IllegalArgumentException
+  {
+    if ( saturationThreshold < 0 )
+      throw new IllegalArgumentException( "saturationThreshold must be greater than or equal to zero" );
+    else if ( leakThreshold < 0 )
+      throw new IllegalArgumentException( "leakThreshold must be greater than or equal to zero" );
+
+    this.saturationThreshold = saturationThreshold;
+    this.leakThreshold = leakThreshold;
+    this.listener = ( listener == null ) ? LOG_LISTENER : listener;
+  }
+
+
+  /**
+   * Retrieve the leak detection threshold
+   * @return milliseconds or zero if disabled
+   */
+  public long getLeakThreshold()
+  {
+    return leakThreshold;
+  }
+
+
+  /**
+   * Retrieve the saturation threshold
+   * @return milliseconds or zero if disabled
+   */
+  public long getSaturationThreshold()
+  {
+    return saturationThreshold;
+  }
+
+
+  /**
+   * Retrieve the pool state for every route used so far
+   * @return route to snapshot
+   */
+  public Map<String,RouteSnapshot> getSnapshot()
+  {
+    final Map<String,RouteSnapshot> out = new TreeMap<>();
+    final PoolingHttpClientConnectionManager p = pool;
+    if ( p == null )
+      return out;
+
+    for ( final HttpRoute route : p.getRoutes())
+    {
+      out.put( route.toString(), 
+        new RouteSnapshot( route, p.getStats( route ), leaseWait.get( route )));
+    }
+
+    return Collections.unmodifiableMap( out );
+  }
+
+
+  /**
+   * Retrieve the pool stats for every route
+   * @return stats
+   */
+  public PoolStats getTotalStats()
+  {
+    final PoolingHttpClientConnectionManager p = pool;
+    return ( p == null ) ? new PoolStats( 0, 0, 0, 0 ) : p.getTotalStats();
+  }
+
+
+  /**
+   * Retrieve the stacks of the calls holding connections longer than the
+   * leak threshold
+   * @return stacks or an empty list if leak detection is disabled
+   */
+  public List<Throwable> getSuspectedLeaks()
+  {
+    final List<Throwable> out = new ArrayList<>();
+    if ( leakThreshold == 0 )
+      return out;
+
+    final long now = System.nanoTime();
+    for ( final Lease l : leases.values())
+    {
+      if ( TimeUnit.NANOSECONDS.toMillis( now - l.start ) >= leakThreshold )
+        out.add( l.leasedAt );
+    }
+
+    return out;
+  }
+
+
+  /**
+   * Start monitoring some pool
+   * @param pool pool
+   */
+  synchronized void attach( final PoolingHttpClientConnectionManager pool )
+  {
+    this.pool = pool;
+
+    if ( leakThreshold > 0 && sweep == null )
+    {
+      sweep = APIScheduler.scheduleWithFixedDelay( this::sweep,
+        Math.max( 100L, leakThreshold / 2 ), TimeUnit.MILLISECONDS );
+    }
+  }
+
+
+  /**
+   * Stop monitoring
+   */
+  synchronized void shutdown()
+  {
+    if ( sweep != null )
+    {
+      sweep.cancel( false );
+      sweep = null;
+    }
+
+    leases.clear();
+  }
+
+
+  /**
+   * Record a lease
+   * @param route route
+   * @param conn leased connection or null if the lease timed out
+   * @param waitNanos How long the lease waited
+   */
+  void onLeased( final HttpRoute route, final HttpClientConnection conn,
+    final long waitNanos )
+  {
+    leaseWait.computeIfAbsent( route, r -> new LatencyHistogram()).record( waitNanos );
+
+    if ( leakThreshold > 0 && conn != null )
+      leases.put( conn, new Lease( route, new Throwable( "Connection leased here" )));
+
+    final long waitMillis = TimeUnit.NANOSECONDS.toMillis( waitNanos );
+    if ( saturationThreshold > 0 && waitMillis >= saturationThreshold )
+    {
+      final PoolingHttpClientConnectionManager p = pool;
+      notifySaturated( route, waitMillis, 
+        ( p == null ) ? new PoolStats( 0, 0, 0, 0 ) : p.getStats( route ));
+    }
+  }
+
+
+  /**
+   * Record a connection returning to the pool
+   * @param conn connection
+   */
+  void onReleased( final HttpClientConnection conn )
+  {
+    if ( leakThreshold > 0 )
+      leases.remove( conn );
+  }
+
+
+  /**
+   * Report connections held past the leak threshold
+   */
+  private void sweep()
+  {
+    final long now = System.nanoTime();
+    for ( final Lease l : leases.values())
+    {
+      final long held = TimeUnit.NANOSECONDS.toMillis( now - l.start );
+      if ( held < leakThreshold || l.reported )
+        continue;
+
+      l.reported = true;
+      try {
+        listener.onLeak( l.route, held, l.leasedAt );
+      } catch( RuntimeException e ) {
+        APILog.error( LOG, e, "Connection pool listener failed" );
+      }
+    }
+  }
+
+
+  /**
+   * Tell the listener a route is saturated
+   * @param route route
+   * @param waitMillis lease wait
+   * @param stats stats
+   */
+  private void notifySaturated( final HttpRoute route, final long waitMillis,
+    final PoolStats stats )
+  {
+    try {
+      listener.onSaturated( route, waitMillis, stats );
+    } catch( RuntimeException e ) {
+      APILog.error( LOG, e, "Connection pool listener failed" );
+    }
+  }
+}
@@ -0,0 +1,367 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and status code metrics for a single endpoint.
+ *
+ * An exchange starts when the request is handed to the client, after any
+ * throttling, and ends when the response body has been read or the request
+ * failed.  Every counter is lock-free.
+ *
+ * @author John Quinn
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean
+{
+  /**
+   * A single exchange
+   */
+  public final class Call
+  {
+    /**
+     * When the exchange started
+     */
+    private final long start = System.nanoTime();
+
+    /**
+     * If this was ended
+     */
+    private final AtomicBoolean ended = new AtomicBoolean( false );
+
+
+    /**
+     * End the exchange after a response was received
+     * @param status HTTP status code
+     * @param bytesReceived Response body bytes
+     */
+    public void end( final int status, final long bytesReceived )
+    {
+      if ( ended.compareAndSet( false, true ))
+        onEnd( start, status, bytesReceived );
+    }
+
+
+    /**
+     * End the exchange when no response was received
+     */
+    public void fail()
+    {
+      end( 0, 0 );
+    }
+  }
+
+
+  /**
+   * A point in time copy of some endpoint metrics
+   */
+  public static class Snapshot
+  {
+    private final String endpoint;
+    private final long requests;
+    private final long errors;
+    private final int inFlight;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final double p50;
+    private final double p99;
+    private final double p999;
+    private final double max;
+    private final double mean;
+    private final Map<Integer,Long> statusCounts;
+
+    private Snapshot( final EndpointMetrics m )
+    {
+      final double[] p = m.latency.getPercentilesMillis( 0.5D, 0.99D, 0.999D );
+
+      this.endpoint = m.endpoint;
+      this.requests = m.latency.getCount();
+      this.errors = m.errors.sum();
+      this.inFlight = m.inFlight.get();
+      this.bytesSent = m.bytesSent.sum();
+      this.bytesReceived = m.bytesReceived.sum();
+      this.p50 = p[0];
+      this.p99 = p[1];
+      this.p999 = p[2];
+      this.max = m.latency.getMaxMillis();
+      this.mean = m.latency.getMeanMillis();
+
+      final Map<Integer,Long> s = new TreeMap<>();
+      m.statusCounts.forEach(( k, v ) -> s.put( k, v.sum()));
+      this.statusCounts = Collections.unmodifiableMap( s );
+    }
+
+    public String getEndpoint()
+    {
+      return endpoint;
+    }
+
+    public long getRequestCount()
+    {
+      return requests;
+    }
+
+    public long getErrorCount()
+    {
+      return errors;
+    }
+
+    public int getInFlight()
+    {
+      return inFlight;
+    }
+
+    public long getBytesSent()
+    {
+      return bytesSent;
+    }
+
+    public long getBytesReceived()
+    {
+      return bytesReceived;
+    }
+
+    public double getP50Millis()
+    {
+      return p50;
+    }
+
+    public double getP99Millis()
+    {
+      return p99;
+    }
+
+    public double getP999Millis()
+    {
+      return p999;
+    }
+
+    public double getMaxMillis()
+    {
+      return max;
+    }
+
+    public double getMeanMillis()
+    {
+      return mean;
+    }
+
+    /**
+     * Retrieve the number of responses for each status code
+     * @return status code to count
+     */
+    public Map<Integer,Long> getStatusCounts()
+    {
+      return statusCounts;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format( "%s requests=%d errors=%d inFlight=%d sent=%d "
+        + "received=%d p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms status=%s",
+        endpoint, requests, errors, inFlight, bytesSent, bytesReceived,
+        p50, p99, p999, max, statusCounts );
+    }
+  }
+
+
+  /**
+   * Endpoint name
+   */
+  private final String endpoint;
+
+  /**
+   * Exchange latency
+   */
+  private final LatencyHistogram latency = new LatencyHistogram();
+
+  /**
+   * Exchanges without a response
+   */
+  private final LongAdder errors = new LongAdder();
+
+  /**
+   * Exchanges on the wire
+   */
+  private final AtomicInteger inFlight = new AtomicInteger( 0 );
+
+  /**
+   * Request body bytes
+   */
+  private final LongAdder bytesSent = new LongAdder();
+
+  /**
+   * Response body bytes
+   */
+  private final LongAdder bytesReceived = new LongAdder();
+
+  /**
+   * Responses by status code
+   */
+  private final Map<Integer,LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+
+  /**
+   * Create a new EndpointMetrics
+   * @param endpoint Endpoint name
+   */
+  public EndpointMetrics( final String endpoint )
+  {
+    if ( endpoint == null )
+      throw new IllegalArgumentException( "endpoint cannot be null" );
+
+    this.endpoint = endpoint;
+  }
+
+
+  /**
+   * Start an exchange.  The returned call must be ended exactly once.
+   * @param bytesSent Request body bytes or -1 if unknown
+   * @return call
+   */
+  public Call begin( final long bytesSent )
+  {
+    inFlight.incrementAndGet();
+    if ( bytesSent > 0 )
+      this.bytesSent.add( bytesSent );
+
+    return new Call();
+  }
+
+
+  /**
+   * Retrieve a point in time copy of these metrics
+   * @return snapshot
+   */
+  public Snapshot getSnapshot()
+  {
+    return new Snapshot( this );
+  }
+
+
+  @Override
+  public String getEndpoint()
+  {
+    return endpoint;
+  }
+
+
+  @Override
+  public long getRequestCount()
+  {
+    return latency.getCount();
+  }
+
+
+  @Override
+  public long getErrorCount()
+  {
+    return errors.sum();
+  }
+
+
+  @Override
+  public int getInFlight()
+  {
+    return inFlight.get();
+  }
+
+
+  @Override
+  public long getBytesSent()
+  {
+    return bytesSent.sum();
+  }
+
+
+  @Override
+  public long getBytesReceived()
+  {
+    return bytesReceived.sum();
+  }
+
+
+  @Override
+  public double getP50Millis()
+  {
+    return latency.getPercentileMillis( 0.5D );
+  }
+
+
+  @Override
+  public double getP99Millis()
+  {
+    return latency.getPercentileMillis( 0.99D );
+  }
+
+
+  @Override
+  public double getP999Millis()
+  {
+    return latency.getPercentileMillis( 0.999D );
+  }
+
+
+  @Override
+  public double getMaxMillis()
+  {
+    return latency.getMaxMillis();
+  }
+
+
+  @Override
+  public double getMeanMillis()
+  {
+    return latency.getMeanMillis();
+  }
+
+
+  @Override
+  public Map<String,Long> getStatusCounts()
+  {
+    final Map<String,Long> out = new TreeMap<>();
+    statusCounts.forEach(( k, v ) -> out.put( String.valueOf( k ), v.sum()));
+    return out;
+  }
+
+
+  /**
+   * Record the end of an exchange
+   * @param start When the exchange started
+   * @param status HTTP status or zero if there was no response
+   * @param received Response body bytes
+   */
+  private void onEnd( final long start, final int status, final long received )
+  {
+    inFlight.decrementAndGet();
+    latency.record( System.nanoTime() - start );
+
+    if ( status == 0 )
+      errors.increment();
+    else
+      statusCounts.computeIfAbsent( status, k -> new LongAdder()).increment();
+
+    if ( received > 0 )
+      bytesReceived.add( received );
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics for a single endpoint
+ *
+ * @author John Quinn
+ */
+public interface EndpointMetricsMXBean
+{
+  /**
+   * Retrieve the endpoint name
+   * @return endpoint
+   */
+  public String getEndpoint();
+
+  /**
+   * Retrieve the number of completed exchanges
+   * @return exchanges
+   */
+  public long getRequestCount();
+
+  /**
+   * Retrieve the number of exchanges that ended without a response
+   * @return exchanges
+   */
+  public long getErrorCount();
+
+  /**
+   * Retrieve the number of exchanges currently on the wire
+   * @return exchanges
+   */
+  public int getInFlight();
+
+  /**
+   * Retrieve the number of request body bytes, before compression.
+   * Bodies of unknown length are not counted.
+   * @return bytes
+   */
+  public long getBytesSent();
+
+  /**
+   * Retrieve the number of response body bytes received
+   * @return bytes
+   */
+  public long getBytesReceived();
+
+  /**
+   * Retrieve the median latency
+   * @return milliseconds
+   */
+  public double getP50Millis();
+
+  /**
+   * Retrieve the 99th percentile latency
+   * @return milliseconds
+   */
+  public double getP99Millis();
+
+  /**
+   * Retrieve the 99.9th percentile latency
+   * @return milliseconds
+   */
+  public double getP999Millis();
+
+  /**
+   * Retrieve the largest latency
+   * @return milliseconds
+   */
+  public double getMaxMillis();
+
+  /**
+   * Retrieve the mean latency
+   * @return milliseconds
+   */
+  public double getMeanMillis();
+
+  /**
+   * Retrieve the number of responses for each status code
+   * @return status code to count
+   */
+  public Map<String,Long> getStatusCounts();
+}
@@ -0,0 +1,275 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Compresses request bodies with gzip and sets Content-Encoding.
+ *
+ * Bodies are compressed when their length is at least the threshold for the
+ * request.  Thresholds can be set for all requests and for individual
+ * endpoints; when an endpoint rule matches, it replaces the default.
+ * Bodies of unknown length and bodies that already have a content encoding
+ * are sent as they are.
+ *
+ * Compression is disabled until a threshold is set.
+ *
+ * Thresholds for a single api instance are set by storing another
+ * GzipRequestInterceptor in the request context under CONTEXT_ATTRIBUTE.
+ * Its rules and default, when set, replace the ones in the client.
+ *
+ * @author John Quinn
+ */
+public class GzipRequestInterceptor implements HttpRequestInterceptor
+{
+  /**
+   * An endpoint threshold
+   */
+  private static class Rule
+  {
+    private final Predicate<URI> match;
+    private final long threshold;
+
+    private Rule( final Predicate<URI> match, final long threshold )
+    {
+      this.match = match;
+      this.threshold = threshold;
+    }
+  }
+
+
+  /**
+   * Request context attribute holding thresholds that replace the client
+   * thresholds for requests made with that context
+   */
+  public static final String CONTEXT_ATTRIBUTE = "com.buffalokiwi.api.requestCompression";
+
+  /**
+   * Threshold for requests without a rule.  Less than zero disables.
+   */
+  private volatile long defaultThreshold = -1;
+
+  /**
+   * If the default threshold was set
+   */
+  private volatile boolean defaultSet = false;
+
+  /**
+   * Endpoint rules by name
+   */
+  private final Map<String,Rule> rules = new ConcurrentHashMap<>();
+
+
+  /**
+   * Set the threshold for requests that do not match an endpoint rule
+   * @param bytes Smallest body to compress.  Less than zero disables
+   * compression for those requests.
+   */
+  public void setDefaultThreshold( final long bytes )
+  {
+    defaultThreshold = bytes;
+    defaultSet = true;
+  }
+
+
+  /**
+   * Add or replace an endpoint rule
+   * @param name Rule name
+   * @param match Selects the requests this applies to
+   * @param bytes Smallest body to compress.  Less than zero disables
+   * compression for matching requests.
+   */
+  public void setThreshold( final String name, final Predicate<URI> match,
+    final long bytes )
+  {
+    if ( name == null || name.isEmpty())
+      throw new IllegalArgumentException( "name cannot be empty" );
+    else if ( match == null )
+      throw new IllegalArgumentException( "match cannot be null" );
+
+    rules.put( name, new Rule( match, bytes ));
+  }
+
+
+  /**
+   * Remove an endpoint rule
+   * @param name Rule name
+   */
+  public void removeThreshold( final String name )
+  {
+    rules.remove( name );
+  }
+
+
+  /**
+   * Retrieve the threshold for some uri.
+   * If several rules match, the smallest threshold wins.
+   * @param uri uri
+   * @return bytes or a negative number if bodies are not compressed
+   */
+  public long getThreshold( final URI uri )
+  {
+    return getThreshold( uri, defaultThreshold );
+  }
+
+
+  /**
+   * Retrieve the threshold for some uri using any thresholds stored in some
+   * request context
+   * @param uri uri
+   * @param context context or null
+   * @return bytes or a negative number if bodies are not compressed
+   */
+  public long getThreshold( final URI uri, final HttpContext context )
+  {
+    final Object scoped = ( context == null ) ? null
+      : context.getAttribute( CONTEXT_ATTRIBUTE );
+
+    if ( !( scoped instanceof GzipRequestInterceptor ) || scoped == this )
+      return getThreshold( uri );
+
+    final GzipRequestInterceptor s = (GzipRequestInterceptor)scoped;
+    return s.getThreshold( uri,
+      ( s.defaultSet ) ? s.defaultThreshold : getThreshold( uri ));
+  }
+
+
+  /**
+   * Retrieve the threshold for some uri
+   * @param uri uri
+   * @param fallback Threshold when no rule matches
+   * @return bytes or a negative number if bodies are not compressed
+   */
+  private long getThreshold( final URI uri, final long fallback )
+  {
+    long out = Long.MAX_VALUE;
+    boolean matched = false;
+    for ( final Rule r : rules.values())
+    {
+      if ( r.match.test( uri ))
+      {
+        matched = true;
+        out = Math.min( out, r.threshold );
+      }
+    }
+
+    return ( matched ) ? out : fallback;
+  }
+
+
+  /**
+   * Compress the body of some request if it is large enough.
+   * This is for requests that are not sent through an interceptor chain
+   * (ie: the non-blocking client, which needs an entity that can be read as
+   * a stream).  The compressed body is buffered in memory.
+   * @param request request
+   * @throws IOException if the body cannot be read
+   */
+  public void compress( final HttpRequest request ) throws IOException
+  {
+    compress( request, null, true );
+  }
+
+
+  /**
+   * Compress the body of some request if it is large enough, using any
+   * thresholds stored in some request context.
+   * The compressed body is buffered in memory.
+   * @param request request
+   * @param context context or null
+   * @throws IOException if the body cannot be read
+   */
+  public void compress( final HttpRequest request, final HttpContext context )
+    throws IOException
+  {
+    compress( request, context, true );
+  }
+
+
+  @Override
+  public void process( final HttpRequest request, final HttpContext context )
+    throws HttpException, IOException
+  {
+    compress( request, context, false );
+  }
+
+
+  /**
+   * Compress the body of some request if it is large enough.
+   * @param request request
+   * @param context context or null
+   * @param buffer If the compressed body is buffered.  Otherwise it is
+   * compressed while it is sent.
+   * @throws IOException if the body cannot be read
+   */
+  private void compress( final HttpRequest request, final HttpContext context,
+    final boolean buffer ) throws IOException
+  {
+    if ( !( request instanceof HttpEntityEnclosingRequest ))
+      return;
+
+    final HttpEntityEnclosingRequest r = (HttpEntityEnclosingRequest)request;
+    final HttpEntity entity = r.getEntity();
+
+    if ( entity == null || entity.getContentEncoding() != null
+      || entity.getContentLength() < 0 )
+    {
+      return;
+    }
+
+    final URI uri = ( request instanceof HttpUriRequest )
+      ? ((HttpUriRequest)request).getURI()
+      : URI.create( request.getRequestLine().getUri());
+
+    final long threshold = getThreshold( uri, context );
+    if ( threshold < 0 || entity.getContentLength() < threshold )
+      return;
+
+    if ( !buffer )
+    {
+      r.setEntity( new GzipCompressingEntity( entity ));
+      return;
+    }
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(
+      (int)Math.min( Integer.MAX_VALUE - 8, entity.getContentLength() / 4 + 64 ));
+
+    try ( final GZIPOutputStream gz = new GZIPOutputStream( out ))
+    {
+      entity.writeTo( gz );
+    }
+
+    final ByteArrayEntity compressed = new ByteArrayEntity( out.toByteArray());
+    compressed.setContentType( entity.getContentType());
+    compressed.setContentEncoding( "gzip" );
+    r.setEntity( compressed );
+  }
+}
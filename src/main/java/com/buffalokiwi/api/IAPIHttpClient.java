@@ -16,6 +16,7 @@ package com.buffalokiwi.api;
 
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
 /**
  * Represents an API Http Client 
@@ -32,6 +33,21 @@ public interface IAPIHttpClient
   public CloseableHttpClient createNewClient() throws IllegalArgumentException, 
     APIException;
 
+  /**
+   * Create a new non-blocking HttpClient instance to use.
+   * The returned client has not been started.
+   * @return client
+   * @throws APIException If there is a problem creating the client or strategy
+   */
+  public CloseableHttpAsyncClient createNewAsyncClient() throws APIException;
+  
+  /**
+   * Retrieve a shared, started, non-blocking client instance to use 
+   * @return client
+   * @throws APIException If there is a problem creating the client
+   */
+  public CloseableHttpAsyncClient getAsyncClient() throws APIException;
+
   /**
    * Retrieve the accept header value
    * @return accept header value
@@ -56,6 +72,57 @@ public interface IAPIHttpClient
    */
   public long getCrawlDelay();
 
+  /**
+   * Retrieve the rate limiter used for requests made with this client.
+   * @return limiter or null for no limit
+   */
+  public default RequestRateLimiter getRateLimiter()
+  {
+    return null;
+  }
+
+  /**
+   * Retrieve the throttle limiting the number of requests in flight.
+   * @return throttle or null for no limit
+   */
+  public default AdaptiveThrottle getAdaptiveThrottle()
+  {
+    return null;
+  }
+
+  /**
+   * Retrieve the interceptor compressing request bodies.
+   * @return compressor or null if request bodies are never compressed
+   */
+  public default GzipRequestInterceptor getRequestCompressor()
+  {
+    return null;
+  }
+
+  /**
+   * Retrieve the telemetry for the blocking client connection pool.
+   * @return monitor or null if the pool is not monitored
+   */
+  public default ConnectionPoolMonitor getPoolMonitor()
+  {
+    return null;
+  }
+
+  /**
+   * Open pooled connections to the configured host before they are needed,
+   * so the first requests skip the TCP and TLS handshakes.
+   * Clients without a connection pool open nothing.
+   * @param connections Number of connections to open 
+   * @param timeoutMillis Longest time to wait for each connection 
+   * @return the number of connections opened 
+   * @throws APIException if no connection could be opened 
+   */
+  public default int warmUp( final int connections, final long timeoutMillis ) 
+    throws APIException
+  {
+    return 0;
+  }
+
   /**
    * Retrieve the host
    * @return host
@@ -80,4 +147,13 @@ public interface IAPIHttpClient
    */
   public boolean isGzipAllowed();
   
+  /**
+   * Shut down this client and release any pooled connections.
+   * The client cannot be used after this is called.
+   */
+  public default void shutdown()
+  {
+    //..Nothing to release 
+  }
+  
 }
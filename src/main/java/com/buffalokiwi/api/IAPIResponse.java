@@ -14,9 +14,15 @@
 
 package com.buffalokiwi.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.util.List;
+import javax.json.Json;
 import javax.json.JsonException;
 import javax.json.JsonObject;
+import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParsingException;
 import org.apache.http.Header;
 import org.apache.http.ProtocolVersion;
@@ -35,7 +41,10 @@ public interface IAPIResponse
   int getContentLength();
 
   /**
-   * Retrieve the response as a parsed JsonObject
+   * Retrieve the response as a parsed JsonObject.
+   * The content is only parsed once.
+   * Bodies that were spilled to disk are parsed on every call and are not 
+   * kept in memory; use getJsonParser() or getContentStream() for those.
    * @return response
    * @throws JsonException if a JSON object cannot
    *     be created due to i/o error (IOException would be
@@ -116,4 +125,62 @@ public interface IAPIResponse
    */
   void setContent(final String content, final String charset);
   
+  /**
+   * Toggle keeping the raw content string after the content has been parsed 
+   * by getJsonObject().
+   * The default implementation does nothing.
+   * @param on toggle
+   */
+  default void setRetainContent(final boolean on)
+  {
+    //..Content is always kept 
+  }
+  
+  /**
+   * Detect if the body was too large to keep in memory and was written to 
+   * a temporary file.  Use getContentStream() or getJsonParser() to read 
+   * spilled bodies.
+   * The default implementation keeps everything in memory.
+   * @return is spilled 
+   */
+  default boolean isSpilled()
+  {
+    return false;
+  }
+  
+  /**
+   * Open a stream over the raw (decoded) response body.
+   * The caller must close the stream.
+   * @return body 
+   * The default implementation reads getResponseContent().
+   * @throws IOException if the content cannot be read 
+   */
+  default InputStream getContentStream() throws IOException
+  {
+    final String charset = getResponseCharsetName();
+    return new ByteArrayInputStream( getResponseContent().getBytes(
+      ( charset == null || charset.isEmpty()) ? "UTF-8" : charset ));
+  }
+  
+  /**
+   * Create a streaming json parser over the response body.
+   * The caller must close the parser.
+   * @return parser 
+   * The default implementation reads getResponseContent().
+   * @throws IOException if the content cannot be read 
+   */
+  default JsonParser getJsonParser() throws IOException
+  {
+    return Json.createParser( new StringReader( getResponseContent()));
+  }
+  
+  /**
+   * Delete the temporary file holding a spilled body.  The content can no 
+   * longer be read afterwards.  Does nothing if the body is in memory.
+   */
+  default void releaseContent()
+  {
+    //..Nothing to release 
+  }
+  
 }
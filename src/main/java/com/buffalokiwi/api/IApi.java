@@ -14,9 +14,14 @@
 
 package com.buffalokiwi.api;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.http.NameValuePair;
 import org.apache.http.entity.ContentType;
 
@@ -45,6 +50,96 @@ public interface IApi
     throws APIException;
 
   
+  /**
+   * Perform a get-based request to some endpoint and stream the response 
+   * body to some handler.  The body is never buffered in memory.
+   * The default implementation buffers the body with get() and passes a 
+   * reader over the content to the handler.
+   * @param <T> Handler result type 
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @param handler Receives the decoded response body 
+   * @return The handler result 
+   * @throws APIException If something goes wrong
+   */
+  public default <T> T getStream(final String url, 
+    final Map<String, String> headers, final IResponseStreamHandler<T> handler) 
+    throws APIException
+  {
+    if ( handler == null )
+      throw new IllegalArgumentException( "handler cannot be null" );
+    
+    final IAPIResponse res = get( url, headers );
+    try ( final Reader content = new StringReader( res.getResponseContent())) {
+      return handler.processStream( res, content );
+    } catch( IOException e ) {
+      throw new APIException( "Failed to read the response from " + url, e );
+    }
+  }
+
+  
+  /**
+   * Perform a non-blocking get-based request to some endpoint.
+   * The default implementation runs get() on the common fork join pool.
+   * @param url The URL
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException if something goes wrong.
+   */
+  public default CompletableFuture<? extends IAPIResponse> getAsync(
+    final String url, final Map<String, String> headers)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return get( url, headers );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    });
+  }
+  
+  
+  /**
+   * Send arbitrary post data to some endpoint without blocking.
+   * The default implementation runs post() on the common fork join pool.
+   * @param url The URL
+   * @param payload Data to send
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException if something goes wrong.
+   */
+  public default CompletableFuture<? extends IAPIResponse> postAsync(
+    final String url, final String payload, final Map<String, String> headers)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return post( url, payload, headers );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    });
+  }
+  
+  
+  /**
+   * Perform a non-blocking put-based request to some endpoint.
+   * The default implementation runs put() on the common fork join pool.
+   * @param url The URL
+   * @param payload Data to send
+   * @param headers Extra headers to send
+   * @return The response.  Fails with APIException if something goes wrong.
+   */
+  public default CompletableFuture<? extends IAPIResponse> putAsync(
+    final String url, final String payload, final Map<String, String> headers)
+  {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return put( url, payload, headers );
+      } catch( APIException e ) {
+        throw new CompletionException( e );
+      }
+    });
+  }
+  
+
   /**
    * Perform a post-based request to some endpoint
    * @param url The URL
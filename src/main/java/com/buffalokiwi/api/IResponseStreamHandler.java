@@ -0,0 +1,46 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Consumes a response body directly from the connection.
+ *
+ * The reader is backed by the entity stream and a single charset decoder,
+ * so nothing is buffered in memory beyond what the handler keeps.  Pass the
+ * reader to Json.createParser() or Json.createReader() to parse large
+ * payloads in one pass.
+ *
+ * The reader is closed by the caller after processStream() returns.
+ *
+ * @author John Quinn
+ * @param <T> Whatever the handler builds from the stream
+ */
+public interface IResponseStreamHandler<T>
+{
+  /**
+   * Process the response body.
+   * @param response The response status and headers.  The content of this
+   * object is empty.
+   * @param content The decoded response body
+   * @return Whatever was built from the stream
+   * @throws IOException if there is a problem reading the stream
+   * @throws APIException if the content is invalid
+   */
+  public T processStream( final IAPIResponse response, final Reader content )
+    throws IOException, APIException;
+}
@@ -0,0 +1,46 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Decides if and when a failed request is sent again.
+ * 
+ * @author John Quinn
+ */
+public interface IRetryPolicy 
+{
+  /**
+   * Called once before the first attempt of each request
+   * @param request The request 
+   */
+  public void onRequest( final HttpUriRequest request );
+  
+  
+  /**
+   * Decide if a request should be sent again.
+   * 
+   * @param request The request 
+   * @param attempts The number of attempts made so far 
+   * @param response The status and headers of the last attempt, or null if 
+   * no response was received.  The content may be empty.
+   * @param error The exception thrown by the last attempt, or null if a 
+   * response was received 
+   * @return milliseconds to wait before the next attempt, or -1 to give up
+   */
+  public long getRetryDelay( final HttpUriRequest request, final int attempts,
+    final IAPIResponse response, final Exception error );
+}
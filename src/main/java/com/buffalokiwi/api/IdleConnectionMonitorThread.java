@@ -14,11 +14,17 @@
 
 package com.buffalokiwi.api;
 
+import java.lang.ref.WeakReference;
 import java.util.concurrent.TimeUnit;
 import org.apache.http.conn.HttpClientConnectionManager;
 
 /**
- * The idle connection monitor thread
+ * The idle connection monitor thread.
+ * 
+ * The connection manager is only weakly reachable from this thread, so a 
+ * client that is dropped without being shut down can still be collected.  
+ * The thread stops once the manager is gone.
+ * 
  * @author John Quinn
  */
 public class IdleConnectionMonitorThread extends Thread
@@ -26,7 +32,17 @@ public class IdleConnectionMonitorThread extends Thread
   /**
    * The connection manager
    */
-  private final HttpClientConnectionManager connMgr;
+  private final WeakReference<HttpClientConnectionManager> connMgr;
+
+  /**
+   * Time between sweeps in milliseconds
+   */
+  private final long interval;
+  
+  /**
+   * Connections idle longer than this many milliseconds are closed
+   */
+  private final long idleTimeout;
 
   /**
    * If this has been shutdown or not
@@ -35,21 +51,51 @@ public class IdleConnectionMonitorThread extends Thread
 
 
   /**
-   * Create a new instance
+   * Create a new instance.
+   * Sweeps every 5 seconds and closes connections idle for 30 seconds.
    * @param connMgr The connection manager to monitor
    */
   public IdleConnectionMonitorThread( final HttpClientConnectionManager connMgr )
   {
-    super();
-    this.connMgr = connMgr;
+    this( connMgr, 5000L, 30000L );
+  }
+  
+  
+  /**
+   * Create a new instance
+   * @param connMgr The connection manager to monitor
+   * @param interval Milliseconds between sweeps 
+   * @param idleTimeout Connections idle longer than this many milliseconds
+   * are closed 
+   * @throws IllegalArgumentException if interval or idleTimeout are less 
+   * than one 
+   */
+  public IdleConnectionMonitorThread( final HttpClientConnectionManager connMgr,
+    final long interval, final long idleTimeout ) throws IllegalArgumentException
+  {
+    super( "IdleConnectionMonitor" );
+    
+    if ( connMgr == null )
+      throw new IllegalArgumentException( "connMgr cannot be null" );
+    else if ( interval < 1 )
+      throw new IllegalArgumentException( "interval must be greater than zero" );
+    else if ( idleTimeout < 1 )
+      throw new IllegalArgumentException( "idleTimeout must be greater than zero" );
+    
+    this.connMgr = new WeakReference<>( connMgr );
+    this.interval = interval;
+    this.idleTimeout = idleTimeout;
+    
+    //..Never hold the jvm open 
+    setDaemon( true );
   }
 
 
   /**
    * Run.
-   * Monitors the connection manager and closes idle and expired connections every
-   * 5 seconds.
-   * The idle connection closer will wait at maximum for 30 seconds.
+   * Monitors the connection manager and closes idle and expired connections 
+   * every interval milliseconds, until shutdown or until the manager is
+   * collected.
    */
   @Override
   public void run()
@@ -59,12 +105,10 @@ public class IdleConnectionMonitorThread extends Thread
       {
         synchronized( this )
         {
-          wait( 5000L );
-          // Close expired connections
-          connMgr.closeExpiredConnections();
-          // Optionally, close connections
-          // that have been idle longer than 30 sec
-          connMgr.closeIdleConnections( 30, TimeUnit.SECONDS );
+          wait( interval );
+          
+          if ( shutdown || !sweep())
+            break;
         }
       }
     } catch (InterruptedException ex) {
@@ -73,6 +117,25 @@ public class IdleConnectionMonitorThread extends Thread
   }
 
 
+  /**
+   * Close expired and idle connections.  The manager is only strongly held
+   * while this runs.
+   * @return false if the manager was collected 
+   */
+  private boolean sweep()
+  {
+    final HttpClientConnectionManager mgr = connMgr.get();
+    if ( mgr == null )
+      return false;
+    
+    // Close expired connections
+    mgr.closeExpiredConnections();
+    // Close connections that have been idle longer than idleTimeout
+    mgr.closeIdleConnections( idleTimeout, TimeUnit.MILLISECONDS );
+    return true;
+  }
+  
+  
   /**
    * Trigger shutdown of this thread
    */
@@ -0,0 +1,197 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets.
+ *
+ * Values are recorded in microseconds.  Each power of two is split into 8
+ * buckets, so a reported percentile is within 12.5% of the recorded value.
+ * Recording is a couple of atomic increments and never allocates.
+ *
+ * @author John Quinn
+ */
+public class LatencyHistogram
+{
+  /**
+   * Sub-buckets per power of two, as a number of bits
+   */
+  private static final int SUB_BITS = 3;
+
+  /**
+   * Sub-buckets per power of two
+   */
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+
+  /**
+   * Bucket counts
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(( 64 - SUB_BITS + 1 ) * SUB_COUNT );
+
+  /**
+   * Total values recorded
+   */
+  private final LongAdder count = new LongAdder();
+
+  /**
+   * Sum of the recorded values in microseconds
+   */
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Largest value in microseconds
+   */
+  private final AtomicLong max = new AtomicLong( 0 );
+
+
+  /**
+   * Record a value
+   * @param nanos duration in nanoseconds
+   */
+  public void record( final long nanos )
+  {
+    final long micros = Math.max( 0L, TimeUnit.NANOSECONDS.toMicros( nanos ));
+
+    counts.incrementAndGet( indexOf( micros ));
+    count.increment();
+    sum.add( micros );
+
+    long m;
+    while (( m = max.get()) < micros && !max.compareAndSet( m, micros ))
+    {
+      //..retry
+    }
+  }
+
+
+  /**
+   * Retrieve the number of recorded values
+   * @return count
+   */
+  public long getCount()
+  {
+    return count.sum();
+  }
+
+
+  /**
+   * Retrieve the largest recorded value
+   * @return milliseconds
+   */
+  public double getMaxMillis()
+  {
+    return max.get() / 1000D;
+  }
+
+
+  /**
+   * Retrieve the mean of the recorded values
+   * @return milliseconds
+   */
+  public double getMeanMillis()
+  {
+    final long c = count.sum();
+    return ( c == 0 ) ? 0D : sum.sum() / 1000D / c;
+  }
+
+
+  /**
+   * Retrieve the value below which some fraction of the recorded values fall
+   * @param fraction 0 to 1 (ie: 0.99)
+   * @return milliseconds
+   */
+  public double getPercentileMillis( final double fraction )
+  {
+    return getPercentilesMillis( fraction )[0];
+  }
+
+
+  /**
+   * Retrieve several percentiles from one pass over the buckets
+   * @param fractions 0 to 1 (ie: 0.5, 0.99, 0.999)
+   * @return milliseconds for each fraction
+   */
+  public double[] getPercentilesMillis( final double... fractions )
+  {
+    final long[] c = new long[counts.length()];
+    long total = 0;
+    for ( int i = 0; i < c.length; i++ )
+    {
+      c[i] = counts.get( i );
+      total += c[i];
+    }
+
+    final double[] out = new double[fractions.length];
+    if ( total == 0 )
+      return out;
+
+    final long maxValue = max.get();
+
+    for ( int f = 0; f < fractions.length; f++ )
+    {
+      final long rank = Math.max( 1L, (long)Math.ceil( fractions[f] * total ));
+      long seen = 0;
+      for ( int i = 0; i < c.length; i++ )
+      {
+        seen += c[i];
+        if ( seen >= rank )
+        {
+          out[f] = Math.min( upperBound( i ), maxValue ) / 1000D;
+          break;
+        }
+      }
+    }
+
+    return out;
+  }
+
+
+  /**
+   * Retrieve the bucket for some value
+   * @param micros value
+   * @return index
+   */
+  private static int indexOf( final long micros )
+  {
+    if ( micros < SUB_COUNT )
+      return (int)micros;
+
+    final int exp = 63 - Long.numberOfLeadingZeros( micros );
+    final int sub = (int)(( micros >>> ( exp - SUB_BITS )) & ( SUB_COUNT - 1 ));
+    return ( exp - SUB_BITS + 1 ) * SUB_COUNT + sub;
+  }
+
+
+  /**
+   * Retrieve the largest value held by some bucket
+   * @param index bucket
+   * @return micros
+   */
+  private static long upperBound( final int index )
+  {
+    if ( index < SUB_COUNT )
+      return index;
+
+    final int exp = index / SUB_COUNT + SUB_BITS - 1;
+    final long sub = index % SUB_COUNT;
+    final long width = 1L << ( exp - SUB_BITS );
+    return (( SUB_COUNT + sub ) << ( exp - SUB_BITS )) + width - 1;
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * A pooling connection manager that reports leases and releases to a
+ * ConnectionPoolMonitor.
+ *
+ * @author John Quinn
+ */
+class MonitoredConnectionManager extends PoolingHttpClientConnectionManager
+{
+  /**
+   * Monitor
+   */
+  private final ConnectionPoolMonitor monitor;
+
+
+  /**
+   * Create a new MonitoredConnectionManager
+   * @param registry socket factories
+   * @param ttlMillis Connection time to live in milliseconds or -1 
+   * @param monitor monitor 
+   */
+  MonitoredConnectionManager( final Registry<ConnectionSocketFactory> registry,
+    final long ttlMillis, final ConnectionPoolMonitor monitor )
+  {
+    super( registry, null, null, null, ttlMillis, TimeUnit.MILLISECONDS );
+    this.monitor = monitor;
+  }
+
+
+  @Override
+  public ConnectionRequest requestConnection( final HttpRoute route,
+    final Object state )
+  {
+    final ConnectionRequest request = super.requestConnection( route, state );
+
+    return new ConnectionRequest() {
+      @Override
+      public HttpClientConnection get( final long timeout, final TimeUnit tunit )
+        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException
+      {
+        final long start = System.nanoTime();
+        final HttpClientConnection conn;
+        try {
+          conn = request.get( timeout, tunit );
+        } catch( ConnectionPoolTimeoutException e ) {
+          monitor.onLeased( route, null, System.nanoTime() - start );
+          throw e;
+        }
+        
+        monitor.onLeased( route, conn, System.nanoTime() - start );
+        return conn;
+      }
+
+      @Override
+      public boolean cancel()
+      {
+        return request.cancel();
+      }
+    };
+  }
+
+
+  @Override
+  public void releaseConnection( final HttpClientConnection managedConn,
+    final Object state, final long keepalive, final TimeUnit tunit )
+  {
+    monitor.onReleased( managedConn );
+    super.releaseConnection( managedConn, state, keepalive, tunit );
+  }
+
+
+  @Override
+  public void shutdown()
+  {
+    monitor.shutdown();
+    super.shutdown();
+  }
+}
@@ -15,81 +15,431 @@
 package com.buffalokiwi.api;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import org.apache.http.entity.ContentType;
 
 /**
- * A stupid class for posting a file via HttpClient 
+ * A stupid class for posting a file via HttpClient.
+ *
+ * The content can come from a file, or from any source able to open a
+ * channel (ie: a FileChannel or the read end of a pipe fed by a generator).
+ * Content is streamed to the connection in small chunks and is never
+ * loaded into memory as a whole.
+ *
  * @author John Quinn
  */
 public class PostFile 
 {
   /**
-   * File to upload
+   * Opens the content of a PostFile
+   */
+  public static interface ISource
+  {
+    /**
+     * Open a channel positioned at the start of the content.
+     * The channel is closed after the content has been sent.
+     * @return channel
+     * @throws IOException if the content cannot be opened
+     */
+    public ReadableByteChannel open() throws IOException;
+  }
+
+
+  /**
+   * Receives upload progress
+   */
+  public static interface IProgressListener
+  {
+    /**
+     * Called after each chunk of content has been written to the connection
+     * @param bytesSent Bytes sent so far
+     * @param totalBytes Content length or -1 if unknown
+     */
+    public void onProgress( final long bytesSent, final long totalBytes );
+  }
+
+
+  /**
+   * Builds PostFile instances
+   */
+  public static class Builder
+  {
+    private File file = null;
+    private ISource source = null;
+    private long length = -1;
+    private boolean repeatable = true;
+    private ContentType contentType = ContentType.DEFAULT_BINARY;
+    private String contentEncoding = "";
+    private String filename = "";
+    private IProgressListener listener = null;
+
+
+    /**
+     * Send the content of a file
+     * @param file file
+     * @return this
+     */
+    public Builder setFile( final File file )
+    {
+      if ( file == null )
+        throw new IllegalArgumentException( "file cannot be null" );
+
+      this.file = file;
+      this.source = null;
+      this.length = -1;
+      this.repeatable = true;
+      return this;
+    }
+
+
+    /**
+     * Send the content of some source
+     * @param source Opens the content
+     * @param length Content length or -1 if unknown.  Unknown lengths are
+     * sent with chunked encoding.
+     * @param repeatable If the source can be opened more than once.  Requests
+     * with sources that cannot be opened again are never retried.
+     * @return this
+     */
+    public Builder setSource( final ISource source, final long length,
+      final boolean repeatable )
+    {
+      if ( source == null )
+        throw new IllegalArgumentException( "source cannot be null" );
+      else if ( length < -1 )
+        throw new IllegalArgumentException( "length must be greater than or equal to -1" );
+
+      this.source = source;
+      this.file = null;
+      this.length = length;
+      this.repeatable = repeatable;
+      return this;
+    }
+
+
+    /**
+     * Set the content type.  Defaults to application/octet-stream.
+     * @param contentType type
+     * @return this
+     */
+    public Builder setContentType( final ContentType contentType )
+    {
+      this.contentType = contentType;
+      return this;
+    }
+
+
+    /**
+     * Set the content encoding (ie: "gzip").  Defaults to none.
+     * @param contentEncoding encoding
+     * @return this
+     */
+    public Builder setContentEncoding( final String contentEncoding )
+    {
+      this.contentEncoding = contentEncoding;
+      return this;
+    }
+
+
+    /**
+     * Set the filename sent with multipart uploads
+     * @param filename filename
+     * @return this
+     */
+    public Builder setFilename( final String filename )
+    {
+      this.filename = filename;
+      return this;
+    }
+
+
+    /**
+     * Set a listener for upload progress
+     * @param listener listener
+     * @return this
+     */
+    public Builder setProgressListener( final IProgressListener listener )
+    {
+      this.listener = listener;
+      return this;
+    }
+
+
+    /**
+     * Build the PostFile
+     * @return file
+     * @throws IllegalArgumentException if neither a file nor a source was set
+     */
+    public PostFile build()
+    {
+      if ( file != null )
+        return new PostFile( file, contentType, contentEncoding, filename, listener );
+      else if ( source == null )
+        throw new IllegalArgumentException( "A file or a source must be set" );
+
+      return new PostFile( source, length, repeatable, contentType,
+        contentEncoding, filename, listener );
+    }
+  }
+
+
+  /**
+   * Bytes handed to the connection at a time
+   */
+  private static final int CHUNK_SIZE = 65536;
+
+  /**
+   * File to upload or null
    */
   private final File file;
-  
+
+  /**
+   * Content source
+   */
+  private final ISource source;
+
+  /**
+   * Content length for non-file sources
+   */
+  private final long length;
+
+  /**
+   * If the source can be opened more than once
+   */
+  private final boolean repeatable;
+
   /**
    * Content type for the file 
    */
   private final ContentType contentType;
-  
+
   /**
    * Filename for the file 
    */
   private final String filename;
-  
+
   private final String contentEncoding;
-  
-  
+
+  /**
+   * Progress listener or null
+   */
+  private final IProgressListener listener;
+
+
   public PostFile( final File file, final ContentType contentType, 
     final String contentEncoding, final String filename )
+  {
+    this( file, contentType, contentEncoding, filename, null );
+  }
+
+
+  private PostFile( final File file, final ContentType contentType,
+    final String contentEncoding, final String filename,
+    final IProgressListener listener )
   {
     if ( file == null )
       throw new IllegalArgumentException( "file cannot be null" );
-    else if ( contentType == null )
+
+    checkArgs( contentType, contentEncoding, filename );
+
+    this.file = file;
+    this.source = () -> FileChannel.open( file.toPath(), StandardOpenOption.READ );
+    this.length = -1;
+    this.repeatable = true;
+    this.contentType = contentType;
+    this.contentEncoding = contentEncoding;
+    this.filename = filename;
+    this.listener = listener;
+  }
+
+
+  private PostFile( final ISource source, final long length,
+    final boolean repeatable, final ContentType contentType,
+    final String contentEncoding, final String filename,
+    final IProgressListener listener )
+  {
+    checkArgs( contentType, contentEncoding, filename );
+
+    this.file = null;
+    this.source = source;
+    this.length = length;
+    this.repeatable = repeatable;
+    this.contentType = contentType;
+    this.contentEncoding = contentEncoding;
+    this.filename = filename;
+    this.listener = listener;
+  }
+
+
+  private static void checkArgs( final ContentType contentType,
+    final String contentEncoding, final String filename )
+  {
+    if ( contentType == null )
       throw new IllegalArgumentException( "contentType cannot be null" );
     else if ( contentEncoding == null )
       throw new IllegalArgumentException( "contentEncoding cannot be null" );
     else if ( filename == null )
       throw new IllegalArgumentException( "filename cannot be null" );
-    
-    this.file = file;
-    this.contentType = contentType;
-    this.contentEncoding = contentEncoding;
-    this.filename = filename;
   }
-  
-  
+
+
+  /**
+   * Retrieve the file
+   * @return file or null if the content comes from some other source
+   */
   public File getFile()
   {
     return file;
   }
-  
+
   public ContentType getContentType()
   {
     return contentType;
   }
-  
-  
+
+
   public String getFilename()
   {
     return filename;
   }
-  
-  
+
+
   public boolean hasFilename()
   {
     return !filename.isEmpty();
   }
-  
-  
+
+
   public boolean hasContentEncoding()
   {
     return !contentEncoding.isEmpty();
   }
-  
+
   public String getContentEncoding()
   {
     return contentEncoding;
   }
+
+
+  /**
+   * Retrieve the content length
+   * @return bytes or -1 if unknown
+   */
+  public long getContentLength()
+  {
+    return ( file != null ) ? file.length() : length;
+  }
+
+
+  /**
+   * Detect if the content can be sent more than once
+   * @return is repeatable
+   */
+  public boolean isRepeatable()
+  {
+    return repeatable;
+  }
+
+
+  /**
+   * Check that the content can be sent
+   * @throws IllegalArgumentException if this is a file that does not exist
+   */
+  public void checkExists() throws IllegalArgumentException
+  {
+    if ( file != null && !file.exists())
+    {
+      throw new IllegalArgumentException(
+        file + " (" + filename + ") does not exist; cannot upload non-existent file." );
+    }
+  }
+
+
+  /**
+   * Open the content as a stream
+   * @return stream
+   * @throws IOException
+   */
+  public InputStream openStream() throws IOException
+  {
+    return Channels.newInputStream( source.open());
+  }
+
+
+  /**
+   * Write the content to some stream and report progress to the listener.
+   * File channels are transferred with FileChannel.transferTo(); other
+   * channels are copied through a single small buffer.
+   * @param out destination
+   * @throws IOException
+   */
+  public void writeTo( final OutputStream out ) throws IOException
+  {
+    final long total = getContentLength();
+    long sent = 0;
+
+    try ( final ReadableByteChannel in = source.open())
+    {
+      if ( in instanceof FileChannel )
+      {
+        final FileChannel fc = (FileChannel)in;
+        final WritableByteChannel dest = Channels.newChannel( out );
+
+        //..The channel may not start at the beginning of the file, and the
+        //  declared length may end before the end of it
+        final long start = fc.position();
+        final long available = Math.max( 0L, fc.size() - start );
+        final long size = ( total < 0 ) ? available : Math.min( total, available );
+
+        while ( sent < size )
+        {
+          final long n = fc.transferTo( start + sent, 
+            Math.min( CHUNK_SIZE, size - sent ), dest );
+          if ( n <= 0 )
+            break;
+
+          sent += n;
+          progress( sent, size );
+        }
+      }
+      else
+      {
+        final ByteBuffer buf = ByteBuffer.allocate( CHUNK_SIZE );
+        int n;
+        while (( n = in.read( buf )) != -1 )
+        {
+          if ( n == 0 )
+            continue;
+
+          out.write( buf.array(), 0, n );
+          buf.clear();
+
+          sent += n;
+          progress( sent, total );
+        }
+      }
+    }
+
+    out.flush();
+  }
+
+
+  /**
+   * Notify the listener
+   * @param sent bytes sent
+   * @param total total bytes
+   */
+  private void progress( final long sent, final long total )
+  {
+    if ( listener != null )
+      listener.onProgress( sent, total );
+  }
 }
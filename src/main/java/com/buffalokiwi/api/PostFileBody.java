@@ -0,0 +1,72 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+/**
+ * A multipart body part that streams the content of a PostFile.
+ * 
+ * @author John Quinn
+ */
+public class PostFileBody extends AbstractContentBody
+{
+  /**
+   * Content 
+   */
+  private final PostFile file;
+  
+  
+  /**
+   * Create a new PostFileBody 
+   * @param file content 
+   */
+  public PostFileBody( final PostFile file )
+  {
+    super( file.getContentType());
+    this.file = file;
+  }
+  
+  
+  @Override
+  public String getFilename()
+  {
+    return file.hasFilename() ? file.getFilename() : null;
+  }
+
+  
+  @Override
+  public void writeTo( final OutputStream out ) throws IOException
+  {
+    file.writeTo( out );
+  }
+
+  
+  @Override
+  public String getTransferEncoding()
+  {
+    return MIME.ENC_BINARY;
+  }
+
+  
+  @Override
+  public long getContentLength()
+  {
+    return file.getContentLength();
+  }
+}
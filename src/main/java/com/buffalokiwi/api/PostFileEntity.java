@@ -0,0 +1,99 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * A streaming entity that sends the content of a PostFile.
+ * The content is written straight from the source to the connection.
+ * 
+ * @author John Quinn
+ */
+public class PostFileEntity extends AbstractHttpEntity
+{
+  /**
+   * Content 
+   */
+  private final PostFile file;
+  
+  
+  /**
+   * Create a new PostFileEntity 
+   * @param file content 
+   */
+  public PostFileEntity( final PostFile file )
+  {
+    if ( file == null )
+      throw new IllegalArgumentException( "file cannot be null" );
+    
+    this.file = file;
+    setContentType( file.getContentType().toString());
+    
+    if ( file.hasContentEncoding())
+      setContentEncoding( file.getContentEncoding());
+    
+    setChunked( file.getContentLength() < 0 );
+  }
+  
+  
+  @Override
+  public boolean isRepeatable()
+  {
+    return file.isRepeatable();
+  }
+
+  
+  @Override
+  public long getContentLength()
+  {
+    return file.getContentLength();
+  }
+
+  
+  @Override
+  public InputStream getContent() throws IOException
+  {
+    return file.openStream();
+  }
+
+  
+  @Override
+  public void writeTo( final OutputStream out ) throws IOException
+  {
+    if ( out == null )
+      throw new IllegalArgumentException( "out cannot be null" );
+    
+    file.writeTo( out );
+  }
+
+  
+  @Override
+  public boolean isStreaming()
+  {
+    return !file.isRepeatable();
+  }
+  
+  
+  @Override
+  public String toString()
+  {
+    return "PostFileEntity[" + file.getFilename() + ", " 
+      + String.valueOf( file.getContentLength()) + " bytes]";
+  }
+}
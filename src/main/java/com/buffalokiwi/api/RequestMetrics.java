@@ -0,0 +1,179 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Per-endpoint request metrics.
+ *
+ * Endpoints are named by the api (ie: "GET /orders/{status}"), so path
+ * parameters such as skus and order ids do not create a new entry for each
+ * request.
+ *
+ * Metrics can be pulled with getSnapshot(), or published to the platform
+ * MBean server with registerMBeans().  Each endpoint is then registered as
+ * domain:type=Endpoint,name="GET /orders/{status}".
+ *
+ * This is safe to share between api instances.
+ *
+ * @author John Quinn
+ */
+public class RequestMetrics
+{
+  /**
+   * Log
+   */
+  private static final Log LOG = LogFactory.getLog( RequestMetrics.class );
+
+  /**
+   * Metrics by endpoint
+   */
+  private final Map<String,EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+  /**
+   * JMX domain or null if not registered
+   */
+  private volatile String domain = null;
+
+
+  /**
+   * Retrieve the metrics for some endpoint.
+   * They are created and registered with JMX on first use.
+   * @param endpoint Endpoint name
+   * @return metrics
+   */
+  public EndpointMetrics get( final String endpoint )
+  {
+    final EndpointMetrics m = endpoints.get( endpoint );
+    if ( m != null )
+      return m;
+
+    return endpoints.computeIfAbsent( endpoint, e -> {
+      final EndpointMetrics out = new EndpointMetrics( e );
+      final String d = domain;
+      if ( d != null )
+        register( d, out );
+
+      return out;
+    });
+  }
+
+
+  /**
+   * Retrieve a point in time copy of the metrics for every endpoint
+   * @return endpoint name to snapshot, sorted by name
+   */
+  public Map<String,EndpointMetrics.Snapshot> getSnapshot()
+  {
+    final Map<String,EndpointMetrics.Snapshot> out = new TreeMap<>();
+    endpoints.forEach(( k, v ) -> out.put( k, v.getSnapshot()));
+    return Collections.unmodifiableMap( out );
+  }
+
+
+  /**
+   * Register every endpoint, now and in the future, with the platform
+   * MBean server
+   * @param domain JMX domain (ie: "com.buffalokiwi.aerodrome")
+   * @throws IllegalArgumentException if domain is empty or metrics are
+   * already registered
+   */
+  public synchronized void registerMBeans( final String domain )
+    throws IllegalArgumentException
+  {
+    if ( domain == null || domain.trim().isEmpty())
+      throw new IllegalArgumentException( "domain cannot be empty" );
+    else if ( this.domain != null )
+      throw new IllegalArgumentException( "Metrics are already registered with " + this.domain );
+
+    this.domain = domain;
+
+    for ( final EndpointMetrics m : new ArrayList<>( endpoints.values()))
+    {
+      register( domain, m );
+    }
+  }
+
+
+  /**
+   * Remove every endpoint from the platform MBean server
+   */
+  public synchronized void unregisterMBeans()
+  {
+    final String d = domain;
+    if ( d == null )
+      return;
+
+    domain = null;
+
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final List<EndpointMetrics> all = new ArrayList<>( endpoints.values());
+    for ( final EndpointMetrics m : all )
+    {
+      try {
+        final ObjectName name = getObjectName( d, m );
+        if ( server.isRegistered( name ))
+          server.unregisterMBean( name );
+      } catch( JMException e ) {
+        APILog.warn( LOG, e, "Failed to unregister metrics for", m.getEndpoint());
+      }
+    }
+  }
+
+
+  /**
+   * Register some endpoint with the platform MBean server
+   * @param domain JMX domain
+   * @param m metrics
+   */
+  private static void register( final String domain, final EndpointMetrics m )
+  {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = getObjectName( domain, m );
+      if ( !server.isRegistered( name ))
+        server.registerMBean( m, name );
+    } catch( JMException e ) {
+      APILog.warn( LOG, e, "Failed to register metrics for", m.getEndpoint());
+    }
+  }
+
+
+  /**
+   * Build the JMX name for some endpoint
+   * @param domain JMX domain
+   * @param m metrics
+   * @return name
+   * @throws JMException if the name is invalid
+   */
+  private static ObjectName getObjectName( final String domain,
+    final EndpointMetrics m ) throws JMException
+  {
+    return new ObjectName( domain + ":type=Endpoint,name="
+      + ObjectName.quote( m.getEndpoint()));
+  }
+}
@@ -0,0 +1,390 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of outgoing requests.
+ *
+ * Every host gets its own token bucket using the default rate.  Endpoint
+ * groups can be added to limit a set of paths (ie: "/orders") on top of the
+ * host limit.  A request must get a token from its host bucket and from the
+ * bucket of the group it matches, if any.
+ *
+ * Groups match a path when one of their prefixes appears in the path
+ * followed by a "/", a "?" or the end of the path.  This allows the client
+ * host to carry a base path (ie: "https://merchant-api.jet.com/api").
+ *
+ * @author John Quinn
+ */
+public class RequestRateLimiter
+{
+  /**
+   * An endpoint group
+   */
+  private static class Group
+  {
+    private final String name;
+    private final String[] prefixes;
+    private final double permitsPerSecond;
+    private final int burst;
+
+    private Group( final String name, final double permitsPerSecond,
+      final int burst, final String[] prefixes )
+    {
+      this.name = name;
+      this.permitsPerSecond = permitsPerSecond;
+      this.burst = burst;
+      this.prefixes = prefixes;
+    }
+
+    /**
+     * Retrieve the length of the longest prefix matching path
+     * @param path path
+     * @return length or -1
+     */
+    private int match( final String path )
+    {
+      int out = -1;
+      for ( final String p : prefixes )
+      {
+        final int i = path.indexOf( p );
+        if ( i == -1 || p.length() <= out )
+          continue;
+
+        final int end = i + p.length();
+        if ( end == path.length() || path.charAt( end ) == '/'
+          || path.charAt( end ) == '?' )
+        {
+          out = p.length();
+        }
+      }
+
+      return out;
+    }
+  }
+
+
+  /**
+   * Marks a host without a limit
+   */
+  private static final TokenBucket UNLIMITED = new TokenBucket( 1, 1 );
+
+  /**
+   * Default per-host rate.  Zero or less is unlimited.
+   */
+  private final double hostRate;
+
+  /**
+   * Default per-host burst
+   */
+  private final int hostBurst;
+
+  /**
+   * Host buckets
+   */
+  private final Map<String,TokenBucket> hosts = new ConcurrentHashMap<>();
+
+  /**
+   * Endpoint groups
+   */
+  private final CopyOnWriteArrayList<Group> groups = new CopyOnWriteArrayList<>();
+
+  /**
+   * Group buckets.  host + " " + group name is the key.
+   */
+  private final Map<String,TokenBucket> groupBuckets = new ConcurrentHashMap<>();
+
+
+  /**
+   * Create a limiter that allows one request per host every interval
+   * milliseconds.
+   * @param intervalMillis Milliseconds between requests.  Zero disables the
+   * host limit.
+   * @param burst Maximum number of requests that may be sent back to back
+   * after the host has been idle
+   * @return limiter
+   * @throws IllegalArgumentException if intervalMillis is less than zero or
+   * burst is less than one
+   */
+  public static RequestRateLimiter everyMillis( final long intervalMillis,
+    final int burst ) throws IllegalArgumentException
+  {
+    if ( intervalMillis < 0 )
+      throw new IllegalArgumentException( "intervalMillis must be greater than or equal to zero" );
+
+    return new RequestRateLimiter(
+      ( intervalMillis == 0 ) ? 0D : 1000D / intervalMillis, burst );
+  }
+
+
+  /**
+   * Create a new RequestRateLimiter
+   * @param hostPermitsPerSecond Default rate for each host.  Zero or less
+   * disables the host limit.
+   * @param hostBurst Default burst for each host
+   * @throws IllegalArgumentException if hostBurst is less than one
+   */
+  public RequestRateLimiter( final double hostPermitsPerSecond,
+    final int hostBurst ) throws IllegalArgumentException
+  {
+    if ( hostBurst < 1 )
+      throw new IllegalArgumentException( "hostBurst must be greater than zero" );
+
+    this.hostRate = hostPermitsPerSecond;
+    this.hostBurst = hostBurst;
+  }
+
+
+  /**
+   * Set the rate for a single host.
+   * @param host Host name
+   * @param permitsPerSecond Rate.  Zero or less removes the limit for host.
+   * @param burst Burst size
+   * @throws IllegalArgumentException if burst is less than one
+   */
+  public void setHostLimit( final String host, final double permitsPerSecond,
+    final int burst ) throws IllegalArgumentException
+  {
+    if ( host == null )
+      throw new IllegalArgumentException( "host cannot be null" );
+
+    if ( permitsPerSecond > 0 )
+      hosts.put( host.toLowerCase(), new TokenBucket( permitsPerSecond, burst ));
+    else
+      hosts.put( host.toLowerCase(), UNLIMITED );
+  }
+
+
+  /**
+   * Add or replace an endpoint group.
+   * Each host gets its own bucket for the group.
+   * @param name Group name
+   * @param permitsPerSecond Rate for the group per host
+   * @param burst Burst size
+   * @param pathPrefixes Paths in this group (ie: "/orders")
+   * @throws IllegalArgumentException if name is empty, no prefixes are
+   * supplied, permitsPerSecond is not positive or burst is less than one
+   */
+  public void setGroupLimit( final String name, final double permitsPerSecond,
+    final int burst, final String... pathPrefixes )
+    throws IllegalArgumentException
+  {
+    if ( name == null || name.trim().isEmpty())
+      throw new IllegalArgumentException( "name cannot be empty" );
+    else if ( pathPrefixes == null || pathPrefixes.length == 0 )
+      throw new IllegalArgumentException( "pathPrefixes cannot be empty" );
+    else if ( !( permitsPerSecond > 0 ))
+      throw new IllegalArgumentException( "permitsPerSecond must be greater than zero" );
+    else if ( burst < 1 )
+      throw new IllegalArgumentException( "burst must be greater than zero" );
+
+    synchronized( groups )
+    {
+      removeGroup( name );
+      groups.add( new Group( name, permitsPerSecond, burst, pathPrefixes.clone()));
+    }
+  }
+
+
+  /**
+   * Remove an endpoint group
+   * @param name Group name
+   */
+  public void removeGroup( final String name )
+  {
+    synchronized( groups )
+    {
+      groups.removeIf( g -> g.name.equals( name ));
+      groupBuckets.keySet().removeIf( k -> k.endsWith( " " + name ));
+    }
+  }
+
+
+  /**
+   * Retrieve the name of the group matching some uri
+   * @param uri uri
+   * @return group name or null
+   */
+  public String getGroupName( final URI uri )
+  {
+    final Group g = findGroup( uri );
+    return ( g == null ) ? null : g.name;
+  }
+
+
+  /**
+   * Take a token for some request if one is available right now.
+   * @param uri Request uri
+   * @return if the request may be sent now
+   */
+  public boolean tryAcquire( final URI uri )
+  {
+    final TokenBucket group = getGroupBucket( uri );
+    if ( group != null && !group.tryAcquire())
+      return false;
+
+    final TokenBucket host = getHostBucket( uri );
+    if ( host != null && !host.tryAcquire())
+    {
+      if ( group != null )
+        group.refund();
+
+      return false;
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Reserve a token for some request.  This never blocks.
+   * @param uri Request uri
+   * @return nanoseconds to wait before sending the request
+   */
+  public long reserve( final URI uri )
+  {
+    long wait = 0;
+
+    final TokenBucket group = getGroupBucket( uri );
+    if ( group != null )
+      wait = group.reserve();
+
+    final TokenBucket host = getHostBucket( uri );
+    if ( host != null )
+      wait = Math.max( wait, host.reserve());
+
+    return wait;
+  }
+
+
+  /**
+   * Block until some request may be sent.
+   * @param uri Request uri
+   * @throws APIException if interrupted while waiting
+   */
+  public void acquire( final URI uri ) throws APIException
+  {
+    final long wait = reserve( uri );
+    if ( wait <= 0 )
+      return;
+
+    try {
+      TimeUnit.NANOSECONDS.sleep( wait );
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new APIException( "Interrupted while waiting for the rate limiter", e );
+    }
+  }
+
+
+  /**
+   * Retrieve a future that completes when some request may be sent.
+   * This never blocks.  The returned future is already complete if a token
+   * is available now.
+   * @param uri Request uri
+   * @return future
+   */
+  public CompletableFuture<Void> acquireAsync( final URI uri )
+  {
+    final long wait = reserve( uri );
+    if ( wait <= 0 )
+      return CompletableFuture.completedFuture( null );
+
+    final CompletableFuture<Void> out = new CompletableFuture<>();
+    APIScheduler.schedule(() -> out.complete( null ), wait, TimeUnit.NANOSECONDS );
+    return out;
+  }
+
+
+  /**
+   * Retrieve the bucket for the host of some uri
+   * @param uri uri
+   * @return bucket or null if unlimited
+   */
+  private TokenBucket getHostBucket( final URI uri )
+  {
+    final String host = hostOf( uri );
+    TokenBucket b = hosts.get( host );
+
+    if ( b == null )
+    {
+      if ( !( hostRate > 0 ))
+        return null;
+
+      b = hosts.computeIfAbsent( host, h -> new TokenBucket( hostRate, hostBurst ));
+    }
+
+    return ( b == UNLIMITED ) ? null : b;
+  }
+
+
+  /**
+   * Retrieve the group bucket for some uri
+   * @param uri uri
+   * @return bucket or null if the uri is not in a group
+   */
+  private TokenBucket getGroupBucket( final URI uri )
+  {
+    final Group g = findGroup( uri );
+    if ( g == null )
+      return null;
+
+    return groupBuckets.computeIfAbsent( hostOf( uri ) + " " + g.name,
+      k -> new TokenBucket( g.permitsPerSecond, g.burst ));
+  }
+
+
+  /**
+   * Find the group with the longest prefix matching the path of some uri
+   * @param uri uri
+   * @return group or null
+   */
+  private Group findGroup( final URI uri )
+  {
+    final String path = ( uri.getRawPath() == null ) ? "" : uri.getRawPath();
+
+    Group out = null;
+    int len = -1;
+    for ( final Group g : groups )
+    {
+      final int m = g.match( path );
+      if ( m > len )
+      {
+        len = m;
+        out = g;
+      }
+    }
+
+    return out;
+  }
+
+
+  /**
+   * Retrieve the host key for some uri
+   * @param uri uri
+   * @return host or an empty string
+   */
+  private static String hostOf( final URI uri )
+  {
+    return ( uri.getHost() == null ) ? "" : uri.getHost().toLowerCase();
+  }
+}
@@ -0,0 +1,376 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * A bounded in-memory cache of get responses that carry an ETag or a
+ * Last-Modified header.
+ *
+ * Cached responses are not served blindly.  Every request is sent with
+ * If-None-Match and/or If-Modified-Since, and when the server answers 304
+ * the cached response is returned instead.  The body is not transferred,
+ * and since the cached response keeps its parsed json, it is not parsed
+ * again either.
+ *
+ * Entries are keyed by uri, Authorization and Accept headers, and the least
+ * recently used entries are evicted once the estimated size of the cached
+ * content exceeds the limit.  Entries cached under a token can no longer be 
+ * used once the token changes; call removeAuthorization() with the old 
+ * Authorization header value to drop them instead of waiting for eviction.
+ *
+ * This is safe to share between api instances.
+ *
+ * @author John Quinn
+ */
+public class ResponseCache
+{
+  /**
+   * A cached response
+   */
+  private static class Entry
+  {
+    private final IAPIResponse response;
+    private final String etag;
+    private final String lastModified;
+    private final long size;
+
+    private Entry( final IAPIResponse response, final String etag,
+      final String lastModified, final long size )
+    {
+      this.response = response;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+  }
+
+
+  /**
+   * Default size limit in bytes
+   */
+  public static final long DEFAULT_MAX_SIZE = 16L * 1024L * 1024L;
+
+  /**
+   * Estimated bytes used by an entry on top of its content
+   */
+  private static final long ENTRY_OVERHEAD = 512L;
+
+  /**
+   * Size limit in bytes
+   */
+  private final long maxSize;
+
+  /**
+   * Entries in access order
+   */
+  private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>( 16, 0.75F, true );
+
+  /**
+   * Estimated size of all entries
+   */
+  private long size = 0;
+
+  /**
+   * Requests answered with 304
+   */
+  private long hits = 0;
+
+  /**
+   * Requests answered with a body
+   */
+  private long misses = 0;
+
+
+  /**
+   * Create a cache using the default size limit
+   */
+  public ResponseCache()
+  {
+    this( DEFAULT_MAX_SIZE );
+  }
+
+
+  /**
+   * Create a new ResponseCache
+   * @param maxSize Size limit in bytes.  Content is counted as two bytes per
+   * character.
+   * @throws IllegalArgumentException if maxSize is less than one
+   */
+  public ResponseCache( final long maxSize ) throws IllegalArgumentException
+  {
+    if ( maxSize < 1 )
+      throw new IllegalArgumentException( "maxSize must be greater than zero" );
+
+    this.maxSize = maxSize;
+  }
+
+
+  /**
+   * Add validators for a cached response to some request.
+   * Pass the result to onResponse(), so a 304 can be answered even if the 
+   * entry is evicted while the request is in flight.
+   * @param hr request
+   * @return The cached response the validators belong to, or null 
+   */
+  public IAPIResponse addConditionalHeaders( final HttpUriRequest hr )
+  {
+    final Entry e;
+    synchronized( this )
+    {
+      e = entries.get( getKey( hr ));
+    }
+
+    if ( e == null )
+      return null;
+
+    if ( e.etag != null )
+      hr.setHeader( "If-None-Match", e.etag );
+
+    if ( e.lastModified != null )
+      hr.setHeader( "If-Modified-Since", e.lastModified );
+    
+    return e.response;
+  }
+
+
+  /**
+   * Process the response to a request prepared by addConditionalHeaders().
+   * A 304 is replaced by a copy of the cached response.  A 200 with
+   * validators is cached.
+   * @param hr request
+   * @param res response
+   * @param cached The result of addConditionalHeaders() for hr 
+   * @return response to return to the caller
+   */
+  public IAPIResponse onResponse( final HttpUriRequest hr,
+    final IAPIResponse res, final IAPIResponse cached )
+  {
+    final String key = getKey( hr );
+    final int status = res.getStatusLine().getStatusCode();
+
+    if ( status == HttpStatus.SC_NOT_MODIFIED )
+    {
+      //..Validators not added by this cache 
+      if ( cached == null )
+        return res;
+      
+      synchronized( this )
+      {
+        hits++;
+      }
+
+      try {
+        //..Copies carry the parsed json
+        return APIResponse.copyFrom( cached, APIResponse.class );
+      } catch( ReflectiveOperationException | IllegalArgumentException ex ) {
+        return cached;
+      }
+    }
+
+    synchronized( this )
+    {
+      misses++;
+    }
+
+    if ( status != HttpStatus.SC_OK || res.isSpilled() || hasNoStore( res ))
+    {
+      remove( key );
+      return res;
+    }
+
+    final String etag = getHeader( res, "ETag" );
+    final String lastModified = getHeader( res, "Last-Modified" );
+
+    if ( etag == null && lastModified == null )
+    {
+      remove( key );
+      return res;
+    }
+
+    final long entrySize = ENTRY_OVERHEAD + 2L * res.getResponseContent().length();
+    if ( entrySize > maxSize )
+    {
+      remove( key );
+      return res;
+    }
+
+    synchronized( this )
+    {
+      final Entry old = entries.put( key, new Entry( res, etag, lastModified, entrySize ));
+      if ( old != null )
+        size -= old.size;
+
+      size += entrySize;
+
+      final Iterator<Entry> it = entries.values().iterator();
+      while ( size > maxSize && it.hasNext())
+      {
+        size -= it.next().size;
+        it.remove();
+      }
+    }
+
+    return res;
+  }
+
+
+  /**
+   * Remove every entry
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+    size = 0;
+  }
+
+
+  /**
+   * Remove every entry cached for some Authorization header value.
+   * Call this when a token is replaced.
+   * @param authorization Authorization header value 
+   * @return the number of entries removed 
+   */
+  public synchronized int removeAuthorization( final String authorization )
+  {
+    if ( authorization == null )
+      return 0;
+    
+    final String match = "\n" + authorization + "\n";
+    int removed = 0;
+    
+    final Iterator<Map.Entry<String,Entry>> it = entries.entrySet().iterator();
+    while ( it.hasNext())
+    {
+      final Map.Entry<String,Entry> e = it.next();
+      if ( e.getKey().contains( match ))
+      {
+        size -= e.getValue().size;
+        it.remove();
+        removed++;
+      }
+    }
+    
+    return removed;
+  }
+
+
+  /**
+   * Retrieve the number of cached responses
+   * @return entries
+   */
+  public synchronized int getEntryCount()
+  {
+    return entries.size();
+  }
+
+
+  /**
+   * Retrieve the estimated size of the cached content
+   * @return bytes
+   */
+  public synchronized long getSize()
+  {
+    return size;
+  }
+
+
+  /**
+   * Retrieve the number of requests answered from the cache
+   * @return 304 responses
+   */
+  public synchronized long getHitCount()
+  {
+    return hits;
+  }
+
+
+  /**
+   * Retrieve the number of requests answered with a body
+   * @return other responses
+   */
+  public synchronized long getMissCount()
+  {
+    return misses;
+  }
+
+
+  /**
+   * Remove an entry
+   * @param key key
+   */
+  private synchronized void remove( final String key )
+  {
+    final Entry e = entries.remove( key );
+    if ( e != null )
+      size -= e.size;
+  }
+
+
+  /**
+   * Test for Cache-Control: no-store
+   * @param res response
+   * @return if the response must not be stored
+   */
+  private static boolean hasNoStore( final IAPIResponse res )
+  {
+    final String cc = getHeader( res, "Cache-Control" );
+    return cc != null && cc.toLowerCase().contains( "no-store" );
+  }
+
+
+  /**
+   * Retrieve the first value of some response header
+   * @param res response
+   * @param name header name
+   * @return value or null
+   */
+  private static String getHeader( final IAPIResponse res, final String name )
+  {
+    for ( final Header h : res.headers())
+    {
+      if ( h.getName().equalsIgnoreCase( name ))
+        return h.getValue();
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Build the cache key for some request.
+   * The Authorization header is part of the key so responses are never
+   * shared between credentials.
+   * @param hr request
+   * @return key
+   */
+  private static String getKey( final HttpUriRequest hr )
+  {
+    final StringBuilder s = new StringBuilder( hr.getURI().toString());
+    for ( final String name : new String[] { "Authorization", "Accept" })
+    {
+      final Header h = hr.getFirstHeader( name );
+      s.append( '\n' ).append(( h == null ) ? "" : h.getValue());
+    }
+
+    return s.toString();
+  }
+}
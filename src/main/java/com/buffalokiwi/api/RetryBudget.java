@@ -0,0 +1,118 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries to a fraction of the requests sent.
+ * 
+ * Every request deposits ratio tokens and every retry withdraws one.  
+ * The balance starts at, and never exceeds, the reserve, so a burst of 
+ * failures can use at most reserve retries plus ratio retries per request.
+ * During an outage retries stop once the balance is spent, instead of 
+ * multiplying the load on the remote host.
+ * 
+ * @author John Quinn
+ */
+public class RetryBudget 
+{
+  /**
+   * Token fractions per token
+   */
+  private static final long SCALE = 1000L;
+  
+  /**
+   * Scaled tokens deposited per request 
+   */
+  private final long deposit;
+  
+  /**
+   * Scaled token cap 
+   */
+  private final long reserve;
+  
+  /**
+   * Scaled balance 
+   */
+  private final AtomicLong balance;
+  
+  
+  /**
+   * Create a new RetryBudget 
+   * @param ratio Retries allowed per request.  ie: 0.1 is one retry per ten
+   * requests.
+   * @param reserve Retries that may be spent before any requests are made, 
+   * and the largest balance that can be saved up.
+   * @throws IllegalArgumentException if ratio is less than zero or reserve is 
+   * less than zero
+   */
+  public RetryBudget( final double ratio, final int reserve ) 
+    throws IllegalArgumentException
+  {
+    if ( ratio < 0 )
+      throw new IllegalArgumentException( "ratio must be greater than or equal to zero" );
+    else if ( reserve < 0 )
+      throw new IllegalArgumentException( "reserve must be greater than or equal to zero" );
+    
+    this.deposit = Math.round( ratio * SCALE );
+    this.reserve = Math.max( reserve * SCALE, SCALE );
+    this.balance = new AtomicLong( reserve * SCALE );
+  }
+  
+  
+  /**
+   * Record a request 
+   */
+  public void deposit()
+  {
+    if ( deposit == 0 )
+      return;
+    
+    while ( true )
+    {
+      final long b = balance.get();
+      if ( b >= reserve || balance.compareAndSet( b, Math.min( reserve, b + deposit )))
+        return;
+    }
+  }
+  
+  
+  /**
+   * Take a retry from the budget 
+   * @return if the retry may be sent 
+   */
+  public boolean tryWithdraw()
+  {
+    while ( true )
+    {
+      final long b = balance.get();
+      if ( b < SCALE )
+        return false;
+      else if ( balance.compareAndSet( b, b - SCALE ))
+        return true;
+    }
+  }
+  
+  
+  /**
+   * Retrieve the number of retries available right now 
+   * @return retries
+   */
+  public int getBalance()
+  {
+    return (int)( balance.get() / SCALE );
+  }
+}
@@ -0,0 +1,367 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.net.ssl.SSLException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * The default retry policy.
+ * 
+ * Requests are retried after an I/O error or a 429, 502, 503 or 504 response.
+ * GET, HEAD, PUT, DELETE and OPTIONS are retried by default.  Other methods 
+ * (ie: POST) are only retried if they carry an idempotency key header.
+ * Requests with a body that can't be sent twice are never retried.
+ * 
+ * The delay grows exponentially from the base delay up to the max delay, 
+ * and a random half of it is jittered away so clients don't retry in step.
+ * A Retry-After header is honored when it is longer than the backoff; if it 
+ * is longer than the max delay the request is not retried.
+ * 
+ * Retries are drawn from a RetryBudget shared by every request using this
+ * policy.
+ * 
+ * @author John Quinn
+ */
+public class RetryPolicy implements IRetryPolicy
+{
+  /**
+   * Use this to build instances of RetryPolicy 
+   */
+  public static class Builder
+  {
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseDelay = DEFAULT_BASE_DELAY;
+    private long maxDelay = DEFAULT_MAX_DELAY;
+    private String idempotencyHeader = DEFAULT_IDEMPOTENCY_HEADER;
+    private Set<String> methods = DEFAULT_METHODS;
+    private Set<Integer> statusCodes = DEFAULT_STATUS_CODES;
+    private RetryBudget budget = null;
+    
+    
+    /**
+     * Set the maximum number of retries for a single request 
+     * @param max retries 
+     * @return builder
+     * @throws IllegalArgumentException if max is less than zero
+     */
+    public Builder setMaxRetries( final int max ) throws IllegalArgumentException
+    {
+      if ( max < 0 )
+        throw new IllegalArgumentException( "max must be greater than or equal to zero" );
+      
+      maxRetries = max;
+      return this;
+    }
+    
+    
+    /**
+     * Set the delay before the first retry.  Each retry doubles it.
+     * @param millis milliseconds 
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than one
+     */
+    public Builder setBaseDelay( final long millis ) throws IllegalArgumentException
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+      
+      baseDelay = millis;
+      return this;
+    }
+    
+    
+    /**
+     * Set the longest delay between retries 
+     * @param millis milliseconds 
+     * @return builder
+     * @throws IllegalArgumentException if millis is less than one
+     */
+    public Builder setMaxDelay( final long millis ) throws IllegalArgumentException
+    {
+      if ( millis < 1 )
+        throw new IllegalArgumentException( "millis must be greater than zero" );
+      
+      maxDelay = millis;
+      return this;
+    }
+    
+    
+    /**
+     * Set the name of the header that marks a non-idempotent request as 
+     * safe to retry.
+     * @param name header name 
+     * @return builder
+     */
+    public Builder setIdempotencyHeader( final String name )
+    {
+      if ( name == null || name.trim().isEmpty())
+        throw new IllegalArgumentException( "name cannot be empty" );
+      
+      idempotencyHeader = name;
+      return this;
+    }
+    
+    
+    /**
+     * Set the HTTP methods that are retried without an idempotency key 
+     * @param methods methods (ie: "GET", "PUT")
+     * @return builder
+     */
+    public Builder setRetryMethods( final String... methods )
+    {
+      final Set<String> m = new HashSet<>();
+      for ( final String s : methods )
+      {
+        m.add( s.toUpperCase());
+      }
+      
+      this.methods = Collections.unmodifiableSet( m );
+      return this;
+    }
+    
+    
+    /**
+     * Set the response status codes that are retried 
+     * @param codes status codes 
+     * @return builder
+     */
+    public Builder setRetryStatusCodes( final Integer... codes )
+    {
+      statusCodes = Collections.unmodifiableSet( new HashSet<>( Arrays.asList( codes )));
+      return this;
+    }
+    
+    
+    /**
+     * Set the retry budget.  
+     * Defaults to one retry per five requests with a reserve of ten.
+     * @param budget budget 
+     * @return builder
+     */
+    public Builder setBudget( final RetryBudget budget )
+    {
+      if ( budget == null )
+        throw new IllegalArgumentException( "budget cannot be null" );
+      
+      this.budget = budget;
+      return this;
+    }
+    
+    
+    /**
+     * Build the policy 
+     * @return policy 
+     * @throws IllegalArgumentException if the max delay is less than the 
+     * base delay
+     */
+    public RetryPolicy build() throws IllegalArgumentException
+    {
+      if ( maxDelay < baseDelay )
+        throw new IllegalArgumentException( "maxDelay must be greater than or equal to baseDelay" );
+      
+      return new RetryPolicy( maxRetries, baseDelay, maxDelay, 
+        idempotencyHeader, methods, statusCodes, 
+        ( budget == null ) ? new RetryBudget( 0.2D, 10 ) : budget );
+    }
+  } //..End Builder
+  
+  
+  /**
+   * Default max retries per request 
+   */
+  public static final int DEFAULT_MAX_RETRIES = 3;
+  
+  /**
+   * Default delay before the first retry 
+   */
+  public static final long DEFAULT_BASE_DELAY = 250L;
+  
+  /**
+   * Default longest delay between retries 
+   */
+  public static final long DEFAULT_MAX_DELAY = 10000L;
+  
+  /**
+   * Default idempotency key header 
+   */
+  public static final String DEFAULT_IDEMPOTENCY_HEADER = "Idempotency-Key";
+  
+  /**
+   * Methods retried by default 
+   */
+  public static final Set<String> DEFAULT_METHODS = Collections.unmodifiableSet( 
+    new HashSet<>( Arrays.asList( "GET", "HEAD", "PUT", "DELETE", "OPTIONS" )));
+  
+  /**
+   * Status codes retried by default 
+   */
+  public static final Set<Integer> DEFAULT_STATUS_CODES = Collections.unmodifiableSet(
+    new HashSet<>( Arrays.asList( 429, 502, 503, 504 )));
+  
+  private final int maxRetries;
+  private final long baseDelay;
+  private final long maxDelay;
+  private final String idempotencyHeader;
+  private final Set<String> methods;
+  private final Set<Integer> statusCodes;
+  private final RetryBudget budget;
+  
+  
+  /**
+   * Create a new RetryPolicy 
+   * @param maxRetries Max retries per request 
+   * @param baseDelay Delay before the first retry 
+   * @param maxDelay Longest delay 
+   * @param idempotencyHeader Header marking a request as safe to retry 
+   * @param methods Methods that are always safe to retry 
+   * @param statusCodes Status codes to retry 
+   * @param budget Retry budget 
+   */
+  protected RetryPolicy( final int maxRetries, final long baseDelay, 
+    final long maxDelay, final String idempotencyHeader, 
+    final Set<String> methods, final Set<Integer> statusCodes,
+    final RetryBudget budget )
+  {
+    this.maxRetries = maxRetries;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+    this.idempotencyHeader = idempotencyHeader;
+    this.methods = methods;
+    this.statusCodes = statusCodes;
+    this.budget = budget;
+  }
+  
+  
+  /**
+   * Retrieve the retry budget 
+   * @return budget 
+   */
+  public RetryBudget getBudget()
+  {
+    return budget;
+  }
+  
+  
+  /**
+   * Deposit into the retry budget 
+   * @param request request 
+   */
+  @Override
+  public void onRequest( final HttpUriRequest request )
+  {
+    budget.deposit();
+  }
+  
+
+  /**
+   * Decide if a request should be sent again.
+   * @param request The request 
+   * @param attempts The number of attempts made so far 
+   * @param response The last response or null 
+   * @param error The last error or null 
+   * @return milliseconds to wait or -1 to give up 
+   */
+  @Override
+  public long getRetryDelay( final HttpUriRequest request, final int attempts,
+    final IAPIResponse response, final Exception error )
+  {
+    if ( attempts > maxRetries || !isRetryable( request ))
+      return -1;
+    
+    long retryAfter = -1;
+    
+    if ( error != null )
+    {
+      if ( !isRetryable( error ))
+        return -1;
+    }
+    else if ( response != null )
+    {
+      if ( !statusCodes.contains( response.getStatusLine().getStatusCode()))
+        return -1;
+      
+      retryAfter = AdaptiveThrottle.getRetryAfterMillis( response );
+      if ( retryAfter > maxDelay )
+        return -1;
+    }
+    else
+      return -1;
+    
+    if ( !budget.tryWithdraw())
+      return -1;
+    
+    return Math.max( retryAfter, getBackoff( attempts ));
+  }
+  
+  
+  /**
+   * Retrieve the jittered backoff for some attempt 
+   * @param attempts attempts made so far 
+   * @return milliseconds 
+   */
+  protected long getBackoff( final int attempts )
+  {
+    final long cap = ( attempts > 30 ) ? maxDelay 
+      : Math.min( maxDelay, baseDelay << ( attempts - 1 ));
+    
+    final long half = cap / 2;
+    return half + ThreadLocalRandom.current().nextLong( cap - half + 1 );
+  }
+  
+  
+  /**
+   * Test if a request may be sent more than once 
+   * @param request request 
+   * @return is retryable 
+   */
+  protected boolean isRetryable( final HttpUriRequest request )
+  {
+    if ( request.isAborted())
+      return false;
+    
+    if ( request instanceof HttpEntityEnclosingRequest )
+    {
+      final HttpEntity entity = ((HttpEntityEnclosingRequest)request).getEntity();
+      if ( entity != null && !entity.isRepeatable())
+        return false;
+    }
+    
+    return methods.contains( request.getMethod().toUpperCase())
+      || request.containsHeader( idempotencyHeader );
+  }
+  
+  
+  /**
+   * Test if some error is worth retrying 
+   * @param e error 
+   * @return is retryable 
+   */
+  protected boolean isRetryable( final Exception e )
+  {
+    return e instanceof IOException
+      && !( e instanceof UnknownHostException )
+      && !( e instanceof SSLException );
+  }
+}
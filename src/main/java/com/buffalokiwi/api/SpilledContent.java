@@ -0,0 +1,170 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A response body that was written to a temporary file.
+ * Copies of a response share this object, and the file is deleted when 
+ * close() or release() is called, or once no response refers to it anymore.
+ * Files of unreachable instances are deleted by a daemon thread.
+ * 
+ * @author John Quinn
+ */
+class SpilledContent implements Closeable
+{
+  /**
+   * Deletes the file of some instance once it is unreachable 
+   */
+  private static class FileReference extends PhantomReference<SpilledContent>
+  {
+    private final File file;
+    
+    private FileReference( final SpilledContent owner, final File file )
+    {
+      super( owner, QUEUE );
+      this.file = file;
+    }
+    
+    
+    /**
+     * Delete the file and stop tracking it 
+     */
+    private void delete()
+    {
+      PENDING.remove( this );
+      clear();
+      file.delete();
+    }
+  }
+  
+  
+  /**
+   * Receives references to unreachable instances 
+   */
+  private static final ReferenceQueue<SpilledContent> QUEUE = new ReferenceQueue<>();
+  
+  /**
+   * References for files not deleted yet.  Keeps the references reachable
+   * until they are enqueued.
+   */
+  private static final Set<FileReference> PENDING = ConcurrentHashMap.newKeySet();
+  
+  static 
+  {
+    final Thread t = new Thread(() -> {
+      while ( true )
+      {
+        try {
+          ((FileReference)QUEUE.remove()).delete();
+        } catch( InterruptedException e ) {
+          return;
+        }
+      }
+    }, "SpilledContentCleaner" );
+    
+    //..Never hold the jvm open 
+    t.setDaemon( true );
+    t.start();
+  }
+  
+  /**
+   * The file 
+   */
+  private final File file;
+  
+  /**
+   * Body size in bytes 
+   */
+  private final long length;
+  
+  /**
+   * Deletes the file if this is never released 
+   */
+  private final FileReference ref;
+  
+  /**
+   * If the file was deleted 
+   */
+  private volatile boolean released = false;
+  
+  
+  /**
+   * Create a new SpilledContent instance 
+   * @param file file 
+   * @param length size in bytes
+   */
+  SpilledContent( final File file, final long length )
+  {
+    this.file = file;
+    this.length = length;
+    this.ref = new FileReference( this, file );
+    PENDING.add( ref );
+  }
+  
+  
+  /**
+   * Retrieve the body size 
+   * @return bytes 
+   */
+  long getLength()
+  {
+    return length;
+  }
+  
+  
+  /**
+   * Open the file 
+   * @return stream 
+   * @throws IOException if the file was released or cannot be opened 
+   */
+  InputStream open() throws IOException
+  {
+    if ( released )
+      throw new IOException( "The response content has been released" );
+    
+    return new BufferedInputStream( new FileInputStream( file ));
+  }
+  
+  
+  /**
+   * Delete the file 
+   */
+  void release()
+  {
+    released = true;
+    ref.delete();
+  }
+
+  
+  /**
+   * Delete the file.  Same as release().
+   */
+  @Override
+  public void close()
+  {
+    release();
+  }
+}
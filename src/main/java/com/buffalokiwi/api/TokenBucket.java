@@ -0,0 +1,185 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.
+ *
+ * The bucket refills at a fixed rate and holds at most burst tokens.
+ * Internally this tracks the theoretical arrival time of the next request
+ * (GCRA) in a single AtomicLong, so acquiring a token is one compare and set.
+ *
+ * @author John Quinn
+ */
+public class TokenBucket
+{
+  /**
+   * Nanoseconds per token
+   */
+  private volatile long interval;
+
+  /**
+   * How far ahead of the current time the arrival time may run.
+   * This is (burst - 1) * interval
+   */
+  private volatile long tolerance;
+
+  /**
+   * Burst size
+   */
+  private volatile int burst;
+
+  /**
+   * Theoretical arrival time of the next request in System.nanoTime() units
+   */
+  private final AtomicLong tat = new AtomicLong( System.nanoTime());
+
+
+  /**
+   * Create a bucket that allows one request every interval milliseconds
+   * @param intervalMillis Milliseconds per token
+   * @param burst Maximum tokens held by the bucket
+   * @return bucket
+   * @throws IllegalArgumentException if intervalMillis or burst are less
+   * than one
+   */
+  public static TokenBucket everyMillis( final long intervalMillis,
+    final int burst ) throws IllegalArgumentException
+  {
+    if ( intervalMillis < 1 )
+      throw new IllegalArgumentException( "intervalMillis must be greater than zero" );
+
+    return new TokenBucket( 1000D / intervalMillis, burst );
+  }
+
+
+  /**
+   * Create a new TokenBucket
+   * @param permitsPerSecond Refill rate
+   * @param burst Maximum tokens held by the bucket
+   * @throws IllegalArgumentException if permitsPerSecond is not positive or
+   * burst is less than one
+   */
+  public TokenBucket( final double permitsPerSecond, final int burst )
+    throws IllegalArgumentException
+  {
+    setRate( permitsPerSecond, burst );
+  }
+
+
+  /**
+   * Change the refill rate and burst size.
+   * @param permitsPerSecond Refill rate
+   * @param burst Maximum tokens held by the bucket
+   * @throws IllegalArgumentException if permitsPerSecond is not positive or
+   * burst is less than one
+   */
+  public final synchronized void setRate( final double permitsPerSecond,
+    final int burst ) throws IllegalArgumentException
+  {
+    if ( !( permitsPerSecond > 0 ) || Double.isInfinite( permitsPerSecond ))
+      throw new IllegalArgumentException( "permitsPerSecond must be greater than zero" );
+    else if ( burst < 1 )
+      throw new IllegalArgumentException( "burst must be greater than zero" );
+
+    this.interval = Math.max( 1L, (long)( TimeUnit.SECONDS.toNanos( 1 ) / permitsPerSecond ));
+    this.burst = burst;
+    this.tolerance = ( burst - 1 ) * interval;
+  }
+
+
+  /**
+   * Retrieve the refill rate
+   * @return permits per second
+   */
+  public double getRate()
+  {
+    return (double)TimeUnit.SECONDS.toNanos( 1 ) / interval;
+  }
+
+
+  /**
+   * Retrieve the burst size
+   * @return max tokens
+   */
+  public int getBurst()
+  {
+    return burst;
+  }
+
+
+  /**
+   * Take a token if one is available right now.
+   * @return if a token was taken
+   */
+  public boolean tryAcquire()
+  {
+    while ( true )
+    {
+      final long now = System.nanoTime();
+      final long t = tat.get();
+
+      if ( t - tolerance - now > 0 )
+        return false;
+
+      if ( tat.compareAndSet( t, Math.max( t, now ) + interval ))
+        return true;
+    }
+  }
+
+
+  /**
+   * Take the next token, whether or not it is available yet.
+   * This never blocks.  The caller must wait for the returned number of
+   * nanoseconds before using the token.
+   * @return nanoseconds until the token may be used.  Zero if it can be
+   * used now.
+   */
+  public long reserve()
+  {
+    while ( true )
+    {
+      final long now = System.nanoTime();
+      final long t = tat.get();
+
+      if ( tat.compareAndSet( t, Math.max( t, now ) + interval ))
+        return Math.max( 0L, t - tolerance - now );
+    }
+  }
+
+
+  /**
+   * Give back a token taken by tryAcquire() or reserve() that was not used.
+   */
+  public void refund()
+  {
+    tat.addAndGet( -interval );
+  }
+
+
+  /**
+   * Take the next token, blocking until it is available.
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void acquire() throws InterruptedException
+  {
+    final long wait = reserve();
+    if ( wait > 0 )
+      TimeUnit.NANOSECONDS.sleep( wait );
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * This file is part of the Aerodrome package, and is subject to the
+ * terms and conditions defined in file 'LICENSE', which is part
+ * of this source code package.
+ *
+ * Copyright (c) 2016 All Rights Reserved, John T. Quinn III,
+ * <johnquinn3@gmail.com>
+ *
+ * THIS CODE AND INFORMATION ARE PROVIDED "AS IS" WITHOUT WARRANTY OF ANY
+ * KIND, EITHER EXPRESSED OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND/OR FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ */
+
+package com.buffalokiwi.api;
+
+/**
+ * Wraps an APIException where a checked exception cannot be thrown 
+ * (ie: from an Iterator or a Stream).
+ * 
+ * @author John Quinn
+ */
+public class UncheckedAPIException extends RuntimeException
+{
+  private static final long serialVersionUID = 1L;
+  
+  /**
+   * Create a new UncheckedAPIException 
+   * @param cause cause 
+   */
+  public UncheckedAPIException( final APIException cause )
+  {
+    super( cause.getMessage(), cause );
+  }
+  
+  
+  /**
+   * Retrieve the wrapped exception 
+   * @return cause 
+   */
+  @Override
+  public synchronized APIException getCause()
+  {
+    return (APIException)super.getCause();
+  }
+}